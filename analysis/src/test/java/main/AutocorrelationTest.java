@@ -0,0 +1,77 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The FFT autocorrelation, scanned and streamed, against counting the matches directly
+ */
+public class AutocorrelationTest {
+	private static byte[] letters(int length, long seed) {
+		Random rand = new Random(seed);
+		byte[] key = { 2, 17, 24, 15, 19 };
+		byte[] letters = new byte[length];
+		for(int i = 0; i < length; i++) {
+			// Skewed towards the first few letters, like a plaintext, then enciphered
+			int plain = Math.min(rand.nextInt(26), rand.nextInt(26));
+			letters[i] = (byte)((plain + key[i % key.length]) % 26);
+		}
+		return letters;
+	}
+
+	private static long[] bruteForce(byte[] letters, int length, int maxShift) {
+		long[] counts = new long[maxShift + 1];
+		for(int s = 1; s <= maxShift; s++) {
+			for(int i = 0; i + s < length; i++) {
+				if(letters[i] == letters[i + s]) {
+					counts[s]++;
+				}
+			}
+		}
+		return counts;
+	}
+
+	@Test
+	public void scanMatchesBruteForce() {
+		for(int length : new int[] { 1, 10, 700, 5000, 70000 }) {
+			byte[] letters = letters(length, length);
+			for(int maxShift : new int[] { 1, 7, 300 }) {
+				assertArrayEquals(bruteForce(letters, length, maxShift), Autocorrelation.scan(letters, maxShift).getCoincidences(), length + " letters, shift " + maxShift);
+			}
+		}
+	}
+
+	@Test
+	public void streamMatchesBruteForce() {
+		Random rand = new Random(1);
+		// Long enough for several runs of blocks to be correlated in parallel
+		byte[] letters = letters(150000, 2);
+		for(int maxShift : new int[] { 5, 300, 1000 }) {
+			Autocorrelation correlation = new Autocorrelation(maxShift);
+			int i = 0;
+			while(i < letters.length) {
+				int count = Math.min(letters.length - i, 1 + rand.nextInt(20000));
+				correlation.accept(Arrays.copyOfRange(letters, i, i + count), count);
+				i += count;
+				// Reading part way through mustn't change what's counted afterwards
+				if(rand.nextInt(4) == 0) {
+					assertArrayEquals(bruteForce(letters, i, maxShift), correlation.getCoincidences(), i + " letters, shift " + maxShift);
+				}
+			}
+			assertArrayEquals(bruteForce(letters, letters.length, maxShift), correlation.getCoincidences(), "shift " + maxShift);
+		}
+	}
+
+	@Test
+	public void streamCarriesOnFromScan() {
+		byte[] letters = letters(90000, 3);
+		int maxShift = 200;
+		Autocorrelation correlation = Autocorrelation.scan(Arrays.copyOf(letters, 30001), maxShift);
+		correlation.accept(Arrays.copyOfRange(letters, 30001, letters.length), letters.length - 30001);
+		assertArrayEquals(bruteForce(letters, letters.length, maxShift), correlation.getCoincidences());
+	}
+}
@@ -0,0 +1,98 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.AnalysisUtils.RepeatedSequence;
+
+/**
+ * The suffix array Kasiski examination against the original search from every index, and the parallel examination against the serial one
+ */
+public class KasiskiExaminationTest {
+	/**
+	 * @param length - The number of letters
+	 * @param seed - The seed for the random letters
+	 * @return Random capitals, with a Vigenere keyword's worth of repeats put in every so often so there are long sequences as well as chance ones
+	 */
+	static String ciphertext(int length, long seed) {
+		Random rand = new Random(seed);
+		StringBuilder sb = new StringBuilder(length);
+		while(sb.length() < length) {
+			if(rand.nextInt(8) == 0) {
+				sb.append("LXFOPVEFRNHR");
+			} else {
+				sb.append((char)('A' + rand.nextInt(26)));
+			}
+		}
+		sb.setLength(length);
+		return sb.toString();
+	}
+
+	private static void assertSameSequences(ArrayList<RepeatedSequence> expected, ArrayList<RepeatedSequence> actual) {
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSequence(), actual.get(i).getSequence());
+			Integer[] expectedSpacings = expected.get(i).getSpacings().clone();
+			Integer[] actualSpacings = actual.get(i).getSpacings().clone();
+			Arrays.sort(expectedSpacings);
+			Arrays.sort(actualSpacings);
+			assertArrayEquals(expectedSpacings, actualSpacings, expected.get(i).getSequence());
+		}
+	}
+
+	private static void assertSameResult(KasiskiResult expected, KasiskiResult actual) {
+		assertEquals(expected.size(), actual.size());
+		for(int row = 0; row < expected.size(); row++) {
+			assertEquals(expected.getSequence(row), actual.getSequence(row));
+			int[] expectedSpacings = expected.getSpacings(row);
+			int[] actualSpacings = actual.getSpacings(row);
+			Arrays.sort(expectedSpacings);
+			Arrays.sort(actualSpacings);
+			assertArrayEquals(expectedSpacings, actualSpacings, expected.getSequence(row));
+		}
+	}
+
+	@Test
+	public void suffixArrayMatchesSearchFromEveryIndex() {
+		for(long seed = 1; seed <= 5; seed++) {
+			String text = ciphertext(1500, seed);
+			assertSameSequences(AnalysisUtils.KasiskiTest(text), AnalysisUtils.KasiskiTestFast(text));
+		}
+	}
+
+	@Test
+	public void suffixArrayMatchesSearchFromEveryIndexOnShortTexts() {
+		for(String text : new String[] { "", "A", "AA", "AAAA", "ABAB", "ABCABCABC", "ZZZZZZZZZZZZ" }) {
+			assertSameSequences(AnalysisUtils.KasiskiTest(text), AnalysisUtils.KasiskiTestFast(text));
+		}
+	}
+
+	@Test
+	public void parallelMatchesSerial() {
+		// Long enough to be split into several tasks
+		CipherText text = CipherText.parse(ciphertext(60000, 7));
+		KasiskiResult parallel = AnalysisUtils.KasiskiExamineParallel(text);
+		assertTrue(parallel.size() > 0);
+		assertSameResult(AnalysisUtils.KasiskiExamineFast(text), parallel);
+	}
+
+	@Test
+	public void topKeepsTheBestOfTheFullExamination() {
+		CipherText text = CipherText.parse(ciphertext(20000, 3));
+		KasiskiResult top = AnalysisUtils.KasiskiExamineTop(text, 10);
+		assertEquals(10, top.size());
+		// The planted keyword is by far the longest and most repeated sequence
+		boolean found = false;
+		for(int row = 0; row < top.size(); row++) {
+			found |= top.getSequence(row).equals("LXFOPVEFRNHR");
+		}
+		assertTrue(found);
+	}
+}
@@ -0,0 +1,63 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writing n-gram tables to a file and mapping them back in
+ */
+public class NgramStatisticsTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void tablesSurviveWritingAndMapping() throws IOException {
+		Random rand = new Random(1);
+		long[][] counts = new long[NgramStatistics.MAX_N][];
+		for(int n : new int[] { 1, 3 }) {
+			counts[n - 1] = new long[NgramStatistics.size(n)];
+			for(int i = 0; i < counts[n - 1].length; i++) {
+				counts[n - 1][i] = rand.nextInt(5) == 0 ? 0 : rand.nextInt(100000);
+			}
+		}
+		Path path = directory.resolve("tables.ngrams");
+		NgramStatistics.write(path, counts);
+		assertTrue(NgramStatistics.isTableFile(path));
+
+		NgramStatistics stats = NgramStatistics.map(path);
+		for(int n = 1; n <= NgramStatistics.MAX_N; n++) {
+			assertEquals(counts[n - 1] != null, stats.has(n), "n = " + n);
+			if(counts[n - 1] == null) {
+				continue;
+			}
+			float[] expected = new float[counts[n - 1].length];
+			float floor = NgramStatistics.logProbabilities(counts[n - 1], expected);
+			assertEquals(floor, stats.getFloor(n));
+			FloatBuffer table = stats.getTable(n);
+			assertEquals(expected.length, table.capacity());
+			for(int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i], table.get(i), "n = " + n + ", n-gram " + i);
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> stats.getTable(2));
+	}
+
+	@Test
+	public void otherFilesAreNotTables() throws IOException {
+		Path path = directory.resolve("words.txt");
+		Files.write(path, "THE 100\nAND 50\n".getBytes("UTF-8"));
+		assertFalse(NgramStatistics.isTableFile(path));
+		assertThrows(IOException.class, () -> NgramStatistics.map(path));
+	}
+}
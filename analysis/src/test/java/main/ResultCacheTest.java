@@ -0,0 +1,79 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Putting results in the cache and getting them back, from memory and from disk
+ */
+public class ResultCacheTest {
+	@TempDir
+	Path directory;
+
+	private static AnalysisResults analyse(CipherText text) {
+		AnalysisResults results = AnalysisSession.of(text.getLetters(), 40).getResults();
+		results.kasiski = AnalysisUtils.KasiskiExamineFast(text);
+		return results;
+	}
+
+	@Test
+	public void resultsSurviveTheDisk() throws IOException {
+		CipherText text = CipherText.parse(KasiskiExaminationTest.ciphertext(5000, 11));
+		AnalysisResults results = analyse(text);
+		String key = ResultCache.key(text.getLetters(), 40);
+		ResultCache cache = new ResultCache(directory, 1 << 20);
+		cache.put(key, results);
+		assertSame(results, cache.get(key, text.asLetterSequence()));
+
+		// A new cache only has the file to go on
+		AnalysisResults read = new ResultCache(directory, 1 << 20).get(key, text.asLetterSequence());
+		assertEquals(results.letters, read.letters);
+		assertEquals(results.kappa.ko, read.kappa.ko);
+		assertEquals(results.kappa.keylength, read.kappa.keylength);
+		assertEquals(results.iocs.size(), read.iocs.size());
+		for(int i = 0; i < results.iocs.size(); i++) {
+			assertEquals(results.iocs.get(i).keylength, read.iocs.get(i).keylength);
+			assertEquals(results.iocs.get(i).ioc, read.iocs.get(i).ioc);
+		}
+		assertEquals(results.keyLength, read.keyLength);
+		assertEquals(results.language.getCode(), read.language.getCode());
+		assertEquals(results.getKeyword(), read.getKeyword());
+		assertEquals(results.kasiskiKeyLength, read.kasiskiKeyLength);
+		assertEquals(results.kasiski.size(), read.kasiski.size());
+		for(int row = 0; row < results.kasiski.size(); row++) {
+			assertEquals(results.kasiski.getSequence(row), read.kasiski.getSequence(row));
+			assertArrayEquals(results.kasiski.getSpacings(row), read.kasiski.getSpacings(row));
+		}
+	}
+
+	@Test
+	public void missesAndDamagedFiles() throws IOException {
+		CipherText text = CipherText.parse(KasiskiExaminationTest.ciphertext(2000, 12));
+		String key = ResultCache.key(text.getLetters(), 40);
+		assertNotEquals(key, ResultCache.key(text.getLetters(), 41));
+		ResultCache cache = new ResultCache(directory, 1 << 20);
+		assertNull(cache.get(key, text.asLetterSequence()));
+
+		cache.put(key, analyse(text));
+		Path file;
+		try(Stream<Path> files = Files.list(directory)) {
+			file = files.filter((path) -> path.getFileName().toString().startsWith(key)).findFirst().get();
+		}
+		Files.write(file, new byte[] { 1, 2, 3 });
+		// A file that can't be read is treated as missing, and deleted
+		assertNull(new ResultCache(directory, 1 << 20).get(key, text.asLetterSequence()));
+		assertFalse(Files.exists(file));
+	}
+}
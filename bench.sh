@@ -0,0 +1,7 @@
+#!/bin/sh
+# Builds the analysis code and the JMH benchmarks, then runs them with the GC profiler.
+# Any arguments are passed on to JMH, e.g. ./bench.sh Kappa -p textSize=1000000 -rf json
+set -e
+cd "$(dirname "$0")"
+mvn -B -q package -DskipTests
+java -jar benchmarks/target/benchmarks.jar -prof gc "$@"
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.AnalysisSession;
+import main.AnalysisUtils;
+
+/**
+ * Counting a whole text into a session, and a one letter edit of a session. Both the synthetic text and random letters (where nearly every trigram is common) are used.<br>
+ * <br>
+ * The setup checks that the repeat index stays within its memory bound - the residue budget plus 8 bytes a letter for the trigram positions -
+ * after counting the whole text and after appending more of it a block at a time, and fails the trial if it doesn't
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx2g" })
+public class AnalysisSessionBenchmark {
+	private static final int BLOCK_SIZE = 1 << 12;
+
+	@Param({ "1000000", "4000000" })
+	public int textSize;
+
+	@Param({ "synthetic", "random" })
+	public String text;
+
+	private byte[] letters;
+	private AnalysisSession session;
+	private int position;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		if(text.equals("random")) {
+			Random rand = new Random(SyntheticText.DEFAULT_SEED);
+			letters = new byte[textSize];
+			for(int i = 0; i < textSize; i++) {
+				letters[i] = (byte)rand.nextInt(26);
+			}
+		} else {
+			letters = SyntheticText.letters(textSize, 7);
+		}
+		checkMemory(AnalysisSession.of(letters, AnalysisUtils.defaultMaxKeyLength), textSize);
+		// The last tenth a block at a time
+		int start = textSize - textSize / 10;
+		session = AnalysisSession.of(Arrays.copyOf(letters, start), AnalysisUtils.defaultMaxKeyLength);
+		for(int i = start; i < textSize; i += BLOCK_SIZE) {
+			session.append(letters, i, Math.min(textSize, i + BLOCK_SIZE));
+		}
+		checkMemory(session, textSize);
+	}
+
+	private static void checkMemory(AnalysisSession session, int letters) {
+		long bound = AnalysisSession.defaultResidueBudget + 8L * letters;
+		if(session.getRepeatIndexBytes() > bound) {
+			throw new IllegalStateException("The repeat index takes up " + session.getRepeatIndexBytes() + " bytes for " + letters + " letters, more than " + bound);
+		}
+	}
+
+	@Benchmark
+	public AnalysisSession of() {
+		return AnalysisSession.of(letters, AnalysisUtils.defaultMaxKeyLength);
+	}
+
+	@Benchmark
+	public int edit() {
+		// Changes a letter and changes it back, so the session stays the same between invocations
+		position = (position + 7919) % textSize;
+		byte letter = letters[position];
+		byte[] edited = { (byte)((letter + 1) % 26) };
+		session.replace(position, edited, 0, 1);
+		session.replace(position, letters, position, position + 1);
+		return session.getKasiskiKeyLength();
+	}
+}
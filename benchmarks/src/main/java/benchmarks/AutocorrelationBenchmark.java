@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.Autocorrelation;
+
+/**
+ * The FFT autocorrelation, in parallel over a whole text and streamed a chunk at a time. The time per letter should hardly change with the largest shift
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx2g" })
+public class AutocorrelationBenchmark {
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	@Param({ "100000", "10000000", "100000000" })
+	public int textSize;
+
+	@Param({ "256", "4096", "65536" })
+	public int maxShift;
+
+	private byte[] letters;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		letters = SyntheticText.letters(textSize, 7);
+	}
+
+	@Benchmark
+	public long[] scan() {
+		return Autocorrelation.scan(letters, maxShift).getCoincidences();
+	}
+
+	@Benchmark
+	public long[] stream() {
+		Autocorrelation correlation = new Autocorrelation(maxShift);
+		byte[] chunk = new byte[CHUNK_SIZE];
+		for(int i = 0; i < letters.length; i += CHUNK_SIZE) {
+			int count = Math.min(CHUNK_SIZE, letters.length - i);
+			System.arraycopy(letters, i, chunk, 0, count);
+			correlation.accept(chunk, count);
+		}
+		return correlation.getCoincidences();
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.DictionaryAttack;
+import main.LanguageProfile;
+import main.QuadgramScorer;
+
+/**
+ * The dictionary attack over a wordlist of random words, scored with the chi-squared statistic and with quadgrams. Divide the number of words by the time for keys per second.
+ * The quadgrams are counted from synthetic text, which is only good enough for timing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx2g" })
+public class DictionaryAttackBenchmark {
+	@Param({ "100000", "1000000" })
+	public int words;
+
+	@Param({ "chi-squared", "quadgrams" })
+	public String scoring;
+
+	private Path wordlist;
+	private DictionaryAttack attack;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		wordlist = Files.createTempFile("wordlist", ".txt");
+		Random rand = new Random(SyntheticText.DEFAULT_SEED);
+		try(BufferedWriter out = Files.newBufferedWriter(wordlist, StandardCharsets.UTF_8)) {
+			for(int i = 0; i < words; i++) {
+				int length = 3 + rand.nextInt(10);
+				for(int j = 0; j < length; j++) {
+					out.write('a' + rand.nextInt(26));
+				}
+				out.write('\n');
+			}
+		}
+		QuadgramScorer scorer = scoring.equals("quadgrams") ? QuadgramScorer.train(SyntheticText.letters(1 << 20, 1)) : null;
+		attack = new DictionaryAttack(SyntheticText.letters(2000, 7), DictionaryAttack.defaultPrefixLetters, DictionaryAttack.defaultTop, scorer, LanguageProfile.ENGLISH);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(wordlist);
+	}
+
+	@Benchmark
+	public DictionaryAttack.Result attack() throws IOException {
+		return attack.attack(wordlist, Runtime.getRuntime().availableProcessors());
+	}
+}
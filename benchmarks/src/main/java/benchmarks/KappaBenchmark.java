@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.AnalysisUtils;
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+import main.ColumnHistograms;
+
+/**
+ * The counting analyses - the Kappa test, the improved Kappa test (every keyword length up to {@link #MAX_KEY_LENGTH}) and the chi-squared test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx2g" })
+public class KappaBenchmark {
+	/**
+	 * The longest keyword length tested, which is the longest keyword length the texts are made with
+	 */
+	public static final int MAX_KEY_LENGTH = 200;
+
+	@Param({ "1000", "100000", "10000000", "100000000" })
+	public int textSize;
+
+	@Param({ "3", "20", "200" })
+	public int keyLength;
+
+	private byte[] letters;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		letters = SyntheticText.letters(textSize, keyLength);
+	}
+
+	@Benchmark
+	public KappaResult kappaTest() {
+		return AnalysisUtils.KappaTest(letters);
+	}
+
+	@Benchmark
+	public ColumnHistograms columnHistograms() {
+		return ColumnHistograms.compute(letters, MAX_KEY_LENGTH);
+	}
+
+	@Benchmark
+	public ArrayList<IOCForKeyLen> kappaTest2() {
+		return AnalysisUtils.KappaTest2(letters, MAX_KEY_LENGTH);
+	}
+
+	@Benchmark
+	public ArrayList<ShiftsForColumn> chiSquaredTest() {
+		return AnalysisUtils.ChiSquaredTest(letters, keyLength);
+	}
+}
@@ -0,0 +1,132 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.AnalysisUtils;
+import main.CipherText;
+import main.KasiskiResult;
+import main.SuffixArray;
+
+/**
+ * The Kasiski examination - the suffix array search on its own, and the whole examination including collecting the spacings.<br>
+ * <br>
+ * The full examination is only run on the smaller texts by default, because the number of distinct repeat spacings grows with the square of the text length -
+ * a million letters of the synthetic text has billions of them. The serial and parallel examinations are compared up to 300,000 letters, which takes several seconds a run
+ * on one core and is long enough to split into tasks for every core. The suffix array on its own is run on texts up to 100 MB, and so is the top-K examination, which only keeps 100 sequences
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx4g" })
+public class KasiskiBenchmark {
+	@State(Scope.Benchmark)
+	public static class Text {
+		@Param({ "1000", "100000", "10000000", "100000000" })
+		public int textSize;
+
+		@Param({ "3", "20", "200" })
+		public int keyLength;
+
+		int[] ranked;
+		int alphabetSize;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			int[] size = new int[1];
+			ranked = SuffixArray.rank(SyntheticText.toUpperString(SyntheticText.letters(textSize, keyLength)), size);
+			alphabetSize = size[0];
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class SmallText {
+		@Param({ "1000", "10000", "100000" })
+		public int textSize;
+
+		@Param({ "3", "20", "200" })
+		public int keyLength;
+
+		CipherText text;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			text = CipherText.fromLetters(SyntheticText.letters(textSize, keyLength));
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class MediumText {
+		@Param({ "10000", "100000", "300000" })
+		public int textSize;
+
+		@Param({ "3", "20", "200" })
+		public int keyLength;
+
+		CipherText text;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			text = CipherText.fromLetters(SyntheticText.letters(textSize, keyLength));
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class LargeText {
+		@Param({ "100000", "10000000", "100000000" })
+		public int textSize;
+
+		@Param({ "3", "20", "200" })
+		public int keyLength;
+
+		CipherText text;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			text = CipherText.fromLetters(SyntheticText.letters(textSize, keyLength));
+		}
+	}
+
+	@Benchmark
+	public int[] suffixArray(Text state) {
+		return SuffixArray.build(state.ranked, state.alphabetSize);
+	}
+
+	@Benchmark
+	public int[] suffixArrayAndLcp(Text state) {
+		return SuffixArray.lcp(state.ranked, SuffixArray.build(state.ranked, state.alphabetSize));
+	}
+
+	@Benchmark
+	public KasiskiResult examineFast(MediumText state) {
+		return AnalysisUtils.KasiskiExamineFast(state.text);
+	}
+
+	@Benchmark
+	public KasiskiResult examineParallel(MediumText state) {
+		return AnalysisUtils.KasiskiExamineParallel(state.text);
+	}
+
+	@Benchmark
+	public KasiskiResult examineTop(LargeText state) {
+		return AnalysisUtils.KasiskiExamineTop(state.text, 100);
+	}
+
+	@Benchmark
+	public int keyLength(SmallText state) {
+		return AnalysisUtils.KasiskiKeyLength(AnalysisUtils.KasiskiExamineFast(state.text), state.keyLength);
+	}
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.AnalysisUtils;
+import main.KasiskiResult;
+import main.Utils;
+
+/**
+ * The original index-by-index Kasiski search ({@link Utils#findAllOccurrences(CharSequence, int, Utils.OccurrenceVisitor)}), for comparison with {@link KasiskiBenchmark}.
+ * It's quadratic (or worse), so it's only run on the smaller texts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LegacyKasiskiBenchmark {
+	@Param({ "1000", "10000" })
+	public int textSize;
+
+	@Param({ "3", "20", "200" })
+	public int keyLength;
+
+	private String text;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		text = SyntheticText.toUpperString(SyntheticText.letters(textSize, keyLength));
+	}
+
+	/**
+	 * A single search, from the middle of the text
+	 */
+	@Benchmark
+	public void findAllOccurrences(Blackhole bh) {
+		Utils.findAllOccurrences(text, text.length() / 2, (length, positions, count) -> bh.consume(count));
+	}
+
+	@Benchmark
+	public KasiskiResult examine() {
+		return AnalysisUtils.KasiskiExamine(text);
+	}
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.CipherText;
+import main.CipherTextFile;
+
+/**
+ * Getting the letters out of formatted text - parsing a String into a CipherText, and streaming a file through {@link CipherTextFile}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx3g" })
+public class NormaliseBenchmark {
+	@Param({ "1000", "100000", "10000000", "100000000" })
+	public int textSize;
+
+	@Param({ "3", "20", "200" })
+	public int keyLength;
+
+	private String text;
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		text = SyntheticText.formatted(textSize, keyLength);
+		file = Files.createTempFile("ciphertext", ".txt");
+		Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public CipherText parse() {
+		return CipherText.parse(text);
+	}
+
+	@Benchmark
+	public String roundTrip() {
+		return CipherText.parse(text).toOriginalString();
+	}
+
+	@Benchmark
+	public long streamFile() throws IOException {
+		long[] sum = { 0 };
+		CipherTextFile.stream(file, (letters, count) -> sum[0] += letters[count - 1]);
+		return sum[0];
+	}
+}
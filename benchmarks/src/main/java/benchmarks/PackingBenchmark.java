@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.AnalysisUtils;
+import main.AnalysisUtils.RepeatedSequence;
+
+/**
+ * {@link AnalysisUtils#packSequences(ArrayList)} against the old nested-loop packing, on synthetic lists of repeat pairs.
+ * The old packing is only run on the smaller lists, as it takes far too long on the big ones
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackingBenchmark {
+	@State(Scope.Benchmark)
+	public static class Pairs {
+		@Param({ "10000", "100000", "1000000", "4000000" })
+		public int pairs;
+
+		ArrayList<RepeatedSequence> separate;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			separate = makePairs(pairs, pairs / 20, new Random(pairs));
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class FewPairs {
+		@Param({ "10000", "50000" })
+		public int pairs;
+
+		ArrayList<RepeatedSequence> separate;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			separate = makePairs(pairs, pairs / 20, new Random(pairs));
+		}
+	}
+
+	@Benchmark
+	public ArrayList<RepeatedSequence> pack(Pairs state) {
+		return AnalysisUtils.packSequences(state.separate);
+	}
+
+	@Benchmark
+	public ArrayList<RepeatedSequence> packNaive(FewPairs state) {
+		return packNaive(new ArrayList<RepeatedSequence>(state.separate));
+	}
+
+	private static ArrayList<RepeatedSequence> makePairs(int pairs, int distinct, Random rand) {
+		String[] sequences = new String[distinct];
+		for(int i = 0; i < distinct; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 2 + rand.nextInt(4);
+			for(int j = 0; j < length; j++) {
+				sb.append(AnalysisUtils.alphabetUpper[rand.nextInt(26)]);
+			}
+			sequences[i] = sb.toString();
+		}
+		ArrayList<RepeatedSequence> list = new ArrayList<RepeatedSequence>(pairs);
+		for(int i = 0; i < pairs; i++) {
+			list.add(new RepeatedSequence(sequences[rand.nextInt(distinct)], 1 + rand.nextInt(1000)));
+		}
+		return list;
+	}
+
+	/**
+	 * The packing stage as {@link AnalysisUtils#KasiskiTest(String)} used to do it, kept here for comparison
+	 */
+	private static ArrayList<RepeatedSequence> packNaive(ArrayList<RepeatedSequence> sequencesSeparate) {
+		ArrayList<RepeatedSequence> sequences = new ArrayList<RepeatedSequence>();
+		for(int i = 0; i < sequencesSeparate.size(); i++) {
+			String currSequence = sequencesSeparate.get(i).getSequence();
+			HashSet<Integer> spacings = new HashSet<Integer>();
+			spacings.add(sequencesSeparate.get(i).getSpacing());
+			for(int j = i + 1; j < sequencesSeparate.size(); j++) {
+				if(sequencesSeparate.get(j).getSequence().equals(currSequence)) {
+					spacings.add(sequencesSeparate.get(j).getSpacing());
+					sequencesSeparate.remove(j);
+					j--;
+				}
+			}
+			sequencesSeparate.remove(i);
+			i--;
+
+			sequences.add(new RepeatedSequence(currSequence, spacings.toArray(new Integer[spacings.size()])));
+		}
+		return sequences;
+	}
+}
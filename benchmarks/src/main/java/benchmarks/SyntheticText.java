@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Makes repeatable synthetic Vigenere ciphertexts for the benchmarks.<br>
+ * <br>
+ * The plaintext is made of common English words picked at random, so it has roughly English letter frequencies and plenty of repeated sequences for the Kasiski examination to find.
+ * It's then enciphered with a random keyword of the given length. The same size, keyword length and seed always give the same text
+ */
+public class SyntheticText {
+	private SyntheticText() {
+		throw new AssertionError("This class should not be instantiable");
+	}
+
+	private static final String[] WORDS = {
+		"the", "of", "and", "to", "in", "is", "was", "that", "for", "it", "with", "as", "his", "on", "be", "at", "by", "had", "this", "not",
+		"but", "from", "have", "they", "which", "one", "you", "were", "her", "all", "she", "there", "would", "their", "we", "him", "been", "has", "when", "who",
+		"will", "more", "no", "if", "out", "so", "said", "what", "up", "its", "about", "into", "than", "them", "can", "only", "other", "new", "some", "could",
+		"time", "these", "two", "may", "then", "do", "first", "any", "my", "now", "such", "like", "our", "over", "man", "me", "even", "most", "made", "after",
+		"also", "did", "many", "before", "must", "through", "back", "years", "where", "much", "your", "way", "well", "down", "should", "because", "each", "just", "those", "people",
+		"attack", "at", "dawn", "enemy", "north", "bridge", "message", "cipher", "secret", "army", "river", "south", "east", "west", "orders", "retreat", "advance", "signal", "night", "morning"
+	};
+
+	public static final long DEFAULT_SEED = 0x5EED;
+
+	/**
+	 * @param size - The number of letters
+	 * @param keyLength - The length of the keyword
+	 * @return The ciphertext, as values from 0 to 25
+	 */
+	public static byte[] letters(int size, int keyLength) {
+		return letters(size, keyLength, DEFAULT_SEED);
+	}
+
+	/**
+	 * @param size - The number of letters
+	 * @param keyLength - The length of the keyword
+	 * @param seed - The seed for the plaintext and keyword
+	 * @return The ciphertext, as values from 0 to 25
+	 */
+	public static byte[] letters(int size, int keyLength, long seed) {
+		Random rand = new Random(seed);
+		byte[] key = key(keyLength, rand);
+		byte[] letters = new byte[size];
+		int i = 0;
+		while(i < size) {
+			String word = WORDS[rand.nextInt(WORDS.length)];
+			for(int j = 0; j < word.length() && i < size; j++, i++) {
+				letters[i] = (byte)((word.charAt(j) - 'a' + key[i % keyLength]) % 26);
+			}
+		}
+		return letters;
+	}
+
+	/**
+	 * Makes a ciphertext as it might be typed or pasted in - upper and lower case letters, split into words by spaces, with some punctuation and line breaks
+	 * @param size - The number of characters, including the non-letters
+	 * @param keyLength - The length of the keyword
+	 * @return The ciphertext
+	 */
+	public static String formatted(int size, int keyLength) {
+		Random rand = new Random(DEFAULT_SEED);
+		byte[] key = key(keyLength, rand);
+		char[] chars = new char[size];
+		int letter = 0;
+		int i = 0;
+		while(i < size) {
+			String word = WORDS[rand.nextInt(WORDS.length)];
+			boolean capital = rand.nextInt(8) == 0;
+			for(int j = 0; j < word.length() && i < size; j++, i++) {
+				char base = capital && j == 0 ? 'A' : 'a';
+				chars[i] = (char)(base + (word.charAt(j) - 'a' + key[letter++ % keyLength]) % 26);
+			}
+			if(i < size) {
+				int r = rand.nextInt(20);
+				chars[i++] = r == 0 ? '.' : r == 1 ? ',' : r == 2 ? '\n' : ' ';
+			}
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return The letters as a String of capital letters
+	 */
+	public static String toUpperString(byte[] letters) {
+		char[] chars = new char[letters.length];
+		for(int i = 0; i < letters.length; i++) {
+			chars[i] = (char)('A' + letters[i]);
+		}
+		return new String(chars);
+	}
+
+	private static byte[] key(int keyLength, Random rand) {
+		byte[] key = new byte[keyLength];
+		for(int i = 0; i < keyLength; i++) {
+			key[i] = (byte)rand.nextInt(26);
+		}
+		return key;
+	}
+}
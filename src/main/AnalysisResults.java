@@ -0,0 +1,53 @@
+package main;
+
+import java.util.ArrayList;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * A container for the results of all the analyses of one ciphertext, as shown in the main window and kept in the {@link ResultCache}
+ */
+public class AnalysisResults {
+	/**
+	 * The number of letters in the ciphertext
+	 */
+	public int letters;
+	/**
+	 * The Kappa test, for a plaintext in <code>language</code>
+	 */
+	public KappaResult kappa;
+	public ArrayList<IOCForKeyLen> iocs;
+	/**
+	 * The keyword length picked from <code>iocs</code>, or 0 if there wasn't one
+	 */
+	public int keyLength;
+	/**
+	 * The registered language the text looks most like, with its columns split for <code>keyLength</code> (or as one column if there was no keyword length)
+	 */
+	public LanguageProfile language;
+	/**
+	 * The chi-squared test for <code>keyLength</code>, against <code>language</code>. Empty if there was no keyword length
+	 */
+	public ArrayList<ShiftsForColumn> shifts;
+	/**
+	 * The keyword length estimated from the spacings of repeated trigrams, or 0 if there weren't any
+	 */
+	public int kasiskiKeyLength;
+	/**
+	 * The full Kasiski examination, or null if it hasn't been done
+	 */
+	public KasiskiResult kasiski;
+
+	/**
+	 * @return The most likely keyword, from the best shift of each column, or an empty String if there was no keyword length
+	 */
+	public String getKeyword() {
+		StringBuilder key = new StringBuilder(shifts.size());
+		for(ShiftsForColumn column : shifts) {
+			key.append(column.getBestLetter());
+		}
+		return key.toString();
+	}
+}
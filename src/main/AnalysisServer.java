@@ -0,0 +1,607 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * Serves the analyses over HTTP on localhost, so that other tools can share one warm JVM rather than each paying for starting one and the JIT warming up.<br>
+ * <br>
+ * Usage: <code>java main/Main --serve [options]</code><br>
+ * Options:<br>
+ * <code>--port &lt;n&gt;</code> - The port to listen on (defaults to {@link #defaultPort})<br>
+ * <code>-j, --parallelism &lt;n&gt;</code> - The most batches to analyse at once (defaults to the number of cores)<br>
+ * <code>--queue &lt;n&gt;</code> - The most requests to hold waiting for a worker (defaults to {@link #defaultQueueCapacity})<br>
+ * <code>--queue-bytes &lt;n&gt;</code> - The most bytes of ciphertext to hold, waiting or being analysed (defaults to {@link #defaultQueueBytes})<br>
+ * <code>--batch-bytes &lt;n&gt;</code> - The most bytes of ciphertext to put in one batch (defaults to {@link #defaultBatchBytes})<br>
+ * <code>--quadgrams &lt;file&gt;</code> - Quadgram statistics for <code>/solve</code> and <code>/analyse</code> (see {@link QuadgramScorer#load(Path)})<br>
+ * <br>
+ * Every operation is a POST with the ciphertext as the body and its options as query parameters, and answers with JSON (apart from <code>/decrypt</code>, which answers with the plaintext):<br>
+ * <code>/analyse</code> - Everything batch mode does, with the same results (see {@link BatchAnalysis}). Takes <code>maxKeyLength</code>, <code>kasiskiLimit</code>, <code>kasiskiTop</code>, <code>restarts</code>, <code>window</code>, <code>windowStep</code> and <code>autocorrelation</code><br>
+ * <code>/kappa</code> - The Kappa test<br>
+ * <code>/kappa2</code> - The improved Kappa test, up to <code>maxKeyLength</code><br>
+ * <code>/chi-squared</code> - The chi-squared keyword for <code>keyLength</code>, against the registered <code>language</code> given (e.g. <code>en</code>) or else the one the text looks most like<br>
+ * <code>/kasiski</code> - The Kasiski examination, keeping the best <code>top</code> sequences (defaults to <code>AnalysisUtils.defaultKasiskiTop</code>) from <code>minLength</code> to <code>maxLength</code> letters. They're listed when <code>top</code> is given<br>
+ * <code>/autocorrelation</code> - The coincidence rate at every shift up to <code>maxShift</code>, and the best periods<br>
+ * <code>/solve</code> - Hill-climbing for the whole keyword. Needs <code>--quadgrams</code><br>
+ * <code>/decrypt</code> - Deciphers the text with <code>key</code>, keeping its layout<br>
+ * A GET of <code>/status</code> gives the length of the queue and counts of the requests so far.<br>
+ * Sizes given as parameters are clamped to what the text can use - <code>keyLength</code> and <code>maxKeyLength</code> to half its letters (and <code>maxKeyLength</code> to {@link #maxKeyLengthLimit} as well),
+ * <code>maxShift</code> and <code>autocorrelation</code> to half its letters, and <code>top</code> and <code>kasiskiTop</code> to its letters.
+ * <code>kasiskiTop</code> defaults to <code>AnalysisUtils.defaultKasiskiTop</code> as in batch mode, but here it can't be 0 - the full Kasiski examination of a long text needs far more heap than one request should be able to take.<br>
+ * <br>
+ * Requests are read on a few handler threads and put in a bounded queue. A single dispatcher thread takes them off in order, groups consecutive small ones into a batch of up to <code>batchBytes</code> bytes,
+ * and hands each batch to the worker pool as one task, so a flood of short texts doesn't cost a task each. The dispatcher only takes a batch when a worker is free to start it, so requests wait in the queue rather than piling up in the pool.
+ * When the queue is full, requests are turned away straight away with 503 and a Retry-After header, before their bodies are read, so a client sending faster than the server can keep up is pushed back instead of filling the heap.<br>
+ * <br>
+ * The queue is bounded by bytes as well as by requests, since a few big ciphertexts can take up more memory than many small ones. Each request takes permits for its bytes from a semaphore before its body is read
+ * (using its Content-Length, or as it's read if it's chunked), and gives them back once it's been answered. If there aren't enough permits left, it's turned away with 503 the same as when the queue is full
+ */
+public class AnalysisServer {
+	public static int defaultPort = 8725;
+	public static int defaultQueueCapacity = 256;
+	/**
+	 * The most bytes of ciphertext held at once, in requests waiting in the queue or being analysed
+	 */
+	public static int defaultQueueBytes = 1 << 27;
+	/**
+	 * The most bytes of ciphertext in a batch. A request at least this big is a batch on its own
+	 */
+	public static int defaultBatchBytes = 1 << 16;
+	/**
+	 * The largest ciphertext accepted, in bytes. Anything bigger is turned away with 413
+	 */
+	public static int defaultMaxRequestBytes = 1 << 26;
+	/**
+	 * The longest <code>maxKeyLength</code> a request can ask for, however long its text. The improved Kappa test keeps 26 counts for every column of every keyword length, so this bounds its memory
+	 */
+	public static int maxKeyLengthLimit = 500;
+	/**
+	 * The number of threads reading requests
+	 */
+	private static final int HANDLER_THREADS = 4;
+	/**
+	 * The most bytes of a chunked request to read before taking permits for them
+	 */
+	private static final int READ_BYTES = 1 << 16;
+	/**
+	 * Sent if an operation fails so badly that a response describing the failure can't be made
+	 */
+	private static final Response FAILED = error(500, "The operation failed");
+
+	private final HttpServer server;
+	private final ExecutorService handlers;
+	private final ForkJoinPool workers;
+	private final Semaphore idleWorkers; // A permit for each batch that can be started without waiting
+	private final ArrayBlockingQueue<Job> queue;
+	private final Semaphore queuedBytes; // A permit for each byte of ciphertext that can still be held
+	private final Thread dispatcher;
+	private final int batchBytes;
+	private final int maxRequestBytes;
+	private final QuadgramScorer scorer;
+	private volatile boolean stopped;
+
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+
+	/**
+	 * A container for an HTTP response - <code>status</code>, <code>contentType</code> and <code>body</code>
+	 */
+	public static class Response {
+		public int status;
+		public String contentType;
+		public String body;
+
+		public Response(int status, String contentType, String body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * A request waiting in the queue
+	 */
+	private class Job {
+		final HttpExchange exchange;
+		final String operation;
+		final Map<String, String> params;
+		final byte[] body;
+		final int permits; // The permits taken from queuedBytes for the body
+
+		Job(HttpExchange exchange, String operation, Map<String, String> params, byte[] body, int permits) {
+			this.exchange = exchange;
+			this.operation = operation;
+			this.params = params;
+			this.body = body;
+			this.permits = permits;
+		}
+
+		void run() {
+			Response response = FAILED;
+			try {
+				response = AnalysisServer.this.run(operation, params, new String(body, StandardCharsets.UTF_8));
+			} catch(IllegalArgumentException e) {
+				response = error(400, e.getMessage());
+			} catch(Throwable e) {
+				// Errors too - an OutOfMemoryError from one request mustn't leave its client waiting, or stop the rest of its batch
+				response = error(500, e.toString());
+			} finally {
+				finish(response);
+			}
+		}
+
+		/**
+		 * Answers the request, and gives back the room its body took up in the queue
+		 * @param response - The response
+		 */
+		void finish(Response response) {
+			send(exchange, response);
+			queuedBytes.release(permits);
+			completed.increment();
+		}
+	}
+
+	/**
+	 * @param address - The address to listen on
+	 * @param parallelism - The most batches to analyse at once
+	 * @param queueCapacity - The most requests to hold waiting for a worker
+	 * @param queueBytes - The most bytes of ciphertext to hold, in requests waiting or being analysed
+	 * @param batchBytes - The most bytes of ciphertext to put in one batch
+	 * @param maxRequestBytes - The largest ciphertext accepted, in bytes. Anything bigger than <code>queueBytes</code> could never be held, so that's the largest if it's less
+	 * @param scorer - The scorer for <code>/solve</code> and <code>/analyse</code>, or null to not solve
+	 * @throws IOException If the address can't be bound to
+	 */
+	public AnalysisServer(InetSocketAddress address, int parallelism, int queueCapacity, int queueBytes, int batchBytes, int maxRequestBytes, QuadgramScorer scorer) throws IOException {
+		this.batchBytes = batchBytes;
+		this.maxRequestBytes = Math.min(maxRequestBytes, queueBytes);
+		this.scorer = scorer;
+		queue = new ArrayBlockingQueue<Job>(queueCapacity);
+		queuedBytes = new Semaphore(queueBytes);
+		workers = new ForkJoinPool(parallelism);
+		idleWorkers = new Semaphore(parallelism);
+		handlers = Executors.newFixedThreadPool(HANDLER_THREADS);
+		server = HttpServer.create(address, 0);
+		server.setExecutor(handlers);
+		server.createContext("/", this::handle);
+		dispatcher = new Thread(this::dispatch, "analysis-dispatcher");
+		dispatcher.setDaemon(true);
+	}
+
+	/**
+	 * Starts listening
+	 */
+	public void start() {
+		dispatcher.start();
+		server.start();
+	}
+
+	/**
+	 * Stops listening, turns away anything still in the queue, and waits for the batches that have started to finish
+	 */
+	public void stop() {
+		stopped = true;
+		server.stop(0);
+		dispatcher.interrupt();
+		try {
+			dispatcher.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Job job;
+		while((job = queue.poll()) != null) {
+			send(job.exchange, error(503, "The server is stopping"));
+			queuedBytes.release(job.permits);
+		}
+		workers.shutdown();
+		handlers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return The port being listened on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Reads a request and queues it, or answers it straight away if it can't be queued
+	 */
+	private void handle(HttpExchange exchange) {
+		try {
+			String path = exchange.getRequestURI().getPath();
+			if(path.equals("/status")) {
+				send(exchange, new Response(200, "application/json", status()));
+				return;
+			}
+			if(!exchange.getRequestMethod().equals("POST")) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				send(exchange, error(405, "Operations are POSTs, with the ciphertext as the body"));
+				return;
+			}
+			if(queue.remainingCapacity() == 0) {
+				reject(exchange); // Before the body is read, so a full queue costs nothing more
+				return;
+			}
+			String header = exchange.getRequestHeaders().getFirst("Content-Length");
+			long length = header == null ? -1 : Long.parseLong(header);
+			if(length > maxRequestBytes) {
+				send(exchange, error(413, "The ciphertext is longer than " + maxRequestBytes + " bytes"));
+				return;
+			}
+			// Taken before the body is read, so the bytes are never held without permits for them
+			int permits = Math.max(0, (int)length);
+			if(!queuedBytes.tryAcquire(permits)) {
+				reject(exchange);
+				return;
+			}
+			boolean queued = false;
+			try {
+				byte[] body;
+				try(InputStream in = exchange.getRequestBody()) {
+					if(length >= 0) {
+						body = in.readNBytes(permits);
+					} else {
+						// Chunked requests don't say how long they are, so permits are taken as each piece is read
+						ByteArrayOutputStream read = new ByteArrayOutputStream();
+						byte[] piece;
+						while((piece = in.readNBytes(READ_BYTES)).length > 0) {
+							if(read.size() + piece.length > maxRequestBytes) {
+								send(exchange, error(413, "The ciphertext is longer than " + maxRequestBytes + " bytes"));
+								return;
+							}
+							if(!queuedBytes.tryAcquire(piece.length)) {
+								reject(exchange);
+								return;
+							}
+							permits += piece.length;
+							read.write(piece);
+						}
+						body = read.toByteArray();
+					}
+				}
+				Job job = new Job(exchange, path, parseQuery(exchange.getRequestURI().getRawQuery()), body, permits);
+				if(stopped || !queue.offer(job)) {
+					reject(exchange);
+					return;
+				}
+				queued = true;
+				accepted.increment();
+			} finally {
+				if(!queued) {
+					queuedBytes.release(permits);
+				}
+			}
+		} catch(IOException | IllegalArgumentException e) {
+			send(exchange, error(400, e.getMessage()));
+		}
+	}
+
+	private void reject(HttpExchange exchange) {
+		rejected.increment();
+		exchange.getResponseHeaders().set("Retry-After", "1");
+		send(exchange, error(503, "The queue is full"));
+	}
+
+	/**
+	 * The dispatcher thread - waits for a worker to be free, then takes the next request and as many small ones after it as fit in a batch
+	 */
+	private void dispatch() {
+		while(!stopped) {
+			try {
+				idleWorkers.acquire();
+			} catch(InterruptedException e) {
+				return; // Stopping
+			}
+			ArrayList<Job> batch = new ArrayList<Job>();
+			try {
+				Job first = queue.take();
+				batch.add(first);
+				long bytes = first.body.length;
+				Job next;
+				// Only this thread takes from the queue, so whatever is peeked at is still there to be polled
+				while((next = queue.peek()) != null && bytes + next.body.length <= batchBytes) {
+					batch.add(queue.poll());
+					bytes += next.body.length;
+				}
+				batches.increment();
+				workers.execute(() -> {
+					try {
+						for(Job job : batch) {
+							job.run();
+						}
+					} finally {
+						idleWorkers.release();
+					}
+				});
+			} catch(InterruptedException e) {
+				idleWorkers.release();
+				return; // Stopping
+			} catch(Throwable e) {
+				// The batch never reached a worker - e.g. memory ran out while it was built, or the pool turned it away. Its requests are answered here,
+				// and the worker it was waiting for is given back, so the dispatcher carries on rather than leaving the queue to fill up for good
+				idleWorkers.release();
+				for(Job job : batch) {
+					job.finish(FAILED);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs an operation
+	 * @param operation - The path of the request, e.g. <code>/kappa</code>
+	 * @param params - The query parameters
+	 * @param text - The ciphertext
+	 * @return The response
+	 * @throws IllegalArgumentException If the operation doesn't exist, or a parameter is missing or isn't valid
+	 */
+	public Response run(String operation, Map<String, String> params, String text) {
+		if(operation.equals("/decrypt")) {
+			if(!params.containsKey("key")) {
+				throw new IllegalArgumentException("Missing parameter: key");
+			}
+			return new Response(200, "text/plain", new Decryptor(CipherText.parse(text)).decrypt(params.get("key")));
+		}
+		byte[] letters = CipherText.parse(text).getLetters();
+		// Sizes are clamped to what the text can use, so that a short request can't make the server allocate far more than its ciphertext
+		int maxKeyLength = clamp(intParam(params, "maxKeyLength", AnalysisUtils.defaultMaxKeyLength, 1), Math.min(letters.length / 2, maxKeyLengthLimit));
+		int maxShift = Math.max(1, letters.length / 2);
+		StringBuilder sb = new StringBuilder();
+		switch(operation) {
+			case "/analyse": {
+				int window = intParam(params, "window", 0, 0);
+				BatchAnalysis batch = new BatchAnalysis(1, false, maxKeyLength, intParam(params, "kasiskiLimit", BatchAnalysis.defaultKasiskiLimit, 0), clamp(intParam(params, "kasiskiTop", AnalysisUtils.defaultKasiskiTop, 1), letters.length), scorer,
+						intParam(params, "restarts", HillClimbSolver.defaultRestarts, 1), window, intParam(params, "windowStep", Math.max(1, window / 10), 1), Math.min(intParam(params, "autocorrelation", 0, 0), maxShift), null);
+				sb.append(batch.analyse(params.getOrDefault("name", ""), letters).toJson());
+				break;
+			}
+			case "/kappa": {
+				KappaResult kappa = AnalysisUtils.KappaTest(letters);
+				sb.append("{\"keylength\":").append(kappa.keylength).append(",\"keylengthExact\":").append(kappa.keylengthExact).append(",\"ko\":").append(kappa.ko).append('}');
+				break;
+			}
+			case "/kappa2": {
+				ColumnHistograms hists = ColumnHistograms.compute(letters, maxKeyLength);
+				ArrayList<IOCForKeyLen> iocs = AnalysisUtils.KappaTest2(hists);
+				sb.append("{\"keyLength\":").append(AnalysisUtils.likelyKeyLength(iocs, hists)).append(",\"iocs\":[");
+				for(int i = 0; i < iocs.size(); i++) {
+					sb.append(i == 0 ? "" : ",").append(iocs.get(i).ioc);
+				}
+				sb.append("]}");
+				break;
+			}
+			case "/chi-squared": {
+				int keyLength = clamp(intParam(params, "keyLength", -1, 1), letters.length / 2);
+				long[] counts = ColumnHistograms.countColumns(letters, keyLength);
+				LanguageProfile language = params.containsKey("language") ? LanguageProfile.get(params.get("language")) : LanguageProfile.identifyBest(counts, keyLength);
+				if(language == null) {
+					throw new IllegalArgumentException("Unknown language: " + params.get("language"));
+				}
+				sb.append("{\"key\":\"");
+				for(ShiftsForColumn column : AnalysisUtils.ChiSquaredTest(counts, keyLength, language)) {
+					sb.append(column.getBestLetter());
+				}
+				sb.append("\",\"language\":").append(Utils.jsonString(language.getCode())).append('}');
+				break;
+			}
+			case "/kasiski": {
+				int top = clamp(intParam(params, "top", AnalysisUtils.defaultKasiskiTop, 1), letters.length);
+				KasiskiResult kasiski = AnalysisUtils.KasiskiExamineTop(CipherText.fromLetters(letters), top,
+						intParam(params, "minLength", AnalysisUtils.defaultKasiskiMinLength, 2), intParam(params, "maxLength", AnalysisUtils.defaultKasiskiMaxLength, 2));
+				sb.append("{\"repeats\":").append(kasiski.size()).append(",\"keyLength\":").append(AnalysisUtils.KasiskiKeyLength(kasiski, maxKeyLength));
+				if(params.containsKey("top")) {
+					sb.append(",\"sequences\":[");
+					for(int row = 0; row < kasiski.size(); row++) {
+						sb.append(row == 0 ? "" : ",").append(Utils.jsonString(kasiski.getSequence(row)));
+					}
+					sb.append(']');
+				}
+				sb.append('}');
+				break;
+			}
+			case "/autocorrelation": {
+				Autocorrelation correlation = Autocorrelation.scan(letters, clamp(intParam(params, "maxShift", Autocorrelation.defaultMaxShift, 1), maxShift));
+				sb.append("{\"keyLength\":").append(correlation.getKeyLength(maxKeyLength)).append(",\"periods\":[");
+				int[] periods = correlation.getBestPeriods(maxKeyLength, HillClimbSolver.defaultKeyLengths);
+				for(int i = 0; i < periods.length; i++) {
+					sb.append(i == 0 ? "" : ",").append(periods[i]);
+				}
+				sb.append("],\"rates\":[");
+				float[] rates = correlation.getRates();
+				for(int s = 1; s < rates.length; s++) {
+					sb.append(s == 1 ? "" : ",").append(rates[s]);
+				}
+				sb.append("]}");
+				break;
+			}
+			case "/solve": {
+				if(scorer == null) {
+					throw new IllegalArgumentException("The server was started without --quadgrams");
+				}
+				sb.append("{\"solutions\":[");
+				ArrayList<HillClimbSolver.Solution> solutions = HillClimbSolver.solve(letters, scorer);
+				for(int i = 0; i < solutions.size(); i++) {
+					sb.append(i == 0 ? "" : ",").append("{\"key\":").append(Utils.jsonString(solutions.get(i).key)).append(",\"score\":").append(solutions.get(i).score).append('}');
+				}
+				sb.append("]}");
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Unknown operation: " + operation);
+		}
+		return new Response(200, "application/json", sb.toString());
+	}
+
+	/**
+	 * @param fallback - The value if the parameter isn't given, or -1 if it has to be
+	 * @param min - The smallest value allowed
+	 */
+	private static int intParam(Map<String, String> params, String name, int fallback, int min) {
+		String value = params.get(name);
+		if(value == null) {
+			if(fallback < 0) {
+				throw new IllegalArgumentException("Missing parameter: " + name);
+			}
+			return fallback;
+		}
+		try {
+			int n = Integer.parseInt(value);
+			if(n < min) {
+				throw new IllegalArgumentException("Parameter " + name + " must be at least " + min);
+			}
+			return n;
+		} catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Parameter " + name + " isn't a number: " + value);
+		}
+	}
+
+	/**
+	 * @return <code>value</code>, or <code>limit</code> if that's less, but never less than 1 unless <code>value</code> is
+	 */
+	private static int clamp(int value, int limit) {
+		return Math.min(value, Math.max(1, limit));
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		HashMap<String, String> params = new HashMap<String, String>();
+		if(query == null || query.isEmpty()) {
+			return params;
+		}
+		for(String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return params;
+	}
+
+	private String status() {
+		return "{\"queued\":" + queue.size() + ",\"capacity\":" + (queue.size() + queue.remainingCapacity()) + ",\"freeBytes\":" + queuedBytes.availablePermits() + ",\"accepted\":" + accepted.sum() + ",\"rejected\":" + rejected.sum()
+				+ ",\"completed\":" + completed.sum() + ",\"batches\":" + batches.sum() + "}";
+	}
+
+	private static Response error(int status, String message) {
+		return new Response(status, "application/json", "{\"error\":" + Utils.jsonString(String.valueOf(message)) + "}");
+	}
+
+	/**
+	 * Sends a response and closes the exchange. If the client has gone, there's no one to tell, so it's dropped
+	 */
+	private static void send(HttpExchange exchange, Response response) {
+		try {
+			byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", response.contentType + "; charset=utf-8");
+			exchange.sendResponseHeaders(response.status, bytes.length == 0 ? -1 : bytes.length);
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		} catch(IOException e) {
+			// The client has gone
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Parses the command line and runs the server until the JVM is stopped
+	 * @param args - The command line arguments, not including <code>--serve</code>
+	 * @return The exit code - 1 if the server couldn't be started, 2 if the arguments were wrong. It doesn't return otherwise
+	 */
+	public static int run(String[] args) {
+		int port = defaultPort;
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		int queueCapacity = defaultQueueCapacity;
+		int queueBytes = defaultQueueBytes;
+		int batchBytes = defaultBatchBytes;
+		Path quadgrams = null;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				switch(args[i]) {
+					case "--port":
+						port = Integer.parseInt(args[++i]);
+						break;
+					case "-j":
+					case "--parallelism":
+						parallelism = Integer.parseInt(args[++i]);
+						break;
+					case "--queue":
+						queueCapacity = Integer.parseInt(args[++i]);
+						break;
+					case "--queue-bytes":
+						queueBytes = Integer.parseInt(args[++i]);
+						break;
+					case "--batch-bytes":
+						batchBytes = Integer.parseInt(args[++i]);
+						break;
+					case "--quadgrams":
+						quadgrams = Paths.get(args[++i]);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+			if(port < 0 || port > 65535 || parallelism < 1 || queueCapacity < 1 || queueBytes < 1 || batchBytes < 0) {
+				throw new IllegalArgumentException("An option is out of range");
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java main/Main --serve [--port <n>] [-j <n>] [--queue <n>] [--queue-bytes <n>] [--batch-bytes <n>] [--quadgrams <file>]");
+			if(e.getMessage() != null) {
+				System.err.println(e.getMessage());
+			}
+			return 2;
+		}
+
+		AnalysisServer server;
+		try {
+			QuadgramScorer scorer = quadgrams == null ? null : QuadgramScorer.load(quadgrams);
+			server = new AnalysisServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), parallelism, queueCapacity, queueBytes, batchBytes, defaultMaxRequestBytes, scorer);
+		} catch(IOException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		server.start();
+		System.err.println("Listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + "/");
+		while(true) {
+			try {
+				Thread.sleep(Long.MAX_VALUE);
+			} catch(InterruptedException e) {
+				// Keep serving until the JVM is stopped
+			}
+		}
+	}
+}
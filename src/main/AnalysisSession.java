@@ -0,0 +1,483 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * Keeps the counts behind the analyses of a ciphertext up to date as the ciphertext is edited, so they don't have to be redone from scratch every time.<br>
+ * <br>
+ * Three things are kept: the letter counts (for the Kappa test), the column histograms (for the improved Kappa test and the chi-squared test),
+ * and a repeat index - the positions of every trigram in the text, along with how many pairs of repeated trigrams are spaced a multiple of each keyword length (for a Kasiski estimate of the keyword length).<br>
+ * <br>
+ * Appending k letters, or changing k letters in place (without changing the length), takes time proportional to k plus the repeats it affects - not to the length of the text.
+ * For each trigram added or taken away, the repeat index does work proportional to the longest keyword length if the trigram has residue counts (see {@link #defaultResidueBudget}),
+ * or to that times the trigram's other occurrences if it doesn't. If that would come to more than counting the repeat index again from scratch - when more letters are appended than the text already has, for instance - it's counted from scratch instead.
+ * Any other edit - inserting or deleting letters anywhere but the end - moves every later letter into a different column, so it needs everything counting again.<br>
+ * <br>
+ * Only the trigram estimate of the keyword length is kept up to date. The full Kasiski examination, with repeated sequences of every length, isn't incremental - it still has to be done over the whole text
+ */
+public class AnalysisSession {
+	private static final int TRIGRAMS = 26 * 26 * 26;
+	/**
+	 * Once a trigram has this many occurrences, its occurrences can also be counted by their position mod every keyword length,
+	 * so that adding or removing another one takes time proportional to the longest keyword length rather than to the number of occurrences
+	 */
+	private static final int RESIDUE_THRESHOLD = 32;
+	/**
+	 * The most memory, in bytes, that the residue counts of all the trigrams in a session can take up. Each trigram with residue counts needs 4 bytes for every residue of every keyword length
+	 * (around 20 KB for keyword lengths up to 100), so only the most common trigrams get them - the rest have their spacings counted pair by pair
+	 */
+	public static long defaultResidueBudget = 8 << 20;
+
+	private final int maxKeyLength;
+	private byte[] letters = new byte[64];
+	private int length;
+	private final long[] letterCounts = new long[26];
+	private final ColumnHistograms hists;
+	private final int[][] trigramPositions = new int[TRIGRAMS][]; // The start of each occurrence of each trigram, in ascending order
+	private final int[] trigramCounts = new int[TRIGRAMS];
+	private final int[][] trigramResidues = new int[TRIGRAMS][]; // For common trigrams, the number of occurrences at each position mod k, for each k - see residueIndex
+	private final int residueSize; // The length of a residue count array
+	private final int[] residueTrigrams; // The trigrams that have residue counts
+	private int residueTrigramCount;
+	private final long[] spacingMultiples; // [k] = the number of pairs of occurrences of the same trigram that are spaced a multiple of k apart
+	private long spacingPairs;
+
+	/**
+	 * Makes a session with no text yet, with the default residue budget
+	 * @param maxKeyLength - The longest keyword length to keep counts for
+	 */
+	public AnalysisSession(int maxKeyLength) {
+		this(maxKeyLength, defaultResidueBudget);
+	}
+
+	/**
+	 * Makes a session with no text yet
+	 * @param maxKeyLength - The longest keyword length to keep counts for
+	 * @param residueBudget - The most memory, in bytes, for the residue counts of the common trigrams
+	 * @see #defaultResidueBudget
+	 */
+	public AnalysisSession(int maxKeyLength, long residueBudget) {
+		this.maxKeyLength = maxKeyLength;
+		hists = new ColumnHistograms(maxKeyLength);
+		spacingMultiples = new long[maxKeyLength + 1];
+		residueSize = residueIndex(maxKeyLength + 1, 0);
+		residueTrigrams = new int[(int)Math.min(TRIGRAMS, Math.max(0, residueBudget) / (residueSize * 4L))];
+	}
+
+	/**
+	 * Makes a session and counts the whole of a text
+	 * @param letters - The text, as values from 0 to 25. This is copied
+	 * @param maxKeyLength - The longest keyword length to keep counts for
+	 * @return The session
+	 */
+	public static AnalysisSession of(byte[] letters, int maxKeyLength) {
+		AnalysisSession session = new AnalysisSession(maxKeyLength);
+		session.append(letters, 0, letters.length);
+		return session;
+	}
+
+	/**
+	 * Brings the session up to date with a new version of the text, if it can be done without counting everything again - that is, if the new text is the old text with letters added onto the end,
+	 * or with some letters changed but the length the same. The two versions are compared with a single {@link Arrays#mismatch(byte[], int, int, byte[], int, int)} to find what's changed
+	 * @param newLetters - The new text, as values from 0 to 25
+	 * @return Whether the session was brought up to date. If not, nothing has been changed, and a new session should be made for the new text
+	 */
+	public boolean update(byte[] newLetters) {
+		int prefix = Arrays.mismatch(letters, 0, length, newLetters, 0, newLetters.length);
+		if(prefix < 0) {
+			return true; // No change
+		}
+		if(prefix == length) {
+			append(newLetters, length, newLetters.length);
+			return true;
+		}
+		if(newLetters.length != length) {
+			return false;
+		}
+		int end = length;
+		while(end > prefix && letters[end - 1] == newLetters[end - 1]) {
+			end--;
+		}
+		replace(prefix, newLetters, prefix, end);
+		return true;
+	}
+
+	/**
+	 * Adds letters onto the end of the text
+	 * @param newLetters - The letters, as values from 0 to 25
+	 * @param from - The index of the first letter to add (inclusive)
+	 * @param to - The index of the last letter to add (exclusive)
+	 */
+	public void append(byte[] newLetters, int from, int to) {
+		int count = to - from;
+		if(length + count > letters.length) {
+			letters = Arrays.copyOf(letters, Math.max(letters.length * 2, length + count));
+		}
+		System.arraycopy(newLetters, from, letters, length, count);
+		for(int i = length; i < length + count; i++) {
+			letterCounts[letters[i]]++;
+		}
+		hists.add(letters, length, length + count);
+		int oldLength = length;
+		length += count;
+		// The trigrams that end in the new letters. Adding them one at a time takes work for every earlier occurrence of the ones without residue counts,
+		// so if that's more than there'd be in counting the whole text again, the whole text is counted again
+		int first = Math.max(0, oldLength - 2);
+		long work = 0;
+		for(int start = first; start <= length - 3 && work <= length; start++) {
+			int trigram = trigramAt(start);
+			work += trigramResidues[trigram] != null ? 1 : trigramCounts[trigram];
+		}
+		if(count > oldLength || work > length) {
+			countRepeats();
+			return;
+		}
+		for(int start = first; start <= length - 3; start++) {
+			addTrigram(start);
+		}
+	}
+
+	/**
+	 * Counts the repeat index again from scratch. The positions of each trigram are gathered with a counting sort, then the spacings of each trigram are counted all at once -
+	 * by residue, in a scratch array, if it's common, or pair by pair if it isn't. The most common trigrams that fit in the residue budget keep their residue counts
+	 */
+	private void countRepeats() {
+		Arrays.fill(trigramCounts, 0);
+		Arrays.fill(trigramResidues, null);
+		Arrays.fill(spacingMultiples, 0);
+		spacingPairs = 0;
+		residueTrigramCount = 0;
+		for(int start = 0; start <= length - 3; start++) {
+			trigramCounts[trigramAt(start)]++;
+		}
+		int common = 0;
+		for(int trigram = 0; trigram < TRIGRAMS; trigram++) {
+			int count = trigramCounts[trigram];
+			trigramPositions[trigram] = count == 0 ? null : new int[count];
+			if(count >= RESIDUE_THRESHOLD) {
+				common++;
+			}
+		}
+		int[] filled = new int[TRIGRAMS];
+		for(int start = 0; start <= length - 3; start++) {
+			int trigram = trigramAt(start);
+			trigramPositions[trigram][filled[trigram]++] = start;
+		}
+		// The common trigrams, most occurrences first, packed with their counts so they sort as longs
+		long[] byCount = new long[common];
+		common = 0;
+		for(int trigram = 0; trigram < TRIGRAMS; trigram++) {
+			if(trigramCounts[trigram] >= RESIDUE_THRESHOLD) {
+				byCount[common++] = -((long)trigramCounts[trigram] << 32 | trigram);
+			}
+		}
+		Arrays.sort(byCount);
+		for(int i = 0; i < byCount.length && i < residueTrigrams.length; i++) {
+			int trigram = (int)-byCount[i];
+			trigramResidues[trigram] = new int[residueSize];
+			residueTrigrams[residueTrigramCount++] = trigram;
+		}
+		int[] scratch = null;
+		for(int trigram = 0; trigram < TRIGRAMS; trigram++) {
+			int count = trigramCounts[trigram];
+			int[] positions = trigramPositions[trigram];
+			if(count < RESIDUE_THRESHOLD) {
+				for(int i = 1; i < count; i++) {
+					for(int j = 0; j < i; j++) {
+						AnalysisUtils.countMultiples(positions[i] - positions[j], spacingMultiples, 1);
+					}
+				}
+			} else {
+				int[] residues = trigramResidues[trigram];
+				if(residues == null) {
+					if(scratch == null) {
+						scratch = new int[residueSize];
+					} else {
+						Arrays.fill(scratch, 0);
+					}
+					residues = scratch;
+				}
+				for(int i = 0; i < count; i++) {
+					for(int k = 2; k <= maxKeyLength; k++) {
+						int index = residueIndex(k, positions[i] % k);
+						spacingMultiples[k] += residues[index];
+						residues[index]++;
+					}
+				}
+			}
+			spacingPairs += (long)count * (count - 1) / 2;
+		}
+	}
+
+	/**
+	 * Changes some letters of the text in place, without changing its length
+	 * @param position - The index in the text of the first letter to change
+	 * @param newLetters - The letters to put there, as values from 0 to 25
+	 * @param from - The index in <code>newLetters</code> of the first letter (inclusive)
+	 * @param to - The index in <code>newLetters</code> of the last letter (exclusive)
+	 */
+	public void replace(int position, byte[] newLetters, int from, int to) {
+		int count = to - from;
+		if(position < 0 || position + count > length) {
+			throw new IndexOutOfBoundsException("Can't replace letters " + position + " to " + (position + count) + " of " + length);
+		}
+		// Every trigram that includes a changed letter
+		int firstTrigram = Math.max(0, position - 2);
+		int lastTrigram = Math.min(length - 3, position + count - 1);
+		for(int start = firstTrigram; start <= lastTrigram; start++) {
+			removeTrigram(start);
+		}
+		for(int i = 0; i < count; i++) {
+			int oldLetter = letters[position + i];
+			int newLetter = newLetters[from + i];
+			if(oldLetter != newLetter) {
+				letterCounts[oldLetter]--;
+				letterCounts[newLetter]++;
+				hists.change(position + i, oldLetter, newLetter);
+				letters[position + i] = (byte)newLetter;
+			}
+		}
+		for(int start = firstTrigram; start <= lastTrigram; start++) {
+			addTrigram(start);
+		}
+	}
+
+	private int trigramAt(int start) {
+		return (letters[start] * 26 + letters[start + 1]) * 26 + letters[start + 2];
+	}
+
+	private void addTrigram(int start) {
+		int trigram = trigramAt(start);
+		int[] positions = trigramPositions[trigram];
+		int count = trigramCounts[trigram];
+		if(positions == null) {
+			positions = new int[4];
+		} else if(count == positions.length) {
+			positions = Arrays.copyOf(positions, count * 2);
+		}
+		trigramPositions[trigram] = positions;
+		int[] residues = trigramResidues[trigram];
+		if(residues != null) {
+			for(int k = 2; k <= maxKeyLength; k++) {
+				int index = residueIndex(k, start % k);
+				spacingMultiples[k] += residues[index];
+				residues[index]++;
+			}
+		} else {
+			for(int i = 0; i < count; i++) {
+				AnalysisUtils.countMultiples(Math.abs(start - positions[i]), spacingMultiples, 1);
+			}
+		}
+		spacingPairs += count;
+		// Appended trigrams always go on the end, but replaced ones can go anywhere
+		int index = count == 0 || positions[count - 1] < start ? count : -(Arrays.binarySearch(positions, 0, count, start) + 1);
+		System.arraycopy(positions, index, positions, index + 1, count - index);
+		positions[index] = start;
+		count++;
+		trigramCounts[trigram] = count;
+		// Checked each time the count reaches a power of 2, so the cost of counting the residues is spread over the occurrences since the last check
+		if(residues == null && count >= RESIDUE_THRESHOLD && (count & (count - 1)) == 0) {
+			giveResidues(trigram);
+		}
+	}
+
+	/**
+	 * Gives a trigram residue counts, if there's room in the budget or another trigram with residue counts has less than half as many occurrences.
+	 * Residue counts are only there to save time, so taking them off a trigram doesn't change any results
+	 */
+	private void giveResidues(int trigram) {
+		int count = trigramCounts[trigram];
+		int[] residues;
+		if(residueTrigramCount < residueTrigrams.length) {
+			residues = new int[residueSize];
+			residueTrigrams[residueTrigramCount++] = trigram;
+		} else {
+			int slot = -1;
+			for(int i = 0; i < residueTrigramCount; i++) {
+				if(slot < 0 || trigramCounts[residueTrigrams[i]] < trigramCounts[residueTrigrams[slot]]) {
+					slot = i;
+				}
+			}
+			if(slot < 0 || trigramCounts[residueTrigrams[slot]] * 2 > count) {
+				return;
+			}
+			residues = trigramResidues[residueTrigrams[slot]];
+			trigramResidues[residueTrigrams[slot]] = null;
+			Arrays.fill(residues, 0);
+			residueTrigrams[slot] = trigram;
+		}
+		int[] positions = trigramPositions[trigram];
+		for(int i = 0; i < count; i++) {
+			for(int k = 2; k <= maxKeyLength; k++) {
+				residues[residueIndex(k, positions[i] % k)]++;
+			}
+		}
+		trigramResidues[trigram] = residues;
+	}
+
+	private void removeTrigram(int start) {
+		int trigram = trigramAt(start);
+		int[] positions = trigramPositions[trigram];
+		int count = trigramCounts[trigram];
+		int index = Arrays.binarySearch(positions, 0, count, start);
+		System.arraycopy(positions, index + 1, positions, index, count - index - 1);
+		count--;
+		trigramCounts[trigram] = count;
+		int[] residues = trigramResidues[trigram];
+		if(residues != null) {
+			for(int k = 2; k <= maxKeyLength; k++) {
+				int residue = residueIndex(k, start % k);
+				residues[residue]--;
+				spacingMultiples[k] -= residues[residue];
+			}
+		} else {
+			for(int i = 0; i < count; i++) {
+				AnalysisUtils.countMultiples(Math.abs(start - positions[i]), spacingMultiples, -1);
+			}
+		}
+		spacingPairs -= count;
+	}
+
+	/**
+	 * The residues for keyword length k are stored after those of all the shorter keyword lengths, starting from 2
+	 */
+	private static int residueIndex(int keyLength, int residue) {
+		return keyLength * (keyLength - 1) / 2 - 1 + residue;
+	}
+
+	public int getMaxKeyLength() {
+		return maxKeyLength;
+	}
+
+	/**
+	 * @return The number of letters in the text
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return A copy of the text, as values from 0 to 25
+	 */
+	public byte[] getLetters() {
+		return Arrays.copyOf(letters, length);
+	}
+
+	public ColumnHistograms getColumnHistograms() {
+		return hists;
+	}
+
+	/**
+	 * @return The result of the Kappa test on the text
+	 * @see AnalysisUtils#KappaTest(long[])
+	 */
+	public KappaResult getKappaResult() {
+		return AnalysisUtils.KappaTest(letterCounts);
+	}
+
+	/**
+	 * @param language - The language of the plaintext
+	 * @return The result of the Kappa test on the text, for a plaintext in <code>language</code>
+	 * @see AnalysisUtils#KappaTest(long[], LanguageProfile)
+	 */
+	public KappaResult getKappaResult(LanguageProfile language) {
+		return AnalysisUtils.KappaTest(letterCounts, language);
+	}
+
+	/**
+	 * @return The result of the improved Kappa test on the text
+	 * @see AnalysisUtils#KappaTest2(ColumnHistograms)
+	 */
+	public ArrayList<IOCForKeyLen> getIOCs() {
+		return AnalysisUtils.KappaTest2(hists);
+	}
+
+	/**
+	 * @param iocs - The result of the improved Kappa test on the text, from {@link #getIOCs()}
+	 * @return The most likely keyword length, ranked for the language the text looks most like, or 0 if there's no text
+	 * @see AnalysisUtils#likelyKeyLength(ArrayList, ColumnHistograms)
+	 */
+	public int getKeyLength(ArrayList<IOCForKeyLen> iocs) {
+		return AnalysisUtils.likelyKeyLength(iocs, hists);
+	}
+
+	/**
+	 * @param keyLength - The keyword length. Must be no longer than the longest keyword length counts are kept for
+	 * @return The result of the chi-squared test on the text, against the registered language the columns look most like
+	 * @see #getLanguage(int)
+	 */
+	public ArrayList<ShiftsForColumn> getShifts(int keyLength) {
+		return getShifts(keyLength, getLanguage(keyLength));
+	}
+
+	/**
+	 * @param keyLength - The keyword length. Must be no longer than the longest keyword length counts are kept for
+	 * @param language - The language of the plaintext
+	 * @return The result of the chi-squared test on the text
+	 * @see AnalysisUtils#ChiSquaredTest(long[], int, LanguageProfile)
+	 */
+	public ArrayList<ShiftsForColumn> getShifts(int keyLength, LanguageProfile language) {
+		return AnalysisUtils.ChiSquaredTest(hists.getCounts(keyLength), keyLength, language);
+	}
+
+	/**
+	 * @param keyLength - The keyword length. Must be no longer than the longest keyword length counts are kept for
+	 * @return The registered language the text looks most like, with its columns split for <code>keyLength</code>
+	 * @see LanguageProfile#identify(long[], int)
+	 */
+	public LanguageProfile getLanguage(int keyLength) {
+		return LanguageProfile.identifyBest(hists.getCounts(keyLength), keyLength);
+	}
+
+	/**
+	 * Gets all the results that come from the counts at once. The full Kasiski examination isn't one of them, so it's left null
+	 * @return The results
+	 */
+	public AnalysisResults getResults() {
+		AnalysisResults results = new AnalysisResults();
+		results.letters = length;
+		results.iocs = getIOCs();
+		results.keyLength = getKeyLength(results.iocs);
+		results.language = getLanguage(Math.max(1, results.keyLength));
+		results.kappa = getKappaResult(results.language);
+		results.shifts = results.keyLength > 0 ? getShifts(results.keyLength, results.language) : new ArrayList<ShiftsForColumn>();
+		results.kasiskiKeyLength = getKasiskiKeyLength();
+		return results;
+	}
+
+	/**
+	 * @return The number of bytes taken up by the trigram positions and residue counts of the repeat index. The residue counts never take up more than the budget the session was made with,
+	 * so this grows with the length of the text, not with the length of the text times the longest keyword length
+	 */
+	public long getRepeatIndexBytes() {
+		long bytes = (long)residueTrigramCount * residueSize * 4;
+		for(int[] positions : trigramPositions) {
+			if(positions != null) {
+				bytes += positions.length * 4L;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return The number of pairs of occurrences of the same trigram
+	 */
+	public long getRepeatedTrigramPairs() {
+		return spacingPairs;
+	}
+
+	/**
+	 * Estimates the keyword length from the spacings between repeated trigrams, the same way as {@link AnalysisUtils#KasiskiKeyLength(KasiskiResult, int)}.
+	 * Unlike that, every pair of occurrences counts, rather than each distinct spacing of each repeated sequence
+	 * @return The most likely keyword length, or 0 if no trigrams are repeated
+	 * @see AnalysisUtils#KasiskiKeyLength(long[], long)
+	 */
+	public int getKasiskiKeyLength() {
+		return AnalysisUtils.KasiskiKeyLength(spacingMultiples, spacingPairs);
+	}
+}
@@ -1,9 +1,13 @@
 package main;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-
-import main.Utils.Struct2;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
 
 public class AnalysisUtils {
 	private AnalysisUtils() {
@@ -13,6 +17,48 @@ public class AnalysisUtils {
 	public static char[] alphabetLower = "abcdefghijklmnopqrstuvwxyz".toCharArray();
 	public static char[] alphabetUpper = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
 	
+	/**
+	 * The longest keyword length that is tested when one isn't given
+	 */
+	public static int defaultMaxKeyLength = 100;
+	
+	/**
+	 * The shortest sequence the top-K Kasiski examination keeps when one isn't given. Repeats of two letters are mostly chance
+	 */
+	public static int defaultKasiskiMinLength = 3;
+	
+	/**
+	 * The longest sequence the top-K Kasiski examination keeps when one isn't given. Longer repeats are counted as their first <code>defaultKasiskiMaxLength</code> letters
+	 */
+	public static int defaultKasiskiMaxLength = 32;
+	
+	/**
+	 * The most repeated sequences the Kasiski examination of a long text keeps when a number isn't given. The full examination lists every repeat,
+	 * which for a million letters is more than a few gigabytes of heap, where the top-K one needs a few megabytes
+	 * @see #KasiskiExamineTop(CipherText, int)
+	 */
+	public static int defaultKasiskiTop = 1000;
+	
+	/**
+	 * The fewest letters each column should have for a keyword length to be picked from the improved Kappa test
+	 * @see #usableIOCs(ArrayList, long)
+	 */
+	public static int defaultMinColumnLetters = 20;
+	
+	/**
+	 * The probability that any two randomly chosen letters of English text are the same
+	 */
+	public static float englishKappa = 0.067f;
+	
+	/**
+	 * The relative frequency of each letter in English text, A to Z
+	 * @see <a href="https://en.wikipedia.org/wiki/Letter_frequency">https://en.wikipedia.org/wiki/Letter_frequency</a>
+	 */
+	public static final float[] englishFrequencies = {
+		0.08167f, 0.01492f, 0.02782f, 0.04253f, 0.12702f, 0.02228f, 0.02015f, 0.06094f, 0.06966f, 0.00153f, 0.00772f, 0.04025f, 0.02406f,
+		0.06749f, 0.07507f, 0.01929f, 0.00095f, 0.05987f, 0.06327f, 0.09056f, 0.02758f, 0.00978f, 0.02360f, 0.00150f, 0.01974f, 0.00074f
+	};
+	
 	/**
 	 * A container for a <code>String</code> and an <code>int</code> - <code>sequence</code> and <code>spacing</code> respectively.<br>
 	 * <code>sequence</code> sequence of characters, or piece of text, that was repeated.
@@ -78,86 +124,672 @@ public class AnalysisUtils {
 		}
 	}
 	
+	/**
+	 * A container for the results of the Kappa (Friedman) test - <code>keylength</code>, <code>keylengthExact</code> and <code>ko</code>.<br>
+	 * <code>keylength</code> is the estimated keyword length, rounded to the nearest whole number, or 0 if the text was too short or too uniform to estimate it.<br>
+	 * <code>keylengthExact</code> is the estimate before rounding.<br>
+	 * <code>ko</code> is the observed probability that any two letters picked from the text are the same
+	 * @see <a href="https://en.wikipedia.org/wiki/Vigen%C3%A8re_cipher#Friedman_test">https://en.wikipedia.org/wiki/Vigenère_cipher#Friedman_test</a>
+	 */
+	public static class KappaResult {
+		public int keylength;
+		public float keylengthExact;
+		public float ko;
+		
+		public KappaResult(int keylen, float keylenExact, float ko) {
+			keylength = keylen;
+			keylengthExact = keylenExact;
+			this.ko = ko;
+		}
+	}
+	
+	/**
+	 * A container for the Caesar shifts of one column of the keyword, most likely first - <code>column</code>, <code>shifts</code> and <code>scores</code>.<br>
+	 * <code>column</code> is the index of the letter in the keyword.<br>
+	 * <code>shifts</code> is all 26 shifts (0 is A, 25 is Z), ranked from most to least likely.<br>
+	 * <code>scores</code> is the chi-squared statistic for each shift in <code>shifts</code> - lower is a better match to English
+	 * @see <a href="http://www.practicalcryptography.com/cryptanalysis/text-characterisation/chi-squared-statistic">http://www.practicalcryptography.com/cryptanalysis/text-characterisation/chi-squared-statistic</a>
+	 */
+	public static class ShiftsForColumn {
+		public int column;
+		public int[] shifts;
+		public float[] scores;
+		
+		public ShiftsForColumn(int column, int[] shifts, float[] scores) {
+			this.column = column;
+			this.shifts = shifts;
+			this.scores = scores;
+		}
+		
+		/**
+		 * @return The most likely keyword letter for this column
+		 */
+		public char getBestLetter() {
+			return alphabetUpper[shifts[0]];
+		}
+	}
+	
+	public static interface KasiskiListener {
+		/**
+		 * This method is called every time the suffix array Kasiski examination finishes with an LCP interval, whether or not it found a repeated sequence there.
+		 * It's called on the thread doing the examination
+		 * @param found - The Builder the repeated sequences are being collected in. Any rows past the ones seen by the last call are new, and are in the order they were found in, not the final order
+		 * @param progress - The fraction of the suffix array that has been walked, from 0 to 1
+		 * @return Whether to carry on. If this returns false the examination stops, by throwing a CancellationException
+		 */
+		public abstract boolean update(KasiskiResult.Builder found, float progress);
+	}
+	
 	/**
 	 * Searches the input text and finds repeated sections of the text. It bundles each repeat into an ArrayList that is returned as a result.<br><br>
 	 * In the ArrayList, there isn't a separate entry for each repetition - so if, for example, "ABC" was repeated 3 times in the text, the returned ArrayList would have 1 entry describing the repetition between the 1st & 2nd, the 1st & 3rd, and the 2nd & 3rd
 	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
 	 * @return An ArrayList of RepeatedSequences (basically just a container for a String and an int, which are the repeated piece of text and the distance between the occurances respectively)
 	 * @see RepeatedSequence
+	 * @see #KasiskiExamine(String)
 	 * @see <a href="https://en.wikipedia.org/wiki/Kasiski_examination">https://en.wikipedia.org/wiki/Kasiski_examination</a>
 	 */
 	public static ArrayList<RepeatedSequence> KasiskiTest(String text) {
-		ArrayList<RepeatedSequence> sequencesSeparate = new ArrayList<RepeatedSequence>(); // Basically this list contains a separate entry for each repetition
+		return KasiskiExamine(text).toRepeatedSequences();
+	}
+	
+	/**
+	 * Does the Kasiski test on the letters of a CipherText. The sequences are all in capitals
+	 * @see #KasiskiTest(String)
+	 */
+	public static ArrayList<RepeatedSequence> KasiskiTest(CipherText text) {
+		return KasiskiExamine(text).toRepeatedSequences();
+	}
+	
+	/**
+	 * Does the same search as {@link #KasiskiTest(String)}, but returns the results as a KasiskiResult, so nothing is boxed and the sequences aren't copied out of the text.
+	 * The spacings of each sequence are collected straight into a primitive set as they're found, rather than making an object for each pair of occurrences and packing them afterwards
+	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
+	 * @return The repeated sequences and their spacings
+	 * @see KasiskiResult
+	 */
+	public static KasiskiResult KasiskiExamine(String text) {
+		return examineByIndex(text);
+	}
+	
+	/**
+	 * Does the same search as {@link #KasiskiExamine(String)} on the letters of a CipherText. The sequences are all in capitals
+	 * @see #KasiskiExamine(String)
+	 */
+	public static KasiskiResult KasiskiExamine(CipherText text) {
+		return examineByIndex(text.asLetterSequence());
+	}
+	
+	private static KasiskiResult examineByIndex(CharSequence text) {
+		// A LinkedHashMap keeps the sequences in the order they were first found in
+		LinkedHashMap<String, SequenceSpacings> spacingsBySequence = new LinkedHashMap<String, SequenceSpacings>();
 		for(int i = 0; i < text.length() - 1; i++) {
-			ArrayList<Struct2<String, Integer[]>> list = Utils.findAllOccurrences(text, i);
-			for(Struct2<String, Integer[]> entry : list) {
-				if(entry.getObj1().length() <= 1) {
-					continue; // We don't want to test for single letters. That will just dilute the actually useful data
+			final int start = i;
+			Utils.findAllOccurrences(text, i, (length, positions, count) -> {
+				if(length <= 1) {
+					return; // We don't want to test for single letters. That will just dilute the actually useful data
 				}
-				final Integer[] positions = entry.getObj2();
-				for(int j = 0; j < positions.length; j++) { // Calculate the spacing between every possible pairing
-					for(int k = j + 1; k < positions.length; k++) {
-						if(j != k) {
-							int prev = positions[j];
-							int curr = positions[k];
-							sequencesSeparate.add(new RepeatedSequence(entry.getObj1(), curr - prev));
-						}
+				String sequence = text.subSequence(start, start + length).toString();
+				SequenceSpacings entry = spacingsBySequence.get(sequence);
+				if(entry == null) {
+					entry = new SequenceSpacings(start, length);
+					spacingsBySequence.put(sequence, entry);
+				}
+				for(int j = 0; j < count; j++) { // Calculate the spacing between every possible pairing
+					for(int k = j + 1; k < count; k++) {
+						entry.spacings.add(positions[k] - positions[j]);
 					}
 				}
+			});
+		}
+		
+		KasiskiResult.Builder builder = new KasiskiResult.Builder(text);
+		for(SequenceSpacings entry : spacingsBySequence.values()) {
+			builder.addSpacings(entry.start, entry.length, entry.spacings);
+		}
+		return builder.build();
+	}
+	
+	private static class SequenceSpacings {
+		final int start;
+		final int length;
+		final IntHashSet spacings = new IntHashSet();
+		
+		SequenceSpacings(int start, int length) {
+			this.start = start;
+			this.length = length;
+		}
+	}
+	
+	/**
+	 * 'Packs' a list of RepeatedSequences that each hold a single spacing - it bundles together all repeats of a string into one RepeatedSequence holding all the (distinct) spacings.<br><br>
+	 * This is done in one pass, with each sequence mapped to the set of spacings found so far, so it takes time proportional to the number of RepeatedSequences rather than the square of it.
+	 * The packed sequences are in the order that they first appear in <code>sequencesSeparate</code>
+	 * @param sequencesSeparate - The RepeatedSequences, each holding a single spacing. This is not modified
+	 * @return An ArrayList of packed RepeatedSequences
+	 */
+	public static ArrayList<RepeatedSequence> packSequences(ArrayList<RepeatedSequence> sequencesSeparate) {
+		// A LinkedHashMap keeps the sequences in the order they were first found in
+		LinkedHashMap<String, IntHashSet> spacingsBySequence = new LinkedHashMap<String, IntHashSet>();
+		for(int i = 0; i < sequencesSeparate.size(); i++) {
+			RepeatedSequence separate = sequencesSeparate.get(i);
+			IntHashSet spacings = spacingsBySequence.get(separate.getSequence());
+			if(spacings == null) {
+				spacings = new IntHashSet();
+				spacingsBySequence.put(separate.getSequence(), spacings);
 			}
+			spacings.add(separate.getSpacing());
 		}
-		// Now we 'pack' the ArrayList - we bundle together all repeats of a string
-		ArrayList<RepeatedSequence> sequences = new ArrayList<RepeatedSequence>(); // Really I should have a separate type
-		for(int i = 0; i < sequencesSeparate.size(); i++) { // Loop through all the separate sequences
-			String currSequence = sequencesSeparate.get(i).getSequence();
-			// Using a set so I don't have duplicates - Using a HashSet for speed
-			HashSet<Integer> spacings = new HashSet<Integer>();
-			spacings.add(sequencesSeparate.get(i).getSpacing());
-			for(int j = i + 1; j < sequencesSeparate.size(); j++) { // For every sequence of characters we find, we loop through the ArrayList starting at i + 1. We then find all spacings
-				if(sequencesSeparate.get(j).getSequence().equals(currSequence)) {
-					spacings.add(sequencesSeparate.get(j).getSpacing());
-					sequencesSeparate.remove(j);
-					j--;
-				}
+		
+		ArrayList<RepeatedSequence> sequences = new ArrayList<RepeatedSequence>(spacingsBySequence.size());
+		for(Map.Entry<String, IntHashSet> entry : spacingsBySequence.entrySet()) {
+			int[] spacings = entry.getValue().toArray();
+			Integer[] boxed = new Integer[spacings.length];
+			for(int i = 0; i < spacings.length; i++) {
+				boxed[i] = spacings[i];
 			}
-			sequencesSeparate.remove(i);
-			i--;
-			
-			sequences.add(new RepeatedSequence(currSequence, spacings.toArray(new Integer[spacings.size()])));
+			sequences.add(new RepeatedSequence(entry.getKey(), boxed));
 		}
 		return sequences;
 	}
 	
+	/**
+	 * Does the same job as {@link #KasiskiTest(String)}, and gives the same results, but instead of searching from every index it builds a suffix array and LCP array of the text once, and reads every repeated sequence out of the LCP intervals.
+	 * This takes time roughly proportional to the length of the text plus the number of occurrences of repeats, so it can cope with much longer texts.<br><br>
+	 * The sequences are returned in the same order as {@link #KasiskiTest(String)} returns them - by the position of their first occurrence, then by length
+	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
+	 * @return An ArrayList of RepeatedSequences, each of which holds all the spacings between the occurrences of a sequence
+	 * @see #KasiskiExamineFast(String)
+	 * @see <a href="https://en.wikipedia.org/wiki/Kasiski_examination">https://en.wikipedia.org/wiki/Kasiski_examination</a>
+	 */
+	public static ArrayList<RepeatedSequence> KasiskiTestFast(String text) {
+		return KasiskiExamineFast(text).toRepeatedSequences();
+	}
+	
+	/**
+	 * Does the suffix array Kasiski test on the letters of a CipherText. The sequences are all in capitals
+	 * @see #KasiskiTestFast(String)
+	 */
+	public static ArrayList<RepeatedSequence> KasiskiTestFast(CipherText text) {
+		return KasiskiExamineFast(text).toRepeatedSequences();
+	}
+	
+	/**
+	 * Does the same job as {@link #KasiskiTestFast(String)}, but returns the results as a KasiskiResult, so nothing is boxed and the sequences aren't copied out of the text
+	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
+	 * @return The repeated sequences and their spacings
+	 * @see SuffixArray
+	 * @see KasiskiResult
+	 */
+	public static KasiskiResult KasiskiExamineFast(String text) {
+		return KasiskiExamineFast(text, null);
+	}
+	
+	/**
+	 * Does the same job as {@link #KasiskiExamineFast(String)}, reporting the progress of the search and each repeated sequence as it's found to <code>listener</code>, which can also stop the search
+	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
+	 * @param listener - The KasiskiListener to report to, or null
+	 * @return The repeated sequences and their spacings
+	 * @throws CancellationException If <code>listener</code> stopped the search
+	 */
+	public static KasiskiResult KasiskiExamineFast(String text, KasiskiListener listener) {
+		int[] alphabetSize = new int[1];
+		int[] ranked = SuffixArray.rank(text, alphabetSize);
+		return examineSuffixArray(ranked, alphabetSize[0], text, listener);
+	}
+	
+	/**
+	 * Does the same job as {@link #KasiskiExamineFast(String)} on the letters of a CipherText. The sequences are all in capitals
+	 * @see #KasiskiExamineFast(String)
+	 */
+	public static KasiskiResult KasiskiExamineFast(CipherText text) {
+		return KasiskiExamineFast(text, null);
+	}
+	
+	/**
+	 * Does the same job as {@link #KasiskiExamineFast(String, KasiskiListener)} on the letters of a CipherText. The sequences are all in capitals
+	 * @see #KasiskiExamineFast(String, KasiskiListener)
+	 */
+	public static KasiskiResult KasiskiExamineFast(CipherText text, KasiskiListener listener) {
+		return examineSuffixArray(rankLetters(text.getLetters()), 26, text.asLetterSequence(), listener);
+	}
+	
+	/**
+	 * Does the same job as {@link #KasiskiExamineFast(String)}, and gives exactly the same results, but walks the suffix array on all the cores with fork/join.<br><br>
+	 * The suffix array is split wherever two neighbouring suffixes share fewer than 2 letters - no repeated sequence worth reporting can cross one of those splits -
+	 * and each task collects the sequences in its part into its own KasiskiResult.Builder. The Builders are joined back together in suffix array order, so the result doesn't depend on how the tasks were scheduled.
+	 * Building the suffix array and the LCP array is still done on one thread
+	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
+	 * @return The repeated sequences and their spacings
+	 * @see #KasiskiExamineFast(String)
+	 */
+	public static KasiskiResult KasiskiExamineParallel(String text) {
+		int[] alphabetSize = new int[1];
+		int[] ranked = SuffixArray.rank(text, alphabetSize);
+		return examineSuffixArrayParallel(ranked, alphabetSize[0], text);
+	}
+	
+	/**
+	 * Does the same job as {@link #KasiskiExamineParallel(String)} on the letters of a CipherText. The sequences are all in capitals
+	 * @see #KasiskiExamineParallel(String)
+	 */
+	public static KasiskiResult KasiskiExamineParallel(CipherText text) {
+		return examineSuffixArrayParallel(rankLetters(text.getLetters()), 26, text.asLetterSequence());
+	}
+	
+	/**
+	 * Does the Kasiski examination, but only keeps the <code>top</code> most informative repeated sequences, ranked by length times the number of occurrences,
+	 * so the result stays small however many chance repeats a long text has.<br><br>
+	 * The LCP intervals of the suffix array are walked the same way as {@link #KasiskiExamineFast(CipherText)}, and each one stands for a sequence of up to <code>maxLength</code> letters
+	 * that isn't already covered by a shorter interval around it. The best <code>top</code> so far are kept in a bounded min-heap of suffix array ranges, so it takes O(<code>top</code>) memory whatever the length of the text.
+	 * An interval that can't beat the worst one in a full heap is dropped straight away, before its occurrences are looked at.
+	 * Only the sequences that make it to the end have their occurrences sorted, and only the spacings between neighbouring occurrences are kept (see {@link KasiskiResult.Builder#addNeighbourSpacings(int, int, int[], int)}).<br><br>
+	 * The rows of the result are in the same order as every other Kasiski examination - by the position of their first occurrence, then by length
+	 * @param text - The ciphertext to be examined
+	 * @param top - The most sequences to keep
+	 * @param minLength - The shortest sequence to keep. Must be at least 2
+	 * @param maxLength - The longest sequence to keep. Longer repeats are kept as their first <code>maxLength</code> letters
+	 * @return The repeated sequences and the spacings between their neighbouring occurrences
+	 */
+	public static KasiskiResult KasiskiExamineTop(CipherText text, int top, int minLength, int maxLength) {
+		if(top < 0 || minLength < 2 || maxLength < minLength) {
+			throw new IllegalArgumentException("Expected top >= 0 and 2 <= minLength <= maxLength");
+		}
+		int[] ranked = rankLetters(text.getLetters());
+		long start = Metrics.start();
+		int[] sa = SuffixArray.build(ranked, 26);
+		int[] lcp = SuffixArray.lcp(ranked, sa);
+		Metrics.end(Metrics.Stage.SUFFIX_ARRAY, start, ranked.length, sa.length);
+		
+		start = Metrics.start();
+		TopIntervals best = new TopIntervals(top);
+		// The same bottom-up walk as SuffixArray.visitIntervals, but the lcp of each interval's parent is needed too
+		int[] stackLcp = new int[16];
+		int[] stackLb = new int[16];
+		int depth = 0;
+		for(int i = 1; i <= lcp.length; i++) {
+			int curr = i < lcp.length ? lcp[i] : 0;
+			int lb = i - 1;
+			while(curr < stackLcp[depth]) {
+				lb = stackLb[depth];
+				int len = stackLcp[depth];
+				depth--;
+				int parent = Math.max(curr, stackLcp[depth]);
+				int length = Math.min(len, maxLength);
+				if(length > parent && length >= minLength) {
+					best.offer((long)length * (i - lb), lb, i - 1, length);
+				}
+			}
+			if(curr > stackLcp[depth]) {
+				depth++;
+				if(depth == stackLcp.length) {
+					stackLcp = Arrays.copyOf(stackLcp, depth * 2);
+					stackLb = Arrays.copyOf(stackLb, depth * 2);
+				}
+				stackLcp[depth] = curr;
+				stackLb[depth] = lb;
+			}
+		}
+		
+		KasiskiResult.Builder builder = new KasiskiResult.Builder(text.asLetterSequence());
+		int[] positions = new int[16];
+		for(int e = 0; e < best.size; e++) {
+			int count = best.rbs[e] - best.lbs[e] + 1;
+			if(positions.length < count) {
+				positions = new int[Math.max(count, positions.length * 2)];
+			}
+			System.arraycopy(sa, best.lbs[e], positions, 0, count);
+			Arrays.sort(positions, 0, count);
+			builder.addNeighbourSpacings(positions[0], best.lengths[e], positions, count);
+		}
+		Metrics.end(Metrics.Stage.KASISKI, start, sa.length, builder.size());
+		return builder.build();
+	}
+	
+	/**
+	 * Does the top-K Kasiski examination with the default shortest and longest sequence lengths
+	 * @see #KasiskiExamineTop(CipherText, int, int, int)
+	 */
+	public static KasiskiResult KasiskiExamineTop(CipherText text, int top) {
+		return KasiskiExamineTop(text, top, defaultKasiskiMinLength, defaultKasiskiMaxLength);
+	}
+	
+	/**
+	 * Does the top-K Kasiski examination on a String. The sequences are all in capitals
+	 * @see #KasiskiExamineTop(CipherText, int, int, int)
+	 */
+	public static KasiskiResult KasiskiExamineTop(String text, int top, int minLength, int maxLength) {
+		return KasiskiExamineTop(CipherText.parse(text), top, minLength, maxLength);
+	}
+	
+	/**
+	 * A min-heap of at most <code>capacity</code> suffix array ranges, keyed by score, so the root is the worst one kept
+	 */
+	private static class TopIntervals {
+		final long[] scores;
+		final int[] lbs;
+		final int[] rbs;
+		final int[] lengths;
+		int size;
+		
+		TopIntervals(int capacity) {
+			scores = new long[capacity];
+			lbs = new int[capacity];
+			rbs = new int[capacity];
+			lengths = new int[capacity];
+		}
+		
+		/**
+		 * Keeps the range if the heap isn't full yet or it scores higher than the worst one kept, which it then replaces
+		 */
+		void offer(long score, int lb, int rb, int length) {
+			int i;
+			if(size < scores.length) {
+				// Sift up from the new leaf
+				i = size++;
+				while(i > 0 && scores[(i - 1) >>> 1] > score) {
+					move((i - 1) >>> 1, i);
+					i = (i - 1) >>> 1;
+				}
+			} else {
+				if(size == 0 || score <= scores[0]) {
+					return;
+				}
+				// Sift down from the root, which is dropped
+				i = 0;
+				while(true) {
+					int child = 2 * i + 1;
+					if(child >= size) {
+						break;
+					}
+					if(child + 1 < size && scores[child + 1] < scores[child]) {
+						child++;
+					}
+					if(scores[child] >= score) {
+						break;
+					}
+					move(child, i);
+					i = child;
+				}
+			}
+			scores[i] = score;
+			lbs[i] = lb;
+			rbs[i] = rb;
+			lengths[i] = length;
+		}
+		
+		private void move(int from, int to) {
+			scores[to] = scores[from];
+			lbs[to] = lbs[from];
+			rbs[to] = rbs[from];
+			lengths[to] = lengths[from];
+		}
+	}
+	
+	private static int[] rankLetters(byte[] letters) {
+		int[] ranked = new int[letters.length];
+		for(int i = 0; i < letters.length; i++) {
+			ranked[i] = letters[i];
+		}
+		return ranked;
+	}
+	
+	private static KasiskiResult examineSuffixArray(int[] ranked, int alphabetSize, CharSequence text, KasiskiListener listener) {
+		long start = Metrics.start();
+		final int[] sa = SuffixArray.build(ranked, alphabetSize);
+		int[] lcp = SuffixArray.lcp(ranked, sa);
+		Metrics.end(Metrics.Stage.SUFFIX_ARRAY, start, ranked.length, sa.length);
+		
+		start = Metrics.start();
+		KasiskiResult.Builder builder = new KasiskiResult.Builder(text);
+		if(listener != null && !listener.update(builder, 0)) {
+			throw new CancellationException();
+		}
+		examineIntervals(sa, lcp, 0, lcp.length, builder, listener);
+		Metrics.end(Metrics.Stage.KASISKI, start, sa.length, builder.size());
+		return builder.build();
+	}
+	
+	private static KasiskiResult examineSuffixArrayParallel(int[] ranked, int alphabetSize, CharSequence text) {
+		long start = Metrics.start();
+		int[] sa = SuffixArray.build(ranked, alphabetSize);
+		int[] lcp = SuffixArray.lcp(ranked, sa);
+		Metrics.end(Metrics.Stage.SUFFIX_ARRAY, start, ranked.length, sa.length);
+		
+		start = Metrics.start();
+		int splitThreshold = KasiskiTask.splitThreshold(lcp.length, ForkJoinPool.getCommonPoolParallelism());
+		KasiskiTask task = new KasiskiTask(sa, lcp, 0, lcp.length, text, splitThreshold);
+		// Not worth handing over to the pool if it won't split
+		KasiskiResult.Builder builder = lcp.length <= splitThreshold ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+		Metrics.end(Metrics.Stage.KASISKI, start, sa.length, builder.size());
+		return builder.build();
+	}
+	
+	/**
+	 * Adds the repeated sequences of every LCP interval between <code>from</code> and <code>to</code> in the suffix array to <code>builder</code>
+	 */
+	private static void examineIntervals(int[] sa, int[] lcp, int from, int to, KasiskiResult.Builder builder, KasiskiListener listener) {
+		int[][] positions = { new int[16] }; // Reused for every interval
+		SuffixArray.visitIntervals(lcp, from, to, (len, lb, rb) -> {
+			if(len > 1) { // We don't want to test for single letters
+				int count = rb - lb + 1;
+				if(positions[0].length < count) {
+					positions[0] = new int[Math.max(count, positions[0].length * 2)];
+				}
+				System.arraycopy(sa, lb, positions[0], 0, count);
+				Arrays.sort(positions[0], 0, count);
+				builder.addOccurrences(positions[0][0], len, positions[0], count);
+			}
+			if(listener != null && !listener.update(builder, (float)(rb + 1) / lcp.length)) {
+				throw new CancellationException();
+			}
+		});
+	}
+	
+	private static class KasiskiTask extends RecursiveTask<KasiskiResult.Builder> {
+		private static final long serialVersionUID = 2749611385236052514L;
+		/**
+		 * The number of tasks to aim for on each thread. The work isn't spread evenly over the suffixes - a few long intervals can hold most of the spacings - so a thread that
+		 * gets a light task needs more to take on while the others finish
+		 */
+		private static final int TASKS_PER_THREAD = 8;
+		/**
+		 * The fewest suffixes a task is split down to, below which forking costs more than it saves
+		 */
+		private static final int MIN_SPLIT_THRESHOLD = 1 << 12;
+		
+		private final int[] sa;
+		private final int[] lcp;
+		private final int from;
+		private final int to;
+		private final CharSequence text;
+		private final int splitThreshold;
+		
+		KasiskiTask(int[] sa, int[] lcp, int from, int to, CharSequence text, int splitThreshold) {
+			this.sa = sa;
+			this.lcp = lcp;
+			this.from = from;
+			this.to = to;
+			this.text = text;
+			this.splitThreshold = splitThreshold;
+		}
+		
+		/**
+		 * @param suffixes - The number of suffixes to walk
+		 * @param parallelism - The number of threads the tasks are run on
+		 * @return The number of suffixes a single task will walk, below which it won't split any further - enough for about <code>TASKS_PER_THREAD</code> tasks on each thread,
+		 * or all of them if there's only one thread
+		 */
+		static int splitThreshold(int suffixes, int parallelism) {
+			if(parallelism <= 1) {
+				return Math.max(MIN_SPLIT_THRESHOLD, suffixes);
+			}
+			return Math.max(MIN_SPLIT_THRESHOLD, suffixes / (TASKS_PER_THREAD * parallelism));
+		}
+		
+		@Override
+		protected KasiskiResult.Builder compute() {
+			int mid = to - from > splitThreshold ? split() : -1;
+			if(mid < 0) {
+				KasiskiResult.Builder builder = new KasiskiResult.Builder(text);
+				examineIntervals(sa, lcp, from, to, builder, null);
+				return builder;
+			}
+			KasiskiTask right = new KasiskiTask(sa, lcp, mid, to, text, splitThreshold);
+			right.fork();
+			KasiskiResult.Builder left = new KasiskiTask(sa, lcp, from, mid, text, splitThreshold).compute();
+			left.addAll(right.join());
+			return left;
+		}
+		
+		/**
+		 * Finds the place nearest the middle of the range where neighbouring suffixes share fewer than 2 letters
+		 * @return The index of the first suffix of the right half, or -1 if there's nowhere to split
+		 */
+		private int split() {
+			int middle = (from + to) >>> 1;
+			for(int d = 0; middle - d > from || middle + d < to; d++) {
+				if(middle + d < to && lcp[middle + d] < 2) {
+					return middle + d;
+				}
+				if(middle - d > from && lcp[middle - d] < 2) {
+					return middle - d;
+				}
+			}
+			return -1;
+		}
+	}
+	
+	/**
+	 * Picks the most likely keyword length from the results of a Kasiski examination. For each keyword length k, the number of spacings that are multiples of k is counted,
+	 * and the number that would be multiples of k by chance alone (1 in k of them) is taken away. The true keyword length stands out the most - its factors have fewer true repeats, and its multiples have fewer of both
+	 * @param result - The results of the Kasiski examination
+	 * @param maxKeyLength - The longest keyword length to consider
+	 * @return The most likely keyword length, or 0 if there are no spacings to go on
+	 */
+	public static int KasiskiKeyLength(KasiskiResult result, int maxKeyLength) {
+		long[] multiples = new long[maxKeyLength + 1];
+		long total = 0;
+		for(int row = 0; row < result.size(); row++) {
+			int count = result.getSpacingCount(row);
+			for(int i = 0; i < count; i++) {
+				countMultiples(result.getSpacing(row, i), multiples, 1);
+			}
+			total += count;
+		}
+		return KasiskiKeyLength(multiples, total);
+	}
+	
+	/**
+	 * Picks the most likely keyword length from spacings that have already been counted up
+	 * @param multiples - The number of spacings that are a multiple of each keyword length k, at index k. The longest keyword length considered is <code>multiples.length - 1</code>
+	 * @param total - The total number of spacings
+	 * @return The most likely keyword length, or 0 if there are no spacings to go on
+	 * @see #KasiskiKeyLength(KasiskiResult, int)
+	 */
+	public static int KasiskiKeyLength(long[] multiples, long total) {
+		int maxKeyLength = multiples.length - 1;
+		int best = 0;
+		double bestExcess = 0;
+		for(int k = 2; k <= maxKeyLength; k++) {
+			double excess = multiples[k] - (double)total / k;
+			if(excess > bestExcess) {
+				bestExcess = excess;
+				best = k;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Adds <code>delta</code> to <code>multiples[k]</code> for every keyword length k from 2 to <code>multiples.length - 1</code> that <code>spacing</code> is a multiple of
+	 */
+	static void countMultiples(int spacing, long[] multiples, int delta) {
+		for(int k = 2; k < multiples.length; k++) {
+			if(spacing % k == 0) {
+				multiples[k] += delta;
+			}
+		}
+	}
+	
 	/**
 	 * Uses the probability Kp that any two randomly chosen source language letters from the are the same (around 0.067 for English) and the probability of a coincidence for a uniform random selection from the alphabet Kr (1/26 = 0.0385 for English) to estimate the key length, using equation:<br>
 	 * KeywordLength = (Kp - Kr) / (Ko - Kr)<br>
 	 * Where:<br>
 	 * Ko = SUM(i = 0 to c, ni(ni - 1)) / N(N - 1)
 	 * @param text - The ciphertext to be examined. This should be stripped of all whitespaces/non-letter-characters such as full stops, commas, tabs and spaces
-	 * @return The most likely keyword length, as calculated by use of the above equation
+	 * @return The most likely keyword length, as calculated by use of the above equation, along with Ko
 	 * @see <a href="https://en.wikipedia.org/wiki/Vigen%C3%A8re_cipher#Friedman_test">https://en.wikipedia.org/wiki/Vigenère_cipher#Friedman_test</a>
 	 */
 	// The only reason I'm not calling is FriedmanTest is cause then I'll have all my methods in this class starting with K which is nice
-	public static int KappaTest(String text) {
-		float Kp = 0.067f;
-		float Kr = 1f / 26f;
-		float Ko;
-		
-		float N = text.length();
-		
-		float sigma = 0;
+	public static KappaResult KappaTest(String text) {
+		return KappaTest(Utils.toLetterIndices(text));
+	}
+	
+	/**
+	 * Does the Kappa test on the letters of a CipherText
+	 * @see #KappaTest(String)
+	 */
+	public static KappaResult KappaTest(CipherText text) {
+		return KappaTest(text.getLetters());
+	}
+	
+	/**
+	 * Does the Kappa test on text that has already been converted to letter indexes. The letters are counted in a single pass, so this is quick enough to run on everything as a first look
+	 * @param letters - The ciphertext, with each letter as a value from 0 to 25
+	 * @return The estimated keyword length, along with Ko
+	 * @see #KappaTest(String)
+	 */
+	public static KappaResult KappaTest(byte[] letters) {
+		long start = Metrics.start();
+		KappaResult result = KappaTest(Utils.letterHistogram(letters, 0, letters.length));
+		Metrics.end(Metrics.Stage.KAPPA, start, letters.length, 1);
+		return result;
+	}
+	
+	/**
+	 * Does the Kappa test on letter counts that have already been made
+	 * @param counts - The number of times each letter appears, indexed by letter
+	 * @return The estimated keyword length, along with Ko
+	 * @see #KappaTest(String)
+	 */
+	public static KappaResult KappaTest(long[] counts) {
+		return KappaTest(counts, englishKappa, 1f / 26f);
+	}
+	
+	/**
+	 * Does the Kappa test on letter counts that have already been made, for a plaintext in the given language rather than English
+	 * @param counts - The number of times each letter appears, indexed by letter
+	 * @param language - The language of the plaintext, which gives Kp and Kr
+	 * @return The estimated keyword length, along with Ko
+	 * @see #KappaTest(String)
+	 */
+	public static KappaResult KappaTest(long[] counts, LanguageProfile language) {
+		return KappaTest(counts, language.getKappa(), language.getRandomKappa());
+	}
+	
+	private static KappaResult KappaTest(long[] counts, float Kp, float Kr) {
+		double N = 0;
+		for(int i = 0; i < counts.length; i++) {
+			N += counts[i];
+		}
+		if(N < 2) {
+			return new KappaResult(0, 0, 0);
+		}
 		
-		for(int i = 0; i < alphabetUpper.length; i++) {
-			int counti = Utils.count(alphabetUpper[i], text);
-			int ni = Math.round(((float)text.length() / (float)counti));
-			sigma += ni * (ni - 1);
+		double sigma = 0;
+		for(int i = 0; i < counts.length; i++) {
+			sigma += (double)counts[i] * (counts[i] - 1);
 		}
 		
-		Ko = sigma / N * (N - 1);
+		float Ko = (float)(sigma / (N * (N - 1)));
 		
-		int keylen = Math.round((Kp - Kr) / (Ko - Kr));
+		if(Ko <= Kr) { // The text is at least as flat as random text, so the equation breaks down
+			return new KappaResult(0, Float.POSITIVE_INFINITY, Ko);
+		}
+		float keylen = (Kp - Kr) / (Ko - Kr);
 		
-		return keylen; // TODO: Implement Kappa Test
+		return new KappaResult(Math.max(1, Math.round(keylen)), keylen, Ko);
 	}
 	
 	/**
@@ -170,6 +802,233 @@ public class AnalysisUtils {
 	 * @see <a href="https://en.wikipedia.org/wiki/Index_of_coincidence">https://en.wikipedia.org/wiki/Index_of_coincidence</a>
 	 */
 	public static ArrayList<IOCForKeyLen> KappaTest2(String text) {
-		return null; // TODO: Implement Kappa Test 2 / Improved Kappa Test
+		return KappaTest2(text, defaultMaxKeyLength);
+	}
+	
+	/**
+	 * Estimates the length of the keyword by calculating the average index of coincidence for each keyword length from 1 to <code>maxKeyLength</code>.<br><br>
+	 * The letter counts for every column of every keyword length are filled in with a single pass over the text, which is split between all the cores with fork/join
+	 * @param text - The ciphertext to be examined. Any non-letter characters are skipped
+	 * @param maxKeyLength - The longest keyword length to test. Lengths that would leave fewer than 2 letters in a column aren't tested
+	 * @return An ArrayList of IOCForKeyLens, one for each keyword length, in order of keyword length
+	 * @see #KappaTest2(String)
+	 * @see ColumnHistograms
+	 */
+	public static ArrayList<IOCForKeyLen> KappaTest2(String text, int maxKeyLength) {
+		return KappaTest2(Utils.toLetterIndices(text), maxKeyLength);
+	}
+	
+	/**
+	 * Does the improved Kappa test on the letters of a CipherText, for keyword lengths up to {@link #defaultMaxKeyLength}
+	 * @see #KappaTest2(String)
+	 */
+	public static ArrayList<IOCForKeyLen> KappaTest2(CipherText text) {
+		return KappaTest2(text.getLetters(), defaultMaxKeyLength);
+	}
+	
+	/**
+	 * Does the improved Kappa test on the letters of a CipherText
+	 * @see #KappaTest2(String, int)
+	 */
+	public static ArrayList<IOCForKeyLen> KappaTest2(CipherText text, int maxKeyLength) {
+		return KappaTest2(text.getLetters(), maxKeyLength);
+	}
+	
+	/**
+	 * Does the improved Kappa test on text that has already been converted to letter indexes
+	 * @param letters - The ciphertext, with each letter as a value from 0 to 25
+	 * @param maxKeyLength - The longest keyword length to test
+	 * @return An ArrayList of IOCForKeyLens, one for each keyword length, in order of keyword length
+	 * @see #KappaTest2(String, int)
+	 */
+	public static ArrayList<IOCForKeyLen> KappaTest2(byte[] letters, int maxKeyLength) {
+		maxKeyLength = Math.min(maxKeyLength, letters.length / 2);
+		ArrayList<IOCForKeyLen> iocs = new ArrayList<IOCForKeyLen>(Math.max(maxKeyLength, 0));
+		if(maxKeyLength < 1) {
+			return iocs;
+		}
+		return KappaTest2(ColumnHistograms.compute(letters, maxKeyLength));
+	}
+	
+	/**
+	 * Does the improved Kappa test on column counts that have already been made, for every keyword length they were counted for
+	 * @param hists - The column counts
+	 * @return An ArrayList of IOCForKeyLens, one for each keyword length, in order of keyword length
+	 * @see #KappaTest2(String, int)
+	 */
+	public static ArrayList<IOCForKeyLen> KappaTest2(ColumnHistograms hists) {
+		long start = Metrics.start();
+		int maxKeyLength = (int)Math.min(hists.getMaxKeyLength(), hists.getLength() / 2);
+		ArrayList<IOCForKeyLen> iocs = new ArrayList<IOCForKeyLen>(Math.max(maxKeyLength, 0));
+		for(int k = 1; k <= maxKeyLength; k++) {
+			iocs.add(new IOCForKeyLen(k, hists.getAverageIOC(k)));
+		}
+		Metrics.end(Metrics.Stage.KAPPA2, start, hists.getLength(), iocs.size());
+		return iocs;
+	}
+	
+	/**
+	 * Cuts the results of the improved Kappa test down to the keyword lengths whose columns have at least {@link #defaultMinColumnLetters} letters each (and always keyword length 1),
+	 * for picking a keyword length from. The average IOC of shorter columns is so noisy that a long keyword length can beat the real one by chance on a short text
+	 * @param iocs - The results of the improved Kappa test, in order of keyword length
+	 * @param letters - The number of letters in the text
+	 * @return The results for the keyword lengths that can be picked from
+	 */
+	public static ArrayList<IOCForKeyLen> usableIOCs(ArrayList<IOCForKeyLen> iocs, long letters) {
+		return new ArrayList<IOCForKeyLen>(iocs.subList(0, (int)Math.min(iocs.size(), Math.max(1, letters / defaultMinColumnLetters))));
+	}
+	
+	/**
+	 * Picks the most likely keyword length from the results of the improved Kappa test - the shortest keyword length with an average IOC within 10% of the highest.
+	 * Multiples of the keyword length score just as well as it does, so the shortest one is taken
+	 * @param iocs - The results of the improved Kappa test
+	 * @return The most likely keyword length, or 0 if <code>iocs</code> is empty
+	 */
+	public static int likelyKeyLength(ArrayList<IOCForKeyLen> iocs) {
+		float max = 0;
+		for(IOCForKeyLen ioc : iocs) {
+			max = Math.max(max, ioc.ioc);
+		}
+		for(IOCForKeyLen ioc : iocs) {
+			if(ioc.ioc >= max * 0.9f) {
+				return ioc.keylength;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Picks the most likely keyword length from the results of the improved Kappa test, for a plaintext in a known language - the shortest keyword length with an average IOC
+	 * at least four fifths of the way from random text's kappa to the language's, or the shortest factor of that with an average IOC within 10% of it, as noise can push a short text's real keyword length
+	 * just under the threshold while a multiple of it gets over. If none are, it falls back to {@link #likelyKeyLength(ArrayList)}.<br>
+	 * Half way isn't far enough - at half the real keyword length, each column mixes two alphabets, which puts its IOC right about half way
+	 * @param iocs - The results of the improved Kappa test, in order of keyword length from 1
+	 * @param language - The language of the plaintext
+	 * @return The most likely keyword length, or 0 if <code>iocs</code> is empty
+	 */
+	public static int likelyKeyLength(ArrayList<IOCForKeyLen> iocs, LanguageProfile language) {
+		float threshold = language.getRandomKappa() + 0.8f * (language.getKappa() - language.getRandomKappa());
+		for(IOCForKeyLen ioc : iocs) {
+			if(ioc.ioc >= threshold) {
+				for(int factor = 1; factor < ioc.keylength; factor++) {
+					if(ioc.keylength % factor == 0 && iocs.get(factor - 1).ioc >= ioc.ioc * 0.9f) {
+						return factor;
+					}
+				}
+				return ioc.keylength;
+			}
+		}
+		return likelyKeyLength(iocs);
+	}
+	
+	/**
+	 * Picks the most likely keyword length when the language of the plaintext isn't known. A provisional keyword length is picked with {@link #likelyKeyLength(ArrayList)},
+	 * the language is identified from the columns at that length, and then the keyword lengths are ranked again for that language with {@link #likelyKeyLength(ArrayList, LanguageProfile)}.
+	 * Only keyword lengths from {@link #usableIOCs(ArrayList, long)} are picked
+	 * @param iocs - The results of the improved Kappa test on <code>hists</code>
+	 * @param hists - The column counts of the text
+	 * @return The most likely keyword length, or 0 if <code>iocs</code> is empty
+	 */
+	public static int likelyKeyLength(ArrayList<IOCForKeyLen> iocs, ColumnHistograms hists) {
+		ArrayList<IOCForKeyLen> usable = usableIOCs(iocs, hists.getLength());
+		int provisional = likelyKeyLength(usable);
+		if(provisional == 0) {
+			return 0;
+		}
+		return likelyKeyLength(usable, LanguageProfile.identifyBest(hists.getCounts(provisional), provisional));
+	}
+	
+	/**
+	 * Works out the most likely Caesar shift of each column (i.e. each letter of the keyword), given a keyword length, using the chi-squared statistic.<br><br>
+	 * The text is counted once into a histogram per column. Then for each shift, chi-squared = SUM(l = A to Z, (observed(l + shift) - expected(l))^2 / expected(l)), which simplifies to
+	 * SUM(observed(l + shift)^2 / expected(l)) - N, so every shift is scored straight from the histogram and the table of English frequencies. The columns are solved in parallel
+	 * @param text - The ciphertext to be examined. Any non-letter characters are skipped
+	 * @param keyLength - The keyword length
+	 * @return An ArrayList of ShiftsForColumn, one for each column, in order
+	 * @see ShiftsForColumn
+	 * @see <a href="http://www.practicalcryptography.com/cryptanalysis/text-characterisation/chi-squared-statistic">http://www.practicalcryptography.com/cryptanalysis/text-characterisation/chi-squared-statistic</a>
+	 */
+	public static ArrayList<ShiftsForColumn> ChiSquaredTest(String text, int keyLength) {
+		return ChiSquaredTest(Utils.toLetterIndices(text), keyLength);
+	}
+	
+	/**
+	 * Does the chi-squared test on the letters of a CipherText
+	 * @see #ChiSquaredTest(String, int)
+	 */
+	public static ArrayList<ShiftsForColumn> ChiSquaredTest(CipherText text, int keyLength) {
+		return ChiSquaredTest(text.getLetters(), keyLength);
+	}
+	
+	/**
+	 * Does the chi-squared test on text that has already been converted to letter indexes
+	 * @param letters - The ciphertext, with each letter as a value from 0 to 25
+	 * @param keyLength - The keyword length
+	 * @return An ArrayList of ShiftsForColumn, one for each column, in order
+	 * @see #ChiSquaredTest(String, int)
+	 */
+	public static ArrayList<ShiftsForColumn> ChiSquaredTest(byte[] letters, int keyLength) {
+		long[] counts = ColumnHistograms.countColumns(letters, keyLength);
+		return ChiSquaredTest(counts, keyLength, englishFrequencies);
+	}
+	
+	/**
+	 * Does the chi-squared test on column counts that have already been made, against the letter frequencies of a language
+	 * @param counts - The letter counts of each column, as returned by {@link ColumnHistograms#countColumns(byte[], int)}
+	 * @param keyLength - The keyword length
+	 * @param language - The language of the plaintext, e.g. the one picked by {@link LanguageProfile#identify(long[], int)}
+	 * @return An ArrayList of ShiftsForColumn, one for each column, in order
+	 */
+	public static ArrayList<ShiftsForColumn> ChiSquaredTest(long[] counts, int keyLength, LanguageProfile language) {
+		return ChiSquaredTest(counts, keyLength, language.getUnigrams());
+	}
+	
+	/**
+	 * Does the chi-squared test on column counts that have already been made
+	 * @param counts - The letter counts of each column, as returned by {@link ColumnHistograms#countColumns(byte[], int)}
+	 * @param keyLength - The keyword length
+	 * @param frequencies - The expected frequency of each letter in the plaintext
+	 * @return An ArrayList of ShiftsForColumn, one for each column, in order
+	 */
+	public static ArrayList<ShiftsForColumn> ChiSquaredTest(long[] counts, int keyLength, float[] frequencies) {
+		final double[] inverseFrequencies = new double[26];
+		for(int l = 0; l < 26; l++) {
+			inverseFrequencies[l] = 1.0 / frequencies[l];
+		}
+		long start = Metrics.start();
+		ShiftsForColumn[] columns = new ShiftsForColumn[keyLength];
+		IntStream.range(0, keyLength).parallel().forEach((c) -> {
+			columns[c] = solveColumn(counts, c, inverseFrequencies);
+		});
+		Metrics.end(Metrics.Stage.CHI_SQUARED, start, keyLength, keyLength * 26);
+		return new ArrayList<ShiftsForColumn>(Arrays.asList(columns));
+	}
+	
+	private static ShiftsForColumn solveColumn(long[] counts, int column, double[] inverseFrequencies) {
+		int base = column * 26;
+		long n = 0;
+		for(int l = 0; l < 26; l++) {
+			n += counts[base + l];
+		}
+		int[] shifts = new int[26];
+		float[] scores = new float[26];
+		for(int shift = 0; shift < 26; shift++) {
+			double sum = 0;
+			for(int l = 0; l < 26; l++) {
+				long observed = counts[base + (l + shift) % 26];
+				sum += (double)observed * observed * inverseFrequencies[l];
+			}
+			float score = n == 0 ? 0 : (float)(sum / n - n);
+			// Insertion sort, so the shifts come out ranked
+			int i = shift;
+			while(i > 0 && scores[i - 1] > score) {
+				scores[i] = scores[i - 1];
+				shifts[i] = shifts[i - 1];
+				i--;
+			}
+			scores[i] = score;
+			shifts[i] = shift;
+		}
+		return new ShiftsForColumn(column, shifts, scores);
 	}
-}
\ No newline at end of file
+}
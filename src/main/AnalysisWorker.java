@@ -0,0 +1,104 @@
+package main;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+/**
+ * Runs the analyses of a ciphertext on a background thread, so the window doesn't hang while they run.<br>
+ * <br>
+ * If the ciphertext needs a new AnalysisSession (because it isn't just an edit of the last one), the session is counted first and handed to the Listener, which gives the Kappa tests and the chi-squared test.
+ * Then the Kasiski examination is done, and each repeated sequence is handed to the Listener as soon as it's found, along with the progress through the suffix array.
+ * The Listener is always called on the event dispatch thread.<br>
+ * <br>
+ * Cancelling the worker (e.g. because a new ciphertext has been entered) stops the Kasiski examination part way through, and nothing more is reported to the Listener
+ */
+public class AnalysisWorker extends SwingWorker<KasiskiResult, KasiskiTableModel.FoundSequence> {
+	public static interface Listener {
+		/**
+		 * This method is called once a new AnalysisSession has been counted. The worker doesn't touch the session after this
+		 * @param session - The session for the ciphertext
+		 */
+		public abstract void sessionReady(AnalysisSession session);
+
+		/**
+		 * This method is called with repeated sequences as they're found, in the order they're found in
+		 * @param sequences - The new repeated sequences
+		 */
+		public abstract void rowsFound(List<KasiskiTableModel.FoundSequence> sequences);
+
+		/**
+		 * This method is called once the Kasiski examination is done
+		 * @param result - The result of the Kasiski examination
+		 */
+		public abstract void finished(KasiskiResult result);
+
+		/**
+		 * This method is called if any of the analyses throw an exception
+		 * @param cause - The exception
+		 */
+		public abstract void failed(Throwable cause);
+	}
+
+	private final CipherText ciphertext;
+	private final boolean newSession;
+	private final Listener listener;
+	private int rowsPublished;
+
+	/**
+	 * @param ciphertext - The ciphertext to analyse
+	 * @param newSession - Whether to count a new AnalysisSession for the ciphertext before the Kasiski examination
+	 * @param listener - The Listener to report the session, rows and results to
+	 */
+	public AnalysisWorker(CipherText ciphertext, boolean newSession, Listener listener) {
+		this.ciphertext = ciphertext;
+		this.newSession = newSession;
+		this.listener = listener;
+	}
+
+	@Override
+	protected KasiskiResult doInBackground() {
+		if(newSession) {
+			AnalysisSession session = AnalysisSession.of(ciphertext.getLetters(), AnalysisUtils.defaultMaxKeyLength);
+			SwingUtilities.invokeLater(() -> {
+				if(!isCancelled()) {
+					listener.sessionReady(session);
+				}
+			});
+		}
+		return AnalysisUtils.KasiskiExamineFast(ciphertext, (found, progress) -> {
+			if(isCancelled()) {
+				return false;
+			}
+			for(; rowsPublished < found.size(); rowsPublished++) {
+				publish(new KasiskiTableModel.FoundSequence(found.getStart(rowsPublished), found.getLength(rowsPublished), found.getSpacings(rowsPublished)));
+			}
+			setProgress((int)(progress * 100));
+			return true;
+		});
+	}
+
+	@Override
+	protected void process(List<KasiskiTableModel.FoundSequence> sequences) {
+		if(!isCancelled()) {
+			listener.rowsFound(sequences);
+		}
+	}
+
+	@Override
+	protected void done() {
+		if(isCancelled()) {
+			return;
+		}
+		try {
+			listener.finished(get());
+		} catch(ExecutionException e) {
+			listener.failed(e.getCause());
+		} catch(InterruptedException | CancellationException e) {
+			// The worker was cancelled, so there's nothing to show
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import main.AnalysisUtils.IOCForKeyLen;
+
+/**
+ * Finds the keyword length from the autocorrelation of a text - the number of letters that match the letter <code>s</code> letters after them, for every shift <code>s</code>.<br>
+ * <br>
+ * Shifting a Vigenere ciphertext by a multiple of the keyword length lines up letters enciphered with the same Caesar shift, so about the IOC of English of them match; any other shift gives about the IOC of random letters.
+ * Unlike the Kasiski examination this doesn't need whole sequences to repeat, and unlike the Kappa test it gives a curve over every shift, so periods stand out even in long, noisy texts.<br>
+ * <br>
+ * Counting the matches directly takes time proportional to the length of the text times the number of shifts, so they're counted for all the shifts at once with FFTs instead.
+ * The matches at shift <code>s</code> are the sum, over the 26 letters, of the correlation of the letter's indicator sequence (1 where the text has the letter, 0 elsewhere) with itself.
+ * The indicators of two letters are packed into one complex sequence, as the real part of its correlation is the sum of theirs, so a block of text has 13 spectra.<br>
+ * <br>
+ * The text is split into blocks at least as long as the largest shift, so every pair of letters starts in one block and ends in the same block or the next.
+ * Each block is transformed once, padded to twice its length, and correlated with itself followed by the next block - whose spectrum is just the next block's, shifted by a block length.
+ * The correlations of all 13 spectra are summed and transformed back together, so each block costs 13 forward FFTs and 1 inverse.
+ * Memory is fixed however long the text is, letters can be streamed through it, and the blocks of a whole text can be correlated in parallel.
+ * Streamed letters are held until there's a run of blocks for every thread of the common pool, and the run is correlated in parallel the same way
+ */
+public class Autocorrelation implements CipherTextFile.LetterSink {
+	/**
+	 * The largest shift counted if it isn't given. Half the text is used if it's shorter
+	 */
+	public static int defaultMaxShift = 1 << 12;
+	/**
+	 * The fewest letters in a block - smaller blocks aren't any quicker per letter
+	 */
+	private static final int MIN_BLOCK_LENGTH = 1 << 8;
+	/**
+	 * The number of blocks correlated one after the other by each task of {@link #scan(byte[], int)}. Each task transforms one block more than it correlates
+	 */
+	private static final int BLOCKS_PER_TASK = 32;
+	/**
+	 * The most letters held back from streaming to be correlated in parallel. A run is only used if there's more than one thread, and at least two blocks fit in it
+	 */
+	private static final int MAX_RUN_LETTERS = 1 << 24;
+
+	private final int maxShift;
+	private final int blockLength;
+	private final Fft fft; // Of twice blockLength
+
+	private final byte[] buffer; // The letters of the run of blocks being filled
+	private int filled;
+	private long length; // The number of letters seen
+	private final long[] coincidences; // [s] = the number of matches at shift s of the pairs starting in the blocks correlated so far
+	private final Workspace workspace;
+	private boolean previous; // Whether the workspace holds the spectra of the last full block, which hasn't been correlated yet as it needs the block after it
+	private long[] total; // The coincidences including the last full block and the letters still in the buffer, or null if it needs working out again
+
+	/**
+	 * @param maxShift - The largest shift to count the matches of. Must be from 1 to 2^24
+	 */
+	public Autocorrelation(int maxShift) {
+		if(maxShift < 1 || maxShift > 1 << 24) {
+			throw new IllegalArgumentException("The largest shift must be between 1 and 2^24");
+		}
+		this.maxShift = maxShift;
+		blockLength = Math.max(MIN_BLOCK_LENGTH, Integer.highestOneBit(maxShift - 1) << 1);
+		fft = new Fft(blockLength * 2);
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int runBlocks = Math.min(BLOCKS_PER_TASK * parallelism, MAX_RUN_LETTERS / blockLength);
+		buffer = new byte[parallelism > 1 && runBlocks >= 2 ? runBlocks * blockLength : blockLength];
+		coincidences = new long[maxShift + 1];
+		workspace = new Workspace(blockLength * 2);
+	}
+
+	public Autocorrelation() {
+		this(defaultMaxShift);
+	}
+
+	/**
+	 * Correlates the whole of a text, in parallel
+	 * @param letters - The text, as values from 0 to 25
+	 * @param maxShift - The largest shift to count the matches of. Must be from 1 to 2^24
+	 * @return The correlation, with all the letters counted. More letters can still be given to it
+	 */
+	public static Autocorrelation scan(byte[] letters, int maxShift) {
+		long start = Metrics.start();
+		Autocorrelation correlation = new Autocorrelation(maxShift);
+		int blockLength = correlation.blockLength;
+		int fullBlocks = letters.length / blockLength;
+		// Every full block but the last is correlated here, and the rest is left as if it had been streamed
+		correlation.correlateBlocks(letters, 0, fullBlocks, correlation.coincidences);
+		if(fullBlocks > 0) {
+			correlation.transform(letters, (fullBlocks - 1) * blockLength, blockLength, correlation.workspace.block);
+			correlation.previous = true;
+		}
+		int from = fullBlocks * blockLength;
+		System.arraycopy(letters, from, correlation.buffer, 0, letters.length - from);
+		correlation.filled = letters.length - from;
+		correlation.length = letters.length;
+		Metrics.end(Metrics.Stage.AUTOCORRELATION, start, letters.length, maxShift);
+		return correlation;
+	}
+
+	/**
+	 * Correlates the whole of a text, at every shift up to half its length or {@link #defaultMaxShift}, whichever is less
+	 * @param letters - The text, as values from 0 to 25
+	 * @return The correlation, with all the letters counted
+	 */
+	public static Autocorrelation scan(byte[] letters) {
+		return scan(letters, Math.max(1, Math.min(letters.length / 2, defaultMaxShift)));
+	}
+
+	@Override
+	public void accept(byte[] letters, int count) {
+		total = null;
+		int i = 0;
+		while(i < count) {
+			int n = Math.min(count - i, buffer.length - filled);
+			System.arraycopy(letters, i, buffer, filled, n);
+			filled += n;
+			i += n;
+			if(filled == buffer.length) {
+				long start = Metrics.start();
+				correlateBuffered(buffer.length / blockLength, coincidences);
+				workspace.swap();
+				previous = true;
+				filled = 0;
+				Metrics.end(Metrics.Stage.AUTOCORRELATION, start, buffer.length, maxShift);
+			}
+		}
+		length += count;
+	}
+
+	/**
+	 * Adds the matches of the pairs that start in the last full block before the buffer, if there is one, and in every full block of the buffer but the last, to <code>into</code>
+	 * @param blocks - The number of full blocks at the start of the buffer. Must be at least 1
+	 * @return The spectra of the last of them, which are in <code>workspace.next</code>
+	 */
+	private Spectra correlateBuffered(int blocks, long[] into) {
+		transform(buffer, 0, blockLength, workspace.next);
+		if(previous) {
+			correlate(workspace.block, workspace.next, workspace, into);
+		}
+		if(blocks > 1) {
+			correlateBlocks(buffer, 0, blocks, into);
+			transform(buffer, (blocks - 1) * blockLength, blockLength, workspace.next);
+		}
+		return workspace.next;
+	}
+
+	/**
+	 * Adds the matches of the pairs that start in every block of a run but the last to <code>into</code>, in parallel
+	 * @param from - The index of the first letter of the run
+	 * @param blocks - The number of blocks in the run
+	 */
+	private void correlateBlocks(byte[] letters, int from, int blocks, long[] into) {
+		int pairs = Math.max(0, blocks - 1);
+		int tasks = (pairs + BLOCKS_PER_TASK - 1) / BLOCKS_PER_TASK;
+		long[][] counted = IntStream.range(0, tasks).parallel().mapToObj((t) -> {
+			long[] counts = new long[maxShift + 1];
+			Workspace ws = new Workspace(blockLength * 2);
+			int first = t * BLOCKS_PER_TASK;
+			int last = Math.min(pairs, first + BLOCKS_PER_TASK);
+			transform(letters, from + first * blockLength, blockLength, ws.block);
+			for(int b = first; b < last; b++) {
+				transform(letters, from + (b + 1) * blockLength, blockLength, ws.next);
+				correlate(ws.block, ws.next, ws, counts);
+				ws.swap();
+			}
+			return counts;
+		}).toArray(long[][]::new);
+		for(long[] counts : counted) {
+			for(int s = 1; s <= maxShift; s++) {
+				into[s] += counts[s];
+			}
+		}
+	}
+
+	/**
+	 * Works out the spectra of a block
+	 * @param from - The index of the block's first letter
+	 * @param count - The number of letters in the block. If it's less than the block length, the rest is 0s
+	 * @param into - The spectra to fill in
+	 */
+	private void transform(byte[] letters, int from, int count, Spectra into) {
+		for(int q = 0; q < 13; q++) {
+			double[] re = into.re[q];
+			double[] im = into.im[q];
+			int letter = 2 * q;
+			for(int i = 0; i < count; i++) {
+				int l = letters[from + i];
+				re[i] = l == letter ? 1 : 0;
+				im[i] = l == letter + 1 ? 1 : 0;
+			}
+			Arrays.fill(re, count, re.length, 0);
+			Arrays.fill(im, count, im.length, 0);
+			fft.forward(re, im);
+		}
+	}
+
+	/**
+	 * Adds the number of matches at every shift, of the pairs that start in a block, to <code>into</code>
+	 * @param block - The spectra of the block
+	 * @param next - The spectra of the block after it, or null if there isn't one
+	 */
+	private void correlate(Spectra block, Spectra next, Workspace ws, long[] into) {
+		int size = blockLength * 2;
+		double[] sumRe = ws.sumRe;
+		double[] sumIm = ws.sumIm;
+		Arrays.fill(sumRe, 0);
+		Arrays.fill(sumIm, 0);
+		for(int q = 0; q < 13; q++) {
+			double[] bRe = block.re[q];
+			double[] bIm = block.im[q];
+			for(int f = 0; f < size; f++) {
+				sumRe[f] += bRe[f] * bRe[f] + bIm[f] * bIm[f];
+			}
+			if(next != null) {
+				// Shifting the next block along by a block length multiplies frequency f by (-1)^f. The spectra are in bit-reversed order, so that's -1 for the second half of them
+				double[] nRe = next.re[q];
+				double[] nIm = next.im[q];
+				for(int f = 0; f < size; f++) {
+					double sign = f < blockLength ? 1 : -1;
+					// conj(B) * N
+					sumRe[f] += sign * (bRe[f] * nRe[f] + bIm[f] * nIm[f]);
+					sumIm[f] += sign * (bRe[f] * nIm[f] - bIm[f] * nRe[f]);
+				}
+			}
+		}
+		fft.inverse(sumRe, sumIm);
+		for(int s = 1; s <= maxShift; s++) {
+			into[s] += Math.round(sumRe[s] / size);
+		}
+	}
+
+	/**
+	 * @return The number of letters that have been correlated
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return The largest shift counted
+	 */
+	public int getMaxShift() {
+		return maxShift;
+	}
+
+	/**
+	 * @return The number of letters that match the letter <code>s</code> letters after them, at index <code>s</code> from 1 to the largest shift. Index 0 is unused
+	 */
+	public long[] getCoincidences() {
+		if(total == null) {
+			// The stream may carry on, so the last full block and the letters still in the buffer are counted without changing the state - workspace.next is only ever scratch space between runs
+			total = coincidences.clone();
+			int blocks = filled / blockLength;
+			Spectra last = previous ? workspace.block : null;
+			if(blocks > 0) {
+				last = correlateBuffered(blocks, total);
+			}
+			Spectra tail = null;
+			if(filled > blocks * blockLength) {
+				tail = new Spectra(blockLength * 2);
+				transform(buffer, blocks * blockLength, filled - blocks * blockLength, tail);
+			}
+			if(last != null) {
+				correlate(last, tail, workspace, total);
+			}
+			if(tail != null) {
+				correlate(tail, null, workspace, total);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return The fraction of letters that match the letter <code>s</code> letters after them (the coincidence rate), at index <code>s</code> from 1 to the largest shift. Index 0 is unused
+	 */
+	public float[] getRates() {
+		long[] counts = getCoincidences();
+		float[] rates = new float[counts.length];
+		for(int s = 1; s < counts.length && s < length; s++) {
+			rates[s] = (float)((double)counts[s] / (length - s));
+		}
+		return rates;
+	}
+
+	/**
+	 * Scores each period by the coincidence rate over all its multiples up to the largest shift. This is about the IOC of English for the keyword length and its multiples, and about the IOC of random letters for anything else,
+	 * so it can be read the same way as the results of the improved Kappa test
+	 * @param maxPeriod - The longest period to score
+	 * @return An IOCForKeyLen for each period from 1 to <code>maxPeriod</code> (or the largest shift, if it's less), with the coincidence rate as the IOC
+	 * @see AnalysisUtils#likelyKeyLength(ArrayList)
+	 */
+	public ArrayList<IOCForKeyLen> getPeriods(int maxPeriod) {
+		long[] counts = getCoincidences();
+		int periods = (int)Math.min(Math.min(maxPeriod, maxShift), Math.max(0, length - 1));
+		ArrayList<IOCForKeyLen> result = new ArrayList<IOCForKeyLen>(periods);
+		for(int p = 1; p <= periods; p++) {
+			long matches = 0;
+			long possible = 0;
+			for(int s = p; s <= maxShift && s < length; s += p) {
+				matches += counts[s];
+				possible += length - s;
+			}
+			result.add(new IOCForKeyLen(p, (float)((double)matches / possible)));
+		}
+		return result;
+	}
+
+	/**
+	 * @param maxPeriod - The longest period to consider
+	 * @return The most likely keyword length, picked from {@link #getPeriods(int)} the same way as from the improved Kappa test, or 0 if there are too few letters
+	 */
+	public int getKeyLength(int maxPeriod) {
+		return AnalysisUtils.likelyKeyLength(getPeriods(maxPeriod));
+	}
+
+	/**
+	 * @param maxPeriod - The longest period to consider
+	 * @param count - The most periods to return
+	 * @return The best periods, best first, leaving out multiples of better ones
+	 * @see HillClimbSolver#candidateKeyLengths(ArrayList, int)
+	 */
+	public int[] getBestPeriods(int maxPeriod, int count) {
+		return HillClimbSolver.candidateKeyLengths(getPeriods(maxPeriod), count);
+	}
+
+	/**
+	 * The spectra of the 13 pairs of letters of a block
+	 */
+	private static class Spectra {
+		final double[][] re;
+		final double[][] im;
+
+		Spectra(int size) {
+			re = new double[13][size];
+			im = new double[13][size];
+		}
+	}
+
+	/**
+	 * The buffers for correlating blocks one after another. Each thread needs its own
+	 */
+	private static class Workspace {
+		Spectra block;
+		Spectra next;
+		final double[] sumRe;
+		final double[] sumIm;
+
+		Workspace(int size) {
+			block = new Spectra(size);
+			next = new Spectra(size);
+			sumRe = new double[size];
+			sumIm = new double[size];
+		}
+
+		/**
+		 * Moves on a block, so the next block's spectra are the current block's, and the current block's are reused for the one after
+		 */
+		void swap() {
+			Spectra t = block;
+			block = next;
+			next = t;
+		}
+	}
+
+	/**
+	 * An in-place radix-2 FFT of a fixed size, with the twiddle factors worked out once.<br>
+	 * The spectra are only ever multiplied together point by point, so the order of their frequencies doesn't matter - the forward transform (decimation in frequency) leaves them in bit-reversed order,
+	 * and the inverse transform (decimation in time) takes them in that order, which saves reordering the arrays either side
+	 */
+	private static class Fft {
+		private final int size;
+		// The twiddle factors of each stage, one after another - the stage that combines halves of length h starts at index h - 1
+		private final double[] cos;
+		private final double[] sin;
+
+		Fft(int size) {
+			this.size = size;
+			cos = new double[Math.max(1, size - 1)];
+			sin = new double[Math.max(1, size - 1)];
+			for(int half = 1; half < size; half <<= 1) {
+				for(int k = 0; k < half; k++) {
+					cos[half - 1 + k] = Math.cos(Math.PI * k / half);
+					sin[half - 1 + k] = Math.sin(Math.PI * k / half);
+				}
+			}
+		}
+
+		/**
+		 * Transforms a sequence in natural order into its spectrum, in bit-reversed order
+		 */
+		void forward(double[] re, double[] im) {
+			for(int half = size / 2; half >= 2; half >>= 1) {
+				for(int g = 0; g < size; g += 2 * half) {
+					for(int k = 0; k < half; k++) {
+						int i = g + k;
+						int j = i + half;
+						double c = cos[half - 1 + k];
+						double s = sin[half - 1 + k];
+						double dRe = re[i] - re[j];
+						double dIm = im[i] - im[j];
+						re[i] += re[j];
+						im[i] += im[j];
+						// Times e^(-pi i k / half)
+						re[j] = dRe * c + dIm * s;
+						im[j] = dIm * c - dRe * s;
+					}
+				}
+			}
+			pairs(re, im);
+		}
+
+		/**
+		 * Transforms a spectrum in bit-reversed order back into a sequence, in natural order. This isn't divided by the size
+		 */
+		void inverse(double[] re, double[] im) {
+			pairs(re, im);
+			for(int half = 2; half < size; half <<= 1) {
+				for(int g = 0; g < size; g += 2 * half) {
+					for(int k = 0; k < half; k++) {
+						int i = g + k;
+						int j = i + half;
+						double c = cos[half - 1 + k];
+						double s = sin[half - 1 + k];
+						// Times e^(pi i k / half)
+						double tRe = re[j] * c - im[j] * s;
+						double tIm = re[j] * s + im[j] * c;
+						re[j] = re[i] - tRe;
+						im[j] = im[i] - tIm;
+						re[i] += tRe;
+						im[i] += tIm;
+					}
+				}
+			}
+		}
+
+		/**
+		 * The stage of length 2, which is the same forwards and backwards as its only twiddle factor is 1
+		 */
+		private void pairs(double[] re, double[] im) {
+			for(int i = 0; i + 1 < size; i += 2) {
+				double tRe = re[i + 1];
+				double tIm = im[i + 1];
+				re[i + 1] = re[i] - tRe;
+				im[i + 1] = im[i] - tIm;
+				re[i] += tRe;
+				im[i] += tIm;
+			}
+		}
+	}
+}
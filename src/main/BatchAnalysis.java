@@ -0,0 +1,445 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * Runs the analyses on many ciphertext files without a GUI, one job per file on a work-stealing pool, and streams a line of results out for each file as soon as it's done.<br>
+ * <br>
+ * Usage: <code>java main/Main --batch [options] &lt;file or directory&gt;...</code><br>
+ * Directories are searched for files recursively. Options:<br>
+ * <code>-j, --parallelism &lt;n&gt;</code> - The most files to analyse at once (defaults to the number of cores)<br>
+ * <code>--format json|csv</code> - Write JSON lines (the default) or CSV<br>
+ * <code>--max-key-length &lt;n&gt;</code> - The longest keyword length to test<br>
+ * <code>--kasiski-limit &lt;n&gt;</code> - The number of letters from the start of each file to do the Kasiski examination on<br>
+ * <code>--kasiski-top &lt;n&gt;</code> - The number of repeated sequences with the highest length times number of occurrences to keep (see {@link AnalysisUtils#KasiskiExamineTop(CipherText, int, int, int)}),
+ * defaults to <code>AnalysisUtils.defaultKasiskiTop</code>. 0 keeps all of them, which needs gigabytes of heap for each file with a <code>--kasiski-limit</code> of a million letters<br>
+ * <code>--quadgrams &lt;file&gt;</code> - Also solve each file with a {@link HillClimbSolver}, scoring with the quadgram counts in the file (see {@link QuadgramScorer#load(Path)})<br>
+ * <code>--restarts &lt;n&gt;</code> - The number of restarts for each keyword length the solver tries<br>
+ * <code>--window &lt;n&gt;</code> - Also scan each file with a {@link WindowScanner} of n letters, and list the places the keyword seems to change<br>
+ * <code>--window-step &lt;n&gt;</code> - The number of letters the window moves on between each comparison (defaults to a tenth of the window)<br>
+ * <code>--autocorrelation &lt;n&gt;</code> - Also count the matching letters at every shift up to n with an {@link Autocorrelation}, and list the best periods<br>
+ * <code>--metrics</code> - Time each stage of the analysis (see {@link Metrics}), and write a table of the totals to standard error at the end
+ */
+public class BatchAnalysis {
+	private static final String CSV_HEADER = "file,letters,kappaKeyLength,ko,iocKeyLength,ioc,kasiskiRepeats,kasiskiKeyLength,key,language,solvedKey,solvedScore,boundaries,autocorrelationPeriods,error";
+
+	public static int defaultKasiskiLimit = 1 << 20;
+
+	private final int parallelism;
+	private final boolean csv;
+	private final int maxKeyLength;
+	private final int kasiskiLimit;
+	private final int kasiskiTop;
+	private final QuadgramScorer scorer;
+	private final int restarts;
+	private final int windowSize;
+	private final int windowStep;
+	private final int autocorrelationShift;
+	private final Writer out;
+
+	/**
+	 * @param kasiskiTop - The most repeated sequences to keep for each file, or 0 to keep all of them. Keeping all of them needs heap in proportion to the number of repeats
+	 * @param scorer - The scorer to solve each file with, or null to not solve them
+	 * @param restarts - The number of restarts for each keyword length the solver tries
+	 * @param windowSize - The size of the window to scan each file with, or 0 to not scan them
+	 * @param windowStep - The number of letters the window moves on between each comparison
+	 * @param autocorrelationShift - The largest shift to correlate each file at, or 0 to not correlate them
+	 */
+	public BatchAnalysis(int parallelism, boolean csv, int maxKeyLength, int kasiskiLimit, int kasiskiTop, QuadgramScorer scorer, int restarts, int windowSize, int windowStep, int autocorrelationShift, Writer out) {
+		this.parallelism = parallelism;
+		this.csv = csv;
+		this.maxKeyLength = maxKeyLength;
+		this.kasiskiLimit = kasiskiLimit;
+		this.kasiskiTop = kasiskiTop;
+		this.scorer = scorer;
+		this.restarts = restarts;
+		this.windowSize = windowSize;
+		this.windowStep = windowStep;
+		this.autocorrelationShift = autocorrelationShift;
+		this.out = out;
+	}
+
+	/**
+	 * The results for one file. If the file couldn't be analysed, <code>error</code> says why and the rest is left empty
+	 */
+	public static class FileResult {
+		public String file;
+		public long letters;
+		public KappaResult kappa;
+		public int iocKeyLength;
+		public float ioc;
+		public int kasiskiRepeats;
+		public int kasiskiKeyLength;
+		public String key = "";
+		/**
+		 * The code of the language the plaintext seems to be in, which <code>key</code> and the Kappa test assume
+		 */
+		public String language = "";
+		/**
+		 * The best keyword from the solver, or an empty String if the file wasn't solved
+		 */
+		public String solvedKey = "";
+		public double solvedScore;
+		/**
+		 * The positions where the keyword seems to change, or null if the file wasn't scanned
+		 */
+		public ArrayList<Long> boundaries;
+		/**
+		 * The best periods from the autocorrelation, best first, or null if the file wasn't correlated
+		 */
+		public int[] autocorrelationPeriods;
+		public String error;
+
+		public String toJson() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("{\"file\":").append(Utils.jsonString(file));
+			if(error != null) {
+				sb.append(",\"error\":").append(Utils.jsonString(error));
+			} else {
+				sb.append(",\"letters\":").append(letters);
+				sb.append(",\"kappaKeyLength\":").append(kappa.keylength);
+				sb.append(",\"ko\":").append(kappa.ko);
+				sb.append(",\"iocKeyLength\":").append(iocKeyLength);
+				sb.append(",\"ioc\":").append(ioc);
+				sb.append(",\"kasiskiRepeats\":").append(kasiskiRepeats);
+				sb.append(",\"kasiskiKeyLength\":").append(kasiskiKeyLength);
+				sb.append(",\"key\":").append(Utils.jsonString(key));
+				sb.append(",\"language\":").append(Utils.jsonString(language));
+				if(!solvedKey.isEmpty()) {
+					sb.append(",\"solvedKey\":").append(Utils.jsonString(solvedKey));
+					sb.append(",\"solvedScore\":").append(solvedScore);
+				}
+				if(boundaries != null) {
+					sb.append(",\"boundaries\":[");
+					for(int i = 0; i < boundaries.size(); i++) {
+						sb.append(i == 0 ? "" : ",").append(boundaries.get(i));
+					}
+					sb.append(']');
+				}
+				if(autocorrelationPeriods != null) {
+					sb.append(",\"autocorrelationPeriods\":[");
+					for(int i = 0; i < autocorrelationPeriods.length; i++) {
+						sb.append(i == 0 ? "" : ",").append(autocorrelationPeriods[i]);
+					}
+					sb.append(']');
+				}
+			}
+			return sb.append('}').toString();
+		}
+
+		public String toCsv() {
+			if(error != null) {
+				return Utils.csvField(file) + ",,,,,,,,,,,,,," + Utils.csvField(error);
+			}
+			return Utils.csvField(file) + "," + letters + "," + kappa.keylength + "," + kappa.ko + "," + iocKeyLength + "," + ioc + "," + kasiskiRepeats + "," + kasiskiKeyLength + "," + key + "," + language + "," + solvedKey + "," + (solvedKey.isEmpty() ? "" : solvedScore) + "," + joinBoundaries() + "," + joinPeriods() + ",";
+		}
+
+		private String joinBoundaries() {
+			StringBuilder sb = new StringBuilder();
+			if(boundaries != null) {
+				for(int i = 0; i < boundaries.size(); i++) {
+					sb.append(i == 0 ? "" : ";").append(boundaries.get(i));
+				}
+			}
+			return sb.toString();
+		}
+
+		private String joinPeriods() {
+			StringBuilder sb = new StringBuilder();
+			if(autocorrelationPeriods != null) {
+				for(int i = 0; i < autocorrelationPeriods.length; i++) {
+					sb.append(i == 0 ? "" : ";").append(autocorrelationPeriods[i]);
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Parses the command line and runs the batch
+	 * @param args - The command line arguments, not including <code>--batch</code>
+	 * @return The exit code - 0 if every file was analysed, 1 if any failed, 2 if the arguments were wrong
+	 */
+	public static int run(String[] args) {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		boolean csv = false;
+		int maxKeyLength = AnalysisUtils.defaultMaxKeyLength;
+		int kasiskiLimit = defaultKasiskiLimit;
+		int kasiskiTop = AnalysisUtils.defaultKasiskiTop;
+		Path quadgrams = null;
+		int restarts = HillClimbSolver.defaultRestarts;
+		int windowSize = 0;
+		int windowStep = 0;
+		int autocorrelationShift = 0;
+		boolean metrics = false;
+		ArrayList<Path> inputs = new ArrayList<Path>();
+		try {
+			for(int i = 0; i < args.length; i++) {
+				switch(args[i]) {
+					case "-j":
+					case "--parallelism":
+						parallelism = Integer.parseInt(args[++i]);
+						break;
+					case "--format":
+						String format = args[++i];
+						if(!format.equals("json") && !format.equals("csv")) {
+							throw new IllegalArgumentException("Unknown format: " + format);
+						}
+						csv = format.equals("csv");
+						break;
+					case "--max-key-length":
+						maxKeyLength = Integer.parseInt(args[++i]);
+						break;
+					case "--kasiski-limit":
+						kasiskiLimit = Integer.parseInt(args[++i]);
+						break;
+					case "--kasiski-top":
+						kasiskiTop = Integer.parseInt(args[++i]);
+						break;
+					case "--quadgrams":
+						quadgrams = Paths.get(args[++i]);
+						break;
+					case "--restarts":
+						restarts = Integer.parseInt(args[++i]);
+						break;
+					case "--window":
+						windowSize = Integer.parseInt(args[++i]);
+						break;
+					case "--window-step":
+						windowStep = Integer.parseInt(args[++i]);
+						break;
+					case "--autocorrelation":
+						autocorrelationShift = Integer.parseInt(args[++i]);
+						break;
+					case "--metrics":
+						metrics = true;
+						break;
+					default:
+						inputs.add(Paths.get(args[i]));
+				}
+			}
+			if(inputs.isEmpty() || parallelism < 1 || maxKeyLength < 1 || kasiskiLimit < 0 || kasiskiTop < 0 || restarts < 1 || windowSize == 1 || windowSize < 0 || windowStep < 0 || windowStep > windowSize || autocorrelationShift < 0 || autocorrelationShift > 1 << 24) {
+				throw new IllegalArgumentException("No files given, or an option is out of range");
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java main/Main --batch [-j <n>] [--format json|csv] [--max-key-length <n>] [--kasiski-limit <n>] [--kasiski-top <n>] [--quadgrams <file>] [--restarts <n>] [--window <n>] [--window-step <n>] [--autocorrelation <n>] [--metrics] <file or directory>...");
+			if(e.getMessage() != null) {
+				System.err.println(e.getMessage());
+			}
+			return 2;
+		}
+		if(windowStep == 0) {
+			windowStep = Math.max(1, windowSize / 10);
+		}
+
+		if(metrics) {
+			// Has to be set before anything is measured, as Metrics reads it once when it's loaded
+			System.setProperty(Metrics.PROPERTY, "true");
+			if(!Metrics.ENABLED) {
+				System.err.println("Metrics were already turned off, so none will be reported");
+			}
+		}
+
+		try {
+			List<Path> files = listFiles(inputs);
+			QuadgramScorer scorer = quadgrams == null ? null : QuadgramScorer.load(quadgrams);
+			// Not System.out, which is a PrintStream and so hides any failure to write
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8));
+			BatchAnalysis batch = new BatchAnalysis(parallelism, csv, maxKeyLength, kasiskiLimit, kasiskiTop, scorer, restarts, windowSize, windowStep, autocorrelationShift, out);
+			int failed = batch.analyseAll(files);
+			out.flush();
+			if(metrics && Metrics.ENABLED) {
+				System.err.print(Metrics.report());
+			}
+			return failed == 0 ? 0 : 1;
+		} catch(IOException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+	}
+
+	/**
+	 * Expands any directories into the (regular) files inside them
+	 */
+	private static List<Path> listFiles(List<Path> inputs) throws IOException {
+		ArrayList<Path> files = new ArrayList<Path>();
+		for(Path input : inputs) {
+			if(Files.isDirectory(input)) {
+				try(Stream<Path> walk = Files.walk(input)) {
+					files.addAll(walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+				}
+			} else {
+				files.add(input);
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Analyses all the files, writing a line out for each one as it finishes
+	 * @param files - The files to analyse
+	 * @return The number of files that couldn't be analysed
+	 * @throws IOException If the results couldn't be written. No more files are started after the first failure, which is thrown once the ones already started have finished
+	 */
+	public int analyseAll(List<Path> files) throws IOException {
+		if(csv) {
+			writeLine(CSV_HEADER);
+		}
+		int[] failed = { 0 };
+		// Once a line can't be written, nothing more is analysed - the output is already incomplete, and the failure is thrown once the pool has stopped
+		AtomicReference<IOException> writeFailure = new AtomicReference<IOException>();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for(Path file : files) {
+				if(writeFailure.get() != null) {
+					break;
+				}
+				pool.execute(() -> {
+					if(writeFailure.get() != null) {
+						return;
+					}
+					FileResult result = analyse(file);
+					try {
+						writeLine(csv ? result.toCsv() : result.toJson());
+					} catch(IOException e) {
+						writeFailure.compareAndSet(null, e);
+						return;
+					}
+					if(result.error != null) {
+						synchronized(failed) {
+							failed[0]++;
+						}
+					}
+				});
+			}
+		} finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(writeFailure.get() != null) {
+			throw writeFailure.get();
+		}
+		synchronized(failed) {
+			return failed[0];
+		}
+	}
+
+	/**
+	 * Runs the Kasiski examination, both Kappa tests and the chi-squared test on a file, the solver if there's a scorer, the window scanner if there's a window size, and the autocorrelation if there's a largest shift
+	 * @param file - The file to analyse
+	 * @return The results
+	 */
+	public FileResult analyse(Path file) {
+		return analyse(file.toString(), (sink) -> CipherTextFile.stream(file, sink));
+	}
+
+	/**
+	 * Runs the same analyses as {@link #analyse(Path)} on a text that's already in memory
+	 * @param name - The name to give the text in the results
+	 * @param letters - The text, as values from 0 to 25
+	 * @return The results
+	 */
+	public FileResult analyse(String name, byte[] letters) {
+		return analyse(name, (sink) -> sink.accept(letters, letters.length));
+	}
+
+	/**
+	 * Somewhere to read the letters of a text from, a chunk at a time
+	 */
+	private static interface LetterSource {
+		public abstract void streamTo(CipherTextFile.LetterSink sink) throws IOException;
+	}
+
+	private FileResult analyse(String name, LetterSource source) {
+		FileResult result = new FileResult();
+		result.file = name;
+		try {
+			StreamingAnalysis analysis = new StreamingAnalysis(maxKeyLength, kasiskiLimit);
+			WindowScanner scanner = windowSize > 0 ? new WindowScanner(windowSize, windowStep) : null;
+			Autocorrelation correlation = autocorrelationShift > 0 ? new Autocorrelation(autocorrelationShift) : null;
+			source.streamTo((letters, count) -> {
+				analysis.accept(letters, count);
+				if(scanner != null) {
+					scanner.accept(letters, count);
+				}
+				if(correlation != null) {
+					correlation.accept(letters, count);
+				}
+			});
+			result.letters = analysis.getLength();
+
+			ArrayList<IOCForKeyLen> iocs = analysis.getIOCs();
+			result.iocKeyLength = analysis.getKeyLength(iocs);
+			LanguageProfile language = analysis.getLanguage(Math.max(1, result.iocKeyLength));
+			result.language = language.getCode();
+			result.kappa = analysis.getKappaResult(language);
+			if(result.iocKeyLength > 0) {
+				result.ioc = iocs.get(result.iocKeyLength - 1).ioc;
+				StringBuilder key = new StringBuilder(result.iocKeyLength);
+				for(ShiftsForColumn column : analysis.getShifts(result.iocKeyLength, language)) {
+					key.append(column.getBestLetter());
+				}
+				result.key = key.toString();
+			}
+
+			if(scanner != null) {
+				result.boundaries = scanner.getBoundaries();
+			}
+			if(correlation != null) {
+				result.autocorrelationPeriods = correlation.getBestPeriods(maxKeyLength, HillClimbSolver.defaultKeyLengths);
+			}
+
+			KasiskiResult kasiski = kasiskiTop > 0 ? analysis.getKasiskiResult(kasiskiTop) : analysis.getFullKasiskiResult();
+			result.kasiskiRepeats = kasiski.size();
+			result.kasiskiKeyLength = AnalysisUtils.KasiskiKeyLength(kasiski, maxKeyLength);
+
+			if(scorer != null) {
+				// The solver only needs the start of the text, which the Kasiski examination has already kept
+				byte[] letters = analysis.getKasiskiText().getLetters();
+				letters = Arrays.copyOf(letters, Math.min(letters.length, HillClimbSolver.defaultMaxLetters));
+				ArrayList<HillClimbSolver.Solution> solutions = HillClimbSolver.solve(letters, HillClimbSolver.candidateKeyLengths(AnalysisUtils.usableIOCs(iocs, result.letters), HillClimbSolver.defaultKeyLengths, language), restarts, scorer, 0);
+				if(!solutions.isEmpty() && letters.length >= 4) {
+					result.solvedKey = solutions.get(0).key;
+					result.solvedScore = solutions.get(0).score;
+				}
+			}
+		} catch(Throwable e) {
+			// Includes running out of memory - what was allocated for this file can be collected, and the file still gets its line and counts as failed
+			result.error = e.toString();
+		}
+		return result;
+	}
+
+	private void writeLine(String line) throws IOException {
+		synchronized(out) {
+			out.write(line);
+			out.write('\n');
+			out.flush();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package main;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A ciphertext, stored compactly - the letters are kept as bytes from 0 to 25 (A to Z), and everything needed to put the text back the way it was is kept separately:<br>
+ * which characters were letters and which letters were capitals are kept in BitSets, and the non-letter characters (punctuation, whitespace and so on) are kept in order in a char array.<br>
+ * <br>
+ * Only A-Z and a-z count as letters. A CipherText is built in a single pass over the text, and isn't changed after that
+ */
+public class CipherText {
+	private final byte[] letters;
+	private final int length;
+	private final BitSet letterMask; // Bit i is set if character i of the original text is a letter
+	private final BitSet upperMask; // Bit i is set if letter i was a capital
+	private final char[] others;
+
+	private CipherText(byte[] letters, int length, BitSet letterMask, BitSet upperMask, char[] others) {
+		this.letters = letters;
+		this.length = length;
+		this.letterMask = letterMask;
+		this.upperMask = upperMask;
+		this.others = others;
+	}
+
+	/**
+	 * Splits a text into its letters and its formatting
+	 * @param text - The text, as it was entered
+	 * @return The CipherText
+	 */
+	public static CipherText parse(CharSequence text) {
+		long start = Metrics.start();
+		int length = text.length();
+		byte[] letters = new byte[length];
+		char[] others = new char[length];
+		BitSet letterMask = new BitSet(length);
+		BitSet upperMask = new BitSet();
+		int numLetters = 0;
+		int numOthers = 0;
+		for(int i = 0; i < length; i++) {
+			char ch = text.charAt(i);
+			if(ch >= 'A' && ch <= 'Z') {
+				upperMask.set(numLetters);
+				letterMask.set(i);
+				letters[numLetters++] = (byte)(ch - 'A');
+			} else if(ch >= 'a' && ch <= 'z') {
+				letterMask.set(i);
+				letters[numLetters++] = (byte)(ch - 'a');
+			} else {
+				others[numOthers++] = ch;
+			}
+		}
+		Metrics.end(Metrics.Stage.NORMALISE, start, length, numLetters);
+		return new CipherText(Arrays.copyOf(letters, numLetters), length, letterMask, upperMask, Arrays.copyOf(others, numOthers));
+	}
+
+	/**
+	 * Makes a CipherText from letters alone, with no formatting - every letter is a capital
+	 * @param letters - The letters, as values from 0 to 25. This is not copied
+	 * @return The CipherText
+	 */
+	public static CipherText fromLetters(byte[] letters) {
+		BitSet letterMask = new BitSet(letters.length);
+		letterMask.set(0, letters.length);
+		BitSet upperMask = new BitSet(letters.length);
+		upperMask.set(0, letters.length);
+		return new CipherText(letters, letters.length, letterMask, upperMask, new char[0]);
+	}
+
+	/**
+	 * @return The letters, as values from 0 to 25. This is not a copy, so don't change it
+	 */
+	public byte[] getLetters() {
+		return letters;
+	}
+
+	public int getLetterCount() {
+		return letters.length;
+	}
+
+	/**
+	 * @return The length of the original text, including non-letter characters
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @param index - The index of a character in the original text
+	 * @return Whether the character is a letter
+	 */
+	public boolean isLetter(int index) {
+		return letterMask.get(index);
+	}
+
+	/**
+	 * @param letterIndex - The index of a letter, counting letters only
+	 * @return Whether the letter was a capital
+	 */
+	public boolean isUpperCase(int letterIndex) {
+		return upperMask.get(letterIndex);
+	}
+
+	/**
+	 * @return The letters as a read-only sequence of capital letters, without copying them
+	 */
+	public CharSequence asLetterSequence() {
+		return new LetterSequence(letters, 0, letters.length);
+	}
+
+	/**
+	 * @return The letters as a String of capital letters
+	 */
+	public String getLetterString() {
+		char[] chars = new char[letters.length];
+		for(int i = 0; i < letters.length; i++) {
+			chars[i] = (char)('A' + letters[i]);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Puts the text back together, with its original punctuation, whitespace and capitals
+	 * @return The original text
+	 */
+	public String toOriginalString() {
+		char[] chars = new char[length];
+		int letter = 0;
+		int other = 0;
+		for(int i = 0; i < length; i++) {
+			if(letterMask.get(i)) {
+				chars[i] = (char)((upperMask.get(letter) ? 'A' : 'a') + letters[letter]);
+				letter++;
+			} else {
+				chars[i] = others[other++];
+			}
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public String toString() {
+		return toOriginalString();
+	}
+
+	/**
+	 * A view of some letters as capital letters
+	 */
+	private static class LetterSequence implements CharSequence {
+		private final byte[] letters;
+		private final int from;
+		private final int to;
+
+		LetterSequence(byte[] letters, int from, int to) {
+			this.letters = letters;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public int length() {
+			return to - from;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char)('A' + letters[from + index]);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new LetterSequence(letters, from + start, from + end);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[to - from];
+			for(int i = 0; i < chars.length; i++) {
+				chars[i] = (char)('A' + letters[from + i]);
+			}
+			return new String(chars);
+		}
+	}
+}
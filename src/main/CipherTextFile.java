@@ -0,0 +1,119 @@
+package main;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads ciphertext straight out of files, by memory-mapping them and normalising them a chunk at a time, so that a file never has to be held in memory as a String (or at all).<br>
+ * <br>
+ * The file is treated as bytes - A-Z and a-z are letters, and everything else is skipped. This works for ASCII, Latin-1 and UTF-8 files alike, since no byte of a multi-byte UTF-8 character is an ASCII letter
+ */
+public class CipherTextFile {
+	private CipherTextFile() {
+		throw new AssertionError("This class should not be instantiable");
+	}
+
+	/**
+	 * The number of bytes that are mapped at a time
+	 */
+	private static final long MAP_SIZE = 1 << 28;
+
+	/**
+	 * The number of bytes normalised at a time, and so the most letters a LetterSink will be given at once
+	 */
+	public static int defaultChunkSize = 1 << 22;
+
+	public static interface LetterSink {
+		/**
+		 * This method is called with each chunk of letters, in order
+		 * @param letters - The letters, as values from 0 to 25. This array is reused for the next chunk, so don't hold on to it
+		 * @param count - The number of letters in <code>letters</code>
+		 */
+		public abstract void accept(byte[] letters, int count);
+	}
+
+	/**
+	 * Reads the letters out of a file, a chunk at a time, handing each chunk to <code>sink</code>. Only one chunk of letters is held in memory at once
+	 * @param path - The file to read
+	 * @param sink - The LetterSink to give the letters to
+	 * @return The total number of letters read
+	 * @throws IOException If the file can't be read
+	 * @see #stream(Path, int, LetterSink)
+	 */
+	public static long stream(Path path, LetterSink sink) throws IOException {
+		return stream(path, defaultChunkSize, sink);
+	}
+
+	/**
+	 * Reads the letters out of a file, a chunk at a time, handing each chunk to <code>sink</code>. Only one chunk of letters is held in memory at once
+	 * @param path - The file to read
+	 * @param chunkSize - The number of bytes to normalise at a time
+	 * @param sink - The LetterSink to give the letters to
+	 * @return The total number of letters read
+	 * @throws IOException If the file can't be read
+	 */
+	public static long stream(Path path, int chunkSize, LetterSink sink) throws IOException {
+		long total = 0;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			byte[] chunk = new byte[(int)Math.max(1, Math.min(chunkSize, size))];
+			for(long position = 0; position < size; position += MAP_SIZE) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+				while(buffer.hasRemaining()) {
+					int read = Math.min(chunk.length, buffer.remaining());
+					buffer.get(chunk, 0, read);
+					long start = Metrics.start();
+					int count = normalise(chunk, read);
+					Metrics.end(Metrics.Stage.NORMALISE, start, read, count);
+					if(count > 0) {
+						sink.accept(chunk, count);
+						total += count;
+					}
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Reads the letters of a file into a CipherText, with no formatting. Only use this when the letters will fit in memory
+	 * @param path - The file to read
+	 * @param maxLetters - The most letters to read. Any letters after this are ignored
+	 * @return The CipherText
+	 * @throws IOException If the file can't be read
+	 */
+	public static CipherText read(Path path, int maxLetters) throws IOException {
+		byte[][] letters = { new byte[Math.min(maxLetters, 1 << 16)] };
+		int[] count = { 0 };
+		stream(path, (chunk, chunkCount) -> {
+			int take = Math.min(chunkCount, maxLetters - count[0]);
+			if(count[0] + take > letters[0].length) {
+				letters[0] = Arrays.copyOf(letters[0], (int)Math.min(maxLetters, Math.max((long)letters[0].length * 2, count[0] + take)));
+			}
+			System.arraycopy(chunk, 0, letters[0], count[0], take);
+			count[0] += take;
+		});
+		return CipherText.fromLetters(Arrays.copyOf(letters[0], count[0]));
+	}
+
+	/**
+	 * Converts the letters in <code>bytes</code> to values from 0 to 25 in place, dropping everything else
+	 * @return The number of letters, which are now at the start of <code>bytes</code>
+	 */
+	private static int normalise(byte[] bytes, int length) {
+		int n = 0;
+		for(int i = 0; i < length; i++) {
+			int b = bytes[i];
+			if(b >= 'A' && b <= 'Z') {
+				bytes[n++] = (byte)(b - 'A');
+			} else if(b >= 'a' && b <= 'z') {
+				bytes[n++] = (byte)(b - 'a');
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,305 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Letter counts for every column, for every keyword length from 1 up to a maximum - where a column is the letters that would be enciphered with the same letter of the keyword.<br>
+ * <br>
+ * All the keyword lengths are counted in the same pass over the text. Only the keyword lengths in the top half of the range are actually counted -
+ * every shorter length k has a multiple m in the top half, and column c of length k is just the sum of the columns of length m that are equal to c mod k, so those are worked out from the counts when they're needed.<br>
+ * <br>
+ * The counts for keyword length k are stored in one int array of k * 26 elements, column by column
+ */
+public class ColumnHistograms {
+	/**
+	 * The number of letters a single fork/join task will count, below which it won't split any further
+	 */
+	private static final int SPLIT_THRESHOLD = 1 << 20;
+	/**
+	 * The number of letters counted for every keyword length before moving on to the next block, so that the block stays in the cache
+	 */
+	private static final int BLOCK_SIZE = 1 << 14;
+
+	private final int maxKeyLength;
+	private final long[][] counts;
+	private final int minCountedKeyLength; // Shorter keyword lengths are derived from longer ones
+	private boolean derived = true;
+	private long length;
+
+	/**
+	 * Makes empty histograms
+	 * @param maxKeyLength - The longest keyword length to count columns for
+	 */
+	public ColumnHistograms(int maxKeyLength) {
+		this.maxKeyLength = maxKeyLength;
+		minCountedKeyLength = maxKeyLength / 2 + 1;
+		counts = new long[maxKeyLength][];
+		for(int k = 1; k <= maxKeyLength; k++) {
+			counts[k - 1] = new long[k * 26];
+		}
+	}
+
+	/**
+	 * Counts the columns of <code>letters</code> for every keyword length, splitting the text between all the cores with fork/join
+	 * @param letters - The text, with each letter as a value from 0 to 25
+	 * @param maxKeyLength - The longest keyword length to count columns for
+	 * @return The histograms
+	 */
+	public static ColumnHistograms compute(byte[] letters, int maxKeyLength) {
+		return compute(letters, 0, letters.length, maxKeyLength);
+	}
+
+	/**
+	 * Counts the columns of part of <code>letters</code> for every keyword length, as if that part was the whole text
+	 * @param letters - The text, with each letter as a value from 0 to 25
+	 * @param from - The index of the first letter to count (inclusive)
+	 * @param to - The index of the last letter to count (exclusive)
+	 * @param maxKeyLength - The longest keyword length to count columns for
+	 * @return The histograms
+	 * @see #compute(byte[], int)
+	 */
+	public static ColumnHistograms compute(byte[] letters, int from, int to, int maxKeyLength) {
+		long start = Metrics.start();
+		CountTask task = new CountTask(letters, from, to, maxKeyLength);
+		// Not worth handing over to the pool if it won't split
+		ColumnHistograms hists = to - from <= SPLIT_THRESHOLD ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+		Metrics.end(Metrics.Stage.COLUMN_COUNT, start, to - from, maxKeyLength);
+		return hists;
+	}
+
+	/**
+	 * Counts the columns of <code>letters</code> for a single keyword length, splitting the text between all the cores with fork/join
+	 * @param letters - The text, with each letter as a value from 0 to 25
+	 * @param keyLength - The keyword length
+	 * @return The counts for all the columns - the count of letter l in column c is at index <code>c * 26 + l</code>
+	 */
+	public static long[] countColumns(byte[] letters, int keyLength) {
+		ColumnCountTask task = new ColumnCountTask(letters, 0, letters.length, keyLength);
+		if(letters.length <= SPLIT_THRESHOLD * 4) {
+			return task.compute(); // Not worth handing over to the pool
+		}
+		return ForkJoinPool.commonPool().invoke(task);
+	}
+
+	public int getMaxKeyLength() {
+		return maxKeyLength;
+	}
+
+	/**
+	 * @return The number of letters that have been counted
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @param keyLength - The keyword length
+	 * @return The counts for all the columns of that keyword length - the count of letter l in column c is at index <code>c * 26 + l</code>. This is not a copy
+	 */
+	public long[] getCounts(int keyLength) {
+		derive();
+		return counts[keyLength - 1];
+	}
+
+	public long getCount(int keyLength, int column, int letter) {
+		return getCounts(keyLength)[column * 26 + letter];
+	}
+
+	/**
+	 * @return The number of letters in the column
+	 */
+	public long getColumnLength(int keyLength, int column) {
+		return length / keyLength + (column < length % keyLength ? 1 : 0);
+	}
+
+	/**
+	 * Counts more letters, carrying on from the letters that have already been counted
+	 * @param letters - The letters, as values from 0 to 25
+	 * @param from - The index of the first letter to count (inclusive)
+	 * @param to - The index of the last letter to count (exclusive)
+	 */
+	public void add(byte[] letters, int from, int to) {
+		for(int blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+			int blockEnd = Math.min(to, blockStart + BLOCK_SIZE);
+			long offset = length + (blockStart - from); // The position in the whole text of the start of this block
+			for(int k = minCountedKeyLength; k <= maxKeyLength; k++) {
+				long[] hist = counts[k - 1];
+				int firstCol = (int)(offset % k);
+				// Go down each column in turn, so there's no wrapping to check for inside the loop
+				for(int c = 0; c < k && blockStart + c < blockEnd; c++) {
+					int base = ((firstCol + c) % k) * 26;
+					for(int i = blockStart + c; i < blockEnd; i += k) {
+						hist[base + letters[i]]++;
+					}
+				}
+			}
+		}
+		length += to - from;
+		derived = false;
+	}
+
+	/**
+	 * Updates the counts for one letter of the text having been changed to a different letter
+	 * @param position - The position of the letter in the text
+	 * @param oldLetter - The letter that was counted there, from 0 to 25
+	 * @param newLetter - The letter that is there now, from 0 to 25
+	 */
+	public void change(long position, int oldLetter, int newLetter) {
+		for(int k = minCountedKeyLength; k <= maxKeyLength; k++) {
+			int base = (int)(position % k) * 26;
+			counts[k - 1][base + oldLetter]--;
+			counts[k - 1][base + newLetter]++;
+		}
+		derived = false;
+	}
+
+	/**
+	 * Adds the counts of <code>other</code>, which must have been counted from the letters directly after the ones counted here, onto these histograms
+	 * @param other - The histograms of the following letters. Must have the same maximum keyword length
+	 */
+	public void append(ColumnHistograms other) {
+		for(int k = minCountedKeyLength; k <= maxKeyLength; k++) {
+			long[] hist = counts[k - 1];
+			long[] otherHist = other.counts[k - 1];
+			int shift = (int)(length % k); // Column 0 of other is column shift of this
+			for(int c = 0; c < k; c++) {
+				int target = ((c + shift) % k) * 26;
+				for(int l = 0; l < 26; l++) {
+					hist[target + l] += otherHist[c * 26 + l];
+				}
+			}
+		}
+		length += other.length;
+		derived = false;
+	}
+
+	/**
+	 * Calculates the index of coincidence of one column
+	 * @param keyLength - The keyword length
+	 * @param column - The column
+	 * @return The IOC, or 0 if the column has fewer than 2 letters
+	 */
+	public float getIOC(int keyLength, int column) {
+		long[] hist = getCounts(keyLength);
+		long n = getColumnLength(keyLength, column);
+		if(n < 2) {
+			return 0;
+		}
+		long sum = 0;
+		for(int l = column * 26; l < column * 26 + 26; l++) {
+			sum += hist[l] * (hist[l] - 1);
+		}
+		return (float)((double)sum / ((double)n * (n - 1)));
+	}
+
+	/**
+	 * Calculates the average index of coincidence of the columns for a keyword length, leaving out any columns with fewer than 2 letters
+	 * @param keyLength - The keyword length
+	 * @return The average IOC, or 0 if no columns have 2 or more letters
+	 */
+	public float getAverageIOC(int keyLength) {
+		float total = 0;
+		int columns = 0;
+		for(int c = 0; c < keyLength; c++) {
+			if(getColumnLength(keyLength, c) >= 2) {
+				total += getIOC(keyLength, c);
+				columns++;
+			}
+		}
+		return columns == 0 ? 0 : total / columns;
+	}
+
+	/**
+	 * Works out the counts of the keyword lengths that aren't counted directly, from a multiple of them that is
+	 */
+	private void derive() {
+		if(derived) {
+			return;
+		}
+		for(int k = 1; k < minCountedKeyLength; k++) {
+			int m = k * (maxKeyLength / k);
+			long[] hist = counts[k - 1];
+			long[] multipleHist = counts[m - 1];
+			Arrays.fill(hist, 0);
+			for(int c = 0; c < m; c++) {
+				int target = (c % k) * 26;
+				for(int l = 0; l < 26; l++) {
+					hist[target + l] += multipleHist[c * 26 + l];
+				}
+			}
+		}
+		derived = true;
+	}
+
+	private static class CountTask extends RecursiveTask<ColumnHistograms> {
+		private static final long serialVersionUID = -3017405914307788170L;
+
+		private final byte[] letters;
+		private final int from;
+		private final int to;
+		private final int maxKeyLength;
+
+		CountTask(byte[] letters, int from, int to, int maxKeyLength) {
+			this.letters = letters;
+			this.from = from;
+			this.to = to;
+			this.maxKeyLength = maxKeyLength;
+		}
+
+		@Override
+		protected ColumnHistograms compute() {
+			if(to - from <= SPLIT_THRESHOLD) {
+				ColumnHistograms hists = new ColumnHistograms(maxKeyLength);
+				hists.add(letters, from, to);
+				return hists;
+			}
+			int mid = (from + to) >>> 1;
+			CountTask right = new CountTask(letters, mid, to, maxKeyLength);
+			right.fork();
+			ColumnHistograms left = new CountTask(letters, from, mid, maxKeyLength).compute();
+			left.append(right.join());
+			return left;
+		}
+	}
+
+	private static class ColumnCountTask extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 5302710553838925116L;
+
+		private final byte[] letters;
+		private final int from;
+		private final int to;
+		private final int keyLength;
+
+		ColumnCountTask(byte[] letters, int from, int to, int keyLength) {
+			this.letters = letters;
+			this.from = from;
+			this.to = to;
+			this.keyLength = keyLength;
+		}
+
+		@Override
+		protected long[] compute() {
+			if(to - from <= SPLIT_THRESHOLD * 4) {
+				long[] hist = new long[keyLength * 26];
+				for(int c = 0; c < keyLength && from + c < to; c++) {
+					int base = ((from + c) % keyLength) * 26;
+					for(int i = from + c; i < to; i += keyLength) {
+						hist[base + letters[i]]++;
+					}
+				}
+				return hist;
+			}
+			int mid = (from + to) >>> 1;
+			ColumnCountTask right = new ColumnCountTask(letters, mid, to, keyLength);
+			right.fork();
+			long[] hist = new ColumnCountTask(letters, from, mid, keyLength).compute();
+			long[] rightHist = right.join();
+			for(int i = 0; i < hist.length; i++) {
+				hist[i] += rightHist[i];
+			}
+			return hist;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package main;
+
+/**
+ * Deciphers a CipherText with keyword after keyword, quickly enough to be called from a loop trying thousands of keywords, and puts the plaintext back into the ciphertext's original layout.<br>
+ * <br>
+ * The letters are deciphered with a tabula recta - a 26 x 26 table of the plaintext letter for every keyword letter and ciphertext letter - into buffers that are reused for every keyword.
+ * The layout is worked out once, when the Decryptor is made: the output buffer is filled with the original text, so the punctuation and whitespace are already in place,
+ * and the runs of letters between them are listed along with whether each letter was a capital. Putting a plaintext into the layout is then one pass over the runs, writing only the letters.
+ * Nothing is allocated after the Decryptor is made, so the buffers returned are overwritten by the next call
+ */
+public class Decryptor {
+	/**
+	 * [keyword letter * 26 + ciphertext letter] = plaintext letter
+	 */
+	private static final byte[] TABULA_RECTA = new byte[26 * 26];
+
+	static {
+		for(int k = 0; k < 26; k++) {
+			for(int c = 0; c < 26; c++) {
+				TABULA_RECTA[k * 26 + c] = (byte)((c - k + 26) % 26);
+			}
+		}
+	}
+
+	private final byte[] letters;
+	private final byte[] plain;
+	private final char[] output;
+	private final byte[] caseBases; // 'A' or 'a' for each letter
+	// Each run of letters in the original text - where it starts in the text, and how long it is. The runs are in order, so the letters of each follow on from the last
+	private final int[] runStarts;
+	private final int[] runLengths;
+
+	/**
+	 * @param text - The ciphertext
+	 */
+	public Decryptor(CipherText text) {
+		letters = text.getLetters();
+		plain = new byte[letters.length];
+		output = text.toOriginalString().toCharArray();
+		caseBases = new byte[letters.length];
+		for(int i = 0; i < letters.length; i++) {
+			caseBases[i] = (byte)(text.isUpperCase(i) ? 'A' : 'a');
+		}
+		int runs = 0;
+		for(int i = 0; i < output.length; i++) {
+			if(text.isLetter(i) && (i == 0 || !text.isLetter(i - 1))) {
+				runs++;
+			}
+		}
+		runStarts = new int[runs];
+		runLengths = new int[runs];
+		int run = -1;
+		for(int i = 0; i < output.length; i++) {
+			if(text.isLetter(i)) {
+				if(i == 0 || !text.isLetter(i - 1)) {
+					runStarts[++run] = i;
+				}
+				runLengths[run]++;
+			}
+		}
+	}
+
+	/**
+	 * Deciphers the letters alone
+	 * @param key - The keyword, as values from 0 to 25. Must have at least one letter
+	 * @return The plaintext letters, as values from 0 to 25. This is the Decryptor's buffer, so it's overwritten by the next call
+	 */
+	public byte[] decryptLetters(byte[] key) {
+		int k = 0;
+		for(int i = 0; i < letters.length; i++) {
+			plain[i] = TABULA_RECTA[key[k] * 26 + letters[i]];
+			if(++k == key.length) {
+				k = 0;
+			}
+		}
+		return plain;
+	}
+
+	/**
+	 * Deciphers the text and puts it back into its original layout, with the same punctuation, whitespace and capitals
+	 * @param key - The keyword, as values from 0 to 25. Must have at least one letter
+	 * @return The plaintext. This is the Decryptor's buffer, so it's overwritten by the next call
+	 */
+	public char[] decrypt(byte[] key) {
+		// Deciphered straight into the layout, rather than through decryptLetters, so the letters are only gone over once
+		int letter = 0;
+		int k = 0;
+		for(int r = 0; r < runStarts.length; r++) {
+			int start = runStarts[r];
+			int end = start + runLengths[r];
+			for(int i = start; i < end; i++, letter++) {
+				output[i] = (char)(caseBases[letter] + TABULA_RECTA[key[k] * 26 + letters[letter]]);
+				if(++k == key.length) {
+					k = 0;
+				}
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Deciphers the text and puts it back into its original layout
+	 * @param key - The keyword. Anything but letters is ignored, and if there are no letters the ciphertext is returned as it is
+	 * @return The plaintext
+	 * @see #decrypt(byte[])
+	 */
+	public String decrypt(String key) {
+		byte[] keyLetters = Utils.toLetterIndices(key);
+		if(keyLetters.length == 0) {
+			keyLetters = new byte[] { 0 }; // A leaves every letter as it is
+		}
+		return new String(decrypt(keyLetters));
+	}
+
+	/**
+	 * @return The number of letters in the text
+	 */
+	public int getLetterCount() {
+		return letters.length;
+	}
+}
@@ -0,0 +1,482 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Tries every word of a wordlist as the keyword, for when the keyword is likely to be a dictionary word or phrase.<br>
+ * <br>
+ * The wordlist has one word or phrase per line, and only its letters are used, so <code>Key Phrase!</code> is tried as KEYPHRASE. The file is memory-mapped a slice at a time,
+ * with every slice starting just after a newline, and the slices are shared out among the workers, which each keep their own best <code>top</code> matches.
+ * For each word the start of the ciphertext is deciphered and scored - by the chi-squared statistic against a language's letter frequencies, or by quadgrams if there's a {@link QuadgramScorer}.
+ * Both scores only get worse as more letters are added, so every {@link #CHECK_INTERVAL} letters the best score the word could still end up with is compared with the worst of the best <code>top</code> matches
+ * any worker has found so far, and the word is dropped as soon as it can't beat it. Most words are dropped after the first few dozen letters.<br>
+ * <br>
+ * Usage: <code>java main/Main --dictionary [options] &lt;wordlist&gt; &lt;ciphertext file&gt;</code><br>
+ * Options:<br>
+ * <code>-j, --parallelism &lt;n&gt;</code> - The number of workers (defaults to the number of cores)<br>
+ * <code>--top &lt;n&gt;</code> - The number of matches to list (defaults to {@link #defaultTop})<br>
+ * <code>--prefix &lt;n&gt;</code> - The number of letters from the start of the ciphertext to score each word on (defaults to {@link #defaultPrefixLetters})<br>
+ * <code>--quadgrams &lt;file&gt;</code> - Score with the quadgrams in the file (see {@link QuadgramScorer#load(Path)}) rather than the chi-squared statistic<br>
+ * <code>--language &lt;code&gt;</code> - The registered {@link LanguageProfile} to do the chi-squared test against (defaults to the one the ciphertext looks most like)<br>
+ * The matches are written as JSON lines, best first, and the number of keywords tried per second to standard error
+ */
+public class DictionaryAttack {
+	public static int defaultTop = 10;
+	public static int defaultPrefixLetters = 400;
+
+	/**
+	 * The number of bytes of the wordlist in each slice, before it's moved on to the next newline
+	 */
+	private static final int SLICE_BYTES = 1 << 22;
+	/**
+	 * The number of letters deciphered between each check of whether a word can still make the top matches
+	 */
+	private static final int CHECK_INTERVAL = 32;
+	/**
+	 * The letter index of each byte, or -1 if it isn't a letter
+	 */
+	private static final byte[] LETTERS = new byte[256];
+
+	static {
+		Arrays.fill(LETTERS, (byte)-1);
+		for(int l = 0; l < 26; l++) {
+			LETTERS['A' + l] = (byte)l;
+			LETTERS['a' + l] = (byte)l;
+		}
+	}
+
+	private final byte[] cipher; // The prefix that's scored
+	private final int top;
+	private final QuadgramScorer scorer;
+	private final float maxQuadgram; // The best score any quadgram has, for bounding the score of the rest of a word's plaintext
+	private final double[] inverseFrequencies;
+	private final double minInverseFrequency;
+
+	/**
+	 * @param letters - The ciphertext, as values from 0 to 25
+	 * @param prefixLetters - The number of letters from the start of the ciphertext to score each word on
+	 * @param top - The number of matches to keep
+	 * @param scorer - The scorer to score with, or null to use the chi-squared statistic
+	 * @param language - The language to do the chi-squared test against, if there's no scorer
+	 */
+	public DictionaryAttack(byte[] letters, int prefixLetters, int top, QuadgramScorer scorer, LanguageProfile language) {
+		if(top < 1 || prefixLetters < 1 || letters.length == 0) {
+			throw new IllegalArgumentException("The number of matches, the number of letters and the ciphertext must all be at least 1");
+		}
+		cipher = Arrays.copyOf(letters, Math.min(letters.length, prefixLetters));
+		this.top = top;
+		this.scorer = scorer;
+		float max = Float.NEGATIVE_INFINITY;
+		if(scorer != null) {
+			for(int q = 0; q < QuadgramScorer.QUADGRAMS; q++) {
+				max = Math.max(max, scorer.get(q));
+			}
+		}
+		maxQuadgram = max;
+		inverseFrequencies = new double[26];
+		double minInverse = Double.MAX_VALUE;
+		for(int l = 0; l < 26; l++) {
+			inverseFrequencies[l] = 1.0 / language.getUnigrams()[l];
+			minInverse = Math.min(minInverse, inverseFrequencies[l]);
+		}
+		minInverseFrequency = minInverse;
+	}
+
+	/**
+	 * A container for a keyword from the wordlist - <code>word</code>, <code>key</code>, <code>score</code> and <code>plaintext</code>.<br>
+	 * <code>word</code> is the line of the wordlist it came from, <code>key</code> is its letters in capitals, cut down to the shortest keyword it's a repeat of,
+	 * <code>score</code> is the score of the start of the plaintext (higher is better - the negative of the chi-squared statistic, or the sum of the quadgram log-probabilities),
+	 * and <code>plaintext</code> is the start of the plaintext that was scored
+	 */
+	public static class Match {
+		public String word;
+		public String key;
+		public double score;
+		public String plaintext;
+
+		public Match(String word, String key, double score, String plaintext) {
+			this.word = word;
+			this.key = key;
+			this.score = score;
+			this.plaintext = plaintext;
+		}
+
+		public String toJson() {
+			return "{\"key\":" + Utils.jsonString(key) + ",\"word\":" + Utils.jsonString(word) + ",\"score\":" + score + ",\"plaintext\":" + Utils.jsonString(plaintext) + "}";
+		}
+	}
+
+	/**
+	 * A container for the result of an attack - <code>matches</code>, <code>keys</code> and <code>nanos</code>.<br>
+	 * <code>matches</code> is the best keywords, best first, with no keyword twice, <code>keys</code> is the number of words that were tried (lines with no letters aren't counted),
+	 * and <code>nanos</code> is how long it took
+	 */
+	public static class Result {
+		public ArrayList<Match> matches;
+		public long keys;
+		public long nanos;
+
+		public Result(ArrayList<Match> matches, long keys, long nanos) {
+			this.matches = matches;
+			this.keys = keys;
+			this.nanos = nanos;
+		}
+
+		public double getKeysPerSecond() {
+			return nanos == 0 ? 0 : keys * 1e9 / nanos;
+		}
+	}
+
+	/**
+	 * Tries every word of a wordlist
+	 * @param wordlist - The wordlist, with one word or phrase per line
+	 * @param parallelism - The number of workers
+	 * @return The best matches, along with the number of words tried and how long it took
+	 * @throws IOException If the wordlist can't be read
+	 */
+	public Result attack(Path wordlist, int parallelism) throws IOException {
+		long start = System.nanoTime();
+		long metricsStart = Metrics.start();
+		try(FileChannel channel = FileChannel.open(wordlist, StandardOpenOption.READ)) {
+			long[] bounds = sliceBounds(channel);
+			int slices = bounds.length - 1;
+			AtomicInteger nextSlice = new AtomicInteger();
+			AtomicLong keys = new AtomicLong();
+			Threshold threshold = new Threshold();
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			ArrayList<Worker> workers = new ArrayList<Worker>();
+			try {
+				pool.submit(() -> IntStream.range(0, parallelism).parallel().forEach((w) -> {
+					Worker worker = new Worker(threshold);
+					synchronized(workers) {
+						workers.add(worker);
+					}
+					int slice;
+					while((slice = nextSlice.getAndIncrement()) < slices) {
+						try {
+							worker.search(channel.map(FileChannel.MapMode.READ_ONLY, bounds[slice], bounds[slice + 1] - bounds[slice]), bounds[slice]);
+						} catch(IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+					keys.addAndGet(worker.keys);
+				})).get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted", e);
+			} catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				throw cause instanceof RuntimeException && cause.getCause() instanceof IOException ? (IOException)cause.getCause() : new IOException(cause);
+			} finally {
+				pool.shutdown();
+			}
+
+			// The same keyword can come from more than one word, e.g. KEY and key, or ABAB and AB
+			LinkedHashMap<String, Match> unique = new LinkedHashMap<String, Match>();
+			for(Worker worker : workers) {
+				for(Match match : worker.best) {
+					Match old = unique.get(match.key);
+					if(old == null || match.word.compareTo(old.word) < 0) {
+						unique.put(match.key, match);
+					}
+				}
+			}
+			ArrayList<Match> ranked = new ArrayList<Match>(unique.values());
+			ranked.sort(Comparator.<Match>comparingDouble((m) -> -m.score).thenComparing((m) -> m.key));
+			ArrayList<Match> matches = new ArrayList<Match>(ranked.subList(0, Math.min(top, ranked.size())));
+			Metrics.end(Metrics.Stage.DICTIONARY, metricsStart, keys.get(), matches.size());
+			return new Result(matches, keys.get(), System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Splits a file into slices of about {@link #SLICE_BYTES} bytes, each starting at the beginning of a line
+	 * @return The offset of the start of each slice, then the size of the file
+	 */
+	private static long[] sliceBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		ArrayList<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long next = SLICE_BYTES;
+		while(next < size) {
+			// Move on to just after the next newline
+			long position = next;
+			long found = -1;
+			while(found < 0 && position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if(read <= 0) {
+					break;
+				}
+				for(int i = 0; i < read; i++) {
+					if(buffer.get(i) == '\n') {
+						found = position + i + 1;
+						break;
+					}
+				}
+				position += read;
+			}
+			if(found < 0 || found >= size) {
+				break;
+			}
+			bounds.add(found);
+			next = found + SLICE_BYTES;
+		}
+		bounds.add(size);
+		long[] array = new long[bounds.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = bounds.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * The worst score of the best <code>top</code> matches of any one worker - a word that can't beat it can't make the overall top <code>top</code> either
+	 */
+	private static class Threshold {
+		private volatile double value = Double.NEGATIVE_INFINITY;
+
+		double get() {
+			return value;
+		}
+
+		synchronized void raise(double score) {
+			if(score > value) {
+				value = score;
+			}
+		}
+	}
+
+	/**
+	 * The state of one worker - its best matches so far and a buffer for the keyword being tried
+	 */
+	private class Worker {
+		final Threshold threshold;
+		final PriorityQueue<Match> best = new PriorityQueue<Match>(Comparator.comparingDouble((Match m) -> m.score)); // Worst first
+		final long[] counts = new long[26];
+		byte[] key = new byte[64];
+		long keys;
+
+		Worker(Threshold threshold) {
+			this.threshold = threshold;
+		}
+
+		/**
+		 * Tries every line of a slice of the wordlist
+		 * @param slice - The slice
+		 * @param offset - The offset of the slice in the file
+		 */
+		void search(MappedByteBuffer slice, long offset) {
+			int limit = slice.limit();
+			int lineStart = 0;
+			int keyLength = 0;
+			for(int i = 0; i <= limit; i++) {
+				byte b = i < limit ? slice.get(i) : (byte)'\n';
+				if(b != '\n') {
+					byte letter = LETTERS[b & 0xFF];
+					if(letter >= 0) {
+						if(keyLength == key.length) {
+							key = Arrays.copyOf(key, keyLength * 2);
+						}
+						key[keyLength++] = letter;
+					}
+					continue;
+				}
+				if(keyLength > 0) {
+					keys++;
+					double score = scorer != null ? scoreQuadgrams(keyLength) : scoreChiSquared(keyLength);
+					if(score > threshold.get() && (best.size() < top || score > best.peek().score)) {
+						offer(slice, lineStart, i, keyLength, score);
+					}
+				}
+				lineStart = i + 1;
+				keyLength = 0;
+			}
+		}
+
+		/**
+		 * @return The negative of the chi-squared statistic of the plaintext, or negative infinity if the word was dropped early
+		 */
+		private double scoreChiSquared(int keyLength) {
+			int n = cipher.length;
+			Arrays.fill(counts, 0);
+			double sum = 0; // SUM(observed(l)^2 / expected(l)), with expected(l) = frequency(l) * n
+			int k = 0;
+			for(int i = 0; i < n; i++) {
+				int plain = cipher[i] - key[k];
+				if(plain < 0) {
+					plain += 26;
+				}
+				if(++k == keyLength) {
+					k = 0;
+				}
+				sum += (2 * counts[plain] + 1) * inverseFrequencies[plain];
+				counts[plain]++;
+				// Each letter still to come adds at least 1 / the highest frequency to the sum
+				if((i + 1) % CHECK_INTERVAL == 0 && n - (sum + (n - i - 1) * minInverseFrequency) / n < threshold.get()) {
+					return Double.NEGATIVE_INFINITY;
+				}
+			}
+			return n - sum / n;
+		}
+
+		/**
+		 * @return The sum of the quadgram log-probabilities of the plaintext, or negative infinity if the word was dropped early
+		 */
+		private double scoreQuadgrams(int keyLength) {
+			int n = cipher.length;
+			double score = 0;
+			int quadgram = 0;
+			int k = 0;
+			for(int i = 0; i < n; i++) {
+				int plain = cipher[i] - key[k];
+				if(plain < 0) {
+					plain += 26;
+				}
+				if(++k == keyLength) {
+					k = 0;
+				}
+				quadgram = quadgram % (26 * 26 * 26) * 26 + plain;
+				if(i >= 3) {
+					score += scorer.get(quadgram);
+				}
+				// No quadgram still to come can score better than the best one
+				if((i + 1) % CHECK_INTERVAL == 0 && score + (n - i - 1) * maxQuadgram < threshold.get()) {
+					return Double.NEGATIVE_INFINITY;
+				}
+			}
+			return score;
+		}
+
+		private void offer(MappedByteBuffer slice, int from, int to, int keyLength, double score) {
+			String primitive = HillClimbSolver.primitiveKey(Arrays.copyOf(key, keyLength));
+			byte[] line = new byte[to - from];
+			for(int i = 0; i < line.length; i++) {
+				line[i] = slice.get(from + i);
+			}
+			String word = new String(line, StandardCharsets.UTF_8).trim();
+			// The same keyword can come from more than one word, so keep whichever word comes first, the same as when the workers' matches are put together
+			for(Match match : best) {
+				if(match.key.equals(primitive)) {
+					if(word.compareTo(match.word) < 0) {
+						match.word = word;
+					}
+					return;
+				}
+			}
+			best.add(new Match(word, primitive, score, new String(new Decryptor(CipherText.fromLetters(cipher)).decrypt(Arrays.copyOf(key, keyLength)))));
+			if(best.size() > top) {
+				best.poll();
+			}
+			if(best.size() == top) {
+				threshold.raise(best.peek().score);
+			}
+		}
+	}
+
+	/**
+	 * Runs an attack from the command line
+	 * @param args - The options, then the wordlist and the ciphertext file
+	 * @return The exit code - 0 if it ran, 1 if a file couldn't be read, or 2 if the arguments were wrong
+	 */
+	public static int run(String[] args) {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		int top = defaultTop;
+		int prefixLetters = defaultPrefixLetters;
+		Path quadgrams = null;
+		String languageCode = null;
+		ArrayList<Path> inputs = new ArrayList<Path>();
+		try {
+			for(int i = 0; i < args.length; i++) {
+				switch(args[i]) {
+					case "-j":
+					case "--parallelism":
+						parallelism = Integer.parseInt(args[++i]);
+						break;
+					case "--top":
+						top = Integer.parseInt(args[++i]);
+						break;
+					case "--prefix":
+						prefixLetters = Integer.parseInt(args[++i]);
+						break;
+					case "--quadgrams":
+						quadgrams = Paths.get(args[++i]);
+						break;
+					case "--language":
+						languageCode = args[++i];
+						if(LanguageProfile.get(languageCode) == null) {
+							throw new IllegalArgumentException("Unknown language: " + languageCode);
+						}
+						break;
+					default:
+						inputs.add(Paths.get(args[i]));
+				}
+			}
+			if(inputs.size() != 2 || parallelism < 1 || top < 1 || prefixLetters < 1) {
+				throw new IllegalArgumentException("Expected a wordlist and a ciphertext file, or an option is out of range");
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("Usage: java main/Main --dictionary [-j <n>] [--top <n>] [--prefix <n>] [--quadgrams <file>] [--language <code>] <wordlist> <ciphertext file>");
+			if(e.getMessage() != null) {
+				System.err.println(e.getMessage());
+			}
+			return 2;
+		}
+
+		try {
+			byte[] letters = CipherText.parse(new String(Files.readAllBytes(inputs.get(1)), StandardCharsets.UTF_8)).getLetters();
+			if(letters.length == 0) {
+				System.err.println(inputs.get(1) + " has no letters");
+				return 1;
+			}
+			QuadgramScorer scorer = quadgrams == null ? null : QuadgramScorer.load(quadgrams);
+			LanguageProfile language = languageCode != null ? LanguageProfile.get(languageCode) : identify(letters);
+			Result result = new DictionaryAttack(letters, prefixLetters, top, scorer, language).attack(inputs.get(0), parallelism);
+			// Not System.out, which is a PrintStream and so hides any failure to write
+			Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8));
+			for(Match match : result.matches) {
+				out.write(match.toJson());
+				out.write('\n');
+			}
+			out.flush();
+			System.err.printf("Tried %d keys in %.2f s (%.0f keys/s)%n", result.keys, result.nanos / 1e9, result.getKeysPerSecond());
+			return 0;
+		} catch(IOException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+	}
+
+	/**
+	 * Picks the language of a ciphertext at its most likely keyword length
+	 */
+	private static LanguageProfile identify(byte[] letters) {
+		ColumnHistograms hists = ColumnHistograms.compute(letters, Math.max(1, Math.min(AnalysisUtils.defaultMaxKeyLength, letters.length / 2)));
+		int keyLength = Math.max(1, AnalysisUtils.likelyKeyLength(AnalysisUtils.KappaTest2(hists), hists));
+		return LanguageProfile.identifyBest(hists.getCounts(keyLength), keyLength);
+	}
+}
@@ -0,0 +1,298 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * Recovers the whole keyword (and so the plaintext) by hill-climbing - changing one letter of the keyword at a time, and keeping the change if the plaintext scores better with a {@link QuadgramScorer}.<br>
+ * <br>
+ * This works on texts too short for the chi-squared test to get every column right, because a letter of the keyword is judged by how well its column fits in with the columns either side, not just by its own letter frequencies.
+ * Each candidate keyword length gets many restarts, one from the chi-squared keyword and the rest from random keywords, and the restarts all run in parallel, each with its own buffers.<br>
+ * <br>
+ * Changing one letter of the keyword only changes every k-th letter of the plaintext, so only those letters are decrypted again, and only the quadgrams that include them are scored again -
+ * the score of every quadgram is kept, so the change in the total is the sum of the changes in those. Nothing is allocated while climbing
+ */
+public class HillClimbSolver {
+	/**
+	 * The number of restarts for each keyword length if it isn't given
+	 */
+	public static int defaultRestarts = 32;
+	/**
+	 * The number of keyword lengths to try if they aren't given
+	 */
+	public static int defaultKeyLengths = 3;
+	/**
+	 * The number of letters, from the start of the text, that are solved if it isn't given. Any more than this make climbing slower without making it any more likely to find the keyword
+	 */
+	public static int defaultMaxLetters = 1 << 14;
+
+	private HillClimbSolver() {
+		throw new AssertionError("This class should not be instantiable");
+	}
+
+	/**
+	 * A container for a keyword found by the solver - <code>key</code>, <code>score</code> and <code>plaintext</code>.<br>
+	 * <code>key</code> is the keyword, in upper case. If the climb found a keyword that's the same few letters repeated, it's cut down to those letters.<br>
+	 * <code>score</code> is the quadgram score of the plaintext - higher is better.<br>
+	 * <code>plaintext</code> is the letters of the text decrypted with <code>key</code>, in upper case
+	 */
+	public static class Solution {
+		public String key;
+		public double score;
+		public String plaintext;
+
+		public Solution(String key, double score, String plaintext) {
+			this.key = key;
+			this.score = score;
+			this.plaintext = plaintext;
+		}
+	}
+
+	/**
+	 * Solves a text with the default settings, trying {@link #defaultKeyLengths} keyword lengths picked from the improved Kappa test
+	 * @param letters - The ciphertext, as values from 0 to 25
+	 * @param scorer - The scorer for the language of the plaintext
+	 * @return The keywords found, best first, with no keyword twice
+	 * @see #solve(byte[], int[], int, QuadgramScorer, long)
+	 */
+	public static ArrayList<Solution> solve(byte[] letters, QuadgramScorer scorer) {
+		byte[] text = letters.length > defaultMaxLetters ? Arrays.copyOf(letters, defaultMaxLetters) : letters;
+		ColumnHistograms hists = ColumnHistograms.compute(text, Math.min(AnalysisUtils.defaultMaxKeyLength, Math.max(1, text.length / AnalysisUtils.defaultMinColumnLetters)));
+		ArrayList<IOCForKeyLen> iocs = AnalysisUtils.KappaTest2(hists);
+		int likely = Math.max(1, AnalysisUtils.likelyKeyLength(iocs));
+		LanguageProfile language = LanguageProfile.identifyBest(hists.getCounts(likely), likely);
+		return solve(text, candidateKeyLengths(iocs, defaultKeyLengths, language), defaultRestarts, scorer, 0);
+	}
+
+	/**
+	 * Picks the keyword lengths to try from the results of the improved Kappa test. The first is the one from {@link AnalysisUtils#likelyKeyLength(ArrayList)},
+	 * then the rest are picked from the highest average IOC down, skipping any that are a multiple of one that's already been picked,
+	 * since a multiple of the right length also has a high IOC, and the solver would just find the same keyword repeated
+	 * @param iocs - The results of the improved Kappa test
+	 * @param count - The most keyword lengths to pick
+	 * @return The keyword lengths, most likely first
+	 * @see AnalysisUtils#KappaTest2(ColumnHistograms)
+	 */
+	public static int[] candidateKeyLengths(ArrayList<IOCForKeyLen> iocs, int count) {
+		ArrayList<IOCForKeyLen> sorted = new ArrayList<IOCForKeyLen>(iocs);
+		sorted.sort((a, b) -> Float.compare(b.ioc, a.ioc));
+		return candidateKeyLengths(sorted, count, AnalysisUtils.likelyKeyLength(iocs));
+	}
+
+	/**
+	 * Picks the keyword lengths to try from the results of the improved Kappa test, for a plaintext in a known language.
+	 * The first is the one from {@link AnalysisUtils#likelyKeyLength(ArrayList, LanguageProfile)}, then the rest are picked from the average IOC closest to the language's kappa out,
+	 * skipping multiples the same way as {@link #candidateKeyLengths(ArrayList, int)}
+	 * @param iocs - The results of the improved Kappa test
+	 * @param count - The most keyword lengths to pick
+	 * @param language - The language of the plaintext
+	 * @return The keyword lengths, most likely first
+	 */
+	public static int[] candidateKeyLengths(ArrayList<IOCForKeyLen> iocs, int count, LanguageProfile language) {
+		float kappa = language.getKappa();
+		ArrayList<IOCForKeyLen> sorted = new ArrayList<IOCForKeyLen>(iocs);
+		sorted.sort((a, b) -> Float.compare(Math.abs(a.ioc - kappa), Math.abs(b.ioc - kappa)));
+		return candidateKeyLengths(sorted, count, AnalysisUtils.likelyKeyLength(iocs, language));
+	}
+
+	private static int[] candidateKeyLengths(ArrayList<IOCForKeyLen> sorted, int count, int likely) {
+		int[] lengths = new int[count];
+		int n = 0;
+		if(likely > 0 && count > 0) {
+			lengths[n++] = likely;
+		}
+		for(IOCForKeyLen ioc : sorted) {
+			if(n == count) {
+				break;
+			}
+			boolean multiple = false;
+			for(int i = 0; i < n && !multiple; i++) {
+				multiple = ioc.keylength % lengths[i] == 0;
+			}
+			if(!multiple && ioc.ioc > 0) {
+				lengths[n++] = ioc.keylength;
+			}
+		}
+		return Arrays.copyOf(lengths, n);
+	}
+
+	/**
+	 * Hill-climbs from <code>restarts</code> starting keywords for each keyword length, all in parallel, and ranks the keywords they end up at
+	 * @param letters - The ciphertext, as values from 0 to 25
+	 * @param keyLengths - The keyword lengths to try
+	 * @param restarts - The number of starting keywords for each keyword length. The first is always the chi-squared keyword, and the rest are random
+	 * @param scorer - The scorer for the language of the plaintext
+	 * @param seed - The seed for the random starting keywords. The same seed always gives the same results, however many cores there are
+	 * @return The keywords found, best first, with no keyword twice
+	 */
+	public static ArrayList<Solution> solve(byte[] letters, int[] keyLengths, int restarts, QuadgramScorer scorer, long seed) {
+		long start = Metrics.start();
+		Solution[] found = IntStream.range(0, keyLengths.length * restarts).parallel().mapToObj((task) -> {
+			int keyLength = keyLengths[task / restarts];
+			int restart = task % restarts;
+			Climber climber = new Climber(letters, keyLength, scorer);
+			if(restart == 0) {
+				long[] counts = ColumnHistograms.countColumns(letters, keyLength);
+				ArrayList<ShiftsForColumn> shifts = AnalysisUtils.ChiSquaredTest(counts, keyLength, LanguageProfile.identifyBest(counts, keyLength));
+				for(int c = 0; c < keyLength; c++) {
+					climber.key[c] = (byte)shifts.get(c).shifts[0];
+				}
+			} else {
+				Random random = new Random(seed * 0x9E3779B97F4A7C15L + task);
+				for(int c = 0; c < keyLength; c++) {
+					climber.key[c] = (byte)random.nextInt(26);
+				}
+			}
+			double score = climber.climb();
+			return new Solution(primitiveKey(climber.key), score, null);
+		}).toArray(Solution[]::new);
+
+		// Restarts often end up at the same keyword, so only the best of each is kept
+		LinkedHashMap<String, Solution> unique = new LinkedHashMap<String, Solution>();
+		for(Solution solution : found) {
+			Solution old = unique.get(solution.key);
+			if(old == null || solution.score > old.score) {
+				unique.put(solution.key, solution);
+			}
+		}
+		ArrayList<Solution> ranked = new ArrayList<Solution>(unique.values());
+		ranked.sort(Comparator.<Solution>comparingDouble((s) -> -s.score).thenComparing((s) -> s.key));
+		Decryptor decryptor = new Decryptor(CipherText.fromLetters(letters));
+		for(Solution solution : ranked) {
+			solution.plaintext = new String(decryptor.decrypt(Utils.toLetterIndices(solution.key)));
+		}
+		Metrics.end(Metrics.Stage.SOLVE, start, letters.length, ranked.size());
+		return ranked;
+	}
+
+	/**
+	 * Decrypts a text with a keyword
+	 * @param letters - The ciphertext, as values from 0 to 25
+	 * @param key - The keyword, as values from 0 to 25
+	 * @return The plaintext, in upper case
+	 */
+	public static String decrypt(byte[] letters, byte[] key) {
+		return new String(new Decryptor(CipherText.fromLetters(letters)).decrypt(key));
+	}
+
+	/**
+	 * Cuts a keyword down to the shortest keyword it's a repeat of, so e.g. LEMONLEMON is LEMON
+	 */
+	static String primitiveKey(byte[] key) {
+		int period = 1;
+		for(; period < key.length; period++) {
+			if(key.length % period != 0) {
+				continue;
+			}
+			boolean repeats = true;
+			for(int i = period; i < key.length && repeats; i++) {
+				repeats = key[i] == key[i - period];
+			}
+			if(repeats) {
+				break;
+			}
+		}
+		char[] chars = new char[period];
+		for(int i = 0; i < period; i++) {
+			chars[i] = AnalysisUtils.alphabetUpper[key[i]];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * The state of one restart - the keyword, the plaintext it gives, and the score of every quadgram of the plaintext
+	 */
+	private static class Climber {
+		private final byte[] cipher;
+		private final int keyLength;
+		private final QuadgramScorer scorer;
+		final byte[] key;
+		private final byte[] plain;
+		private final float[] quadgramScores; // [i] = the score of the quadgram starting at letter i of the plaintext
+		private double score;
+
+		Climber(byte[] cipher, int keyLength, QuadgramScorer scorer) {
+			this.cipher = cipher;
+			this.keyLength = keyLength;
+			this.scorer = scorer;
+			key = new byte[keyLength];
+			plain = new byte[cipher.length];
+			quadgramScores = new float[Math.max(0, cipher.length - 3)];
+		}
+
+		/**
+		 * Climbs from the keyword in <code>key</code> until no change to a single letter of it makes the plaintext score any better
+		 * @return The score of the plaintext from the final keyword
+		 */
+		double climb() {
+			for(int i = 0; i < cipher.length; i++) {
+				plain[i] = shift(cipher[i], key[i % keyLength]);
+			}
+			score = 0;
+			for(int i = 0; i < quadgramScores.length; i++) {
+				quadgramScores[i] = scorer.get(QuadgramScorer.index(plain, i));
+				score += quadgramScores[i];
+			}
+			boolean improved = true;
+			while(improved) {
+				improved = false;
+				for(int c = 0; c < keyLength; c++) {
+					int original = key[c];
+					int best = original;
+					double bestScore = score;
+					for(int letter = 0; letter < 26; letter++) {
+						if(letter != original && setKeyLetter(c, letter) > bestScore) {
+							best = letter;
+							bestScore = score;
+						}
+					}
+					setKeyLetter(c, best);
+					improved |= best != original;
+				}
+			}
+			return score;
+		}
+
+		/**
+		 * Changes one letter of the keyword, and decrypts and scores again just the parts of the plaintext that changes
+		 * @param column - The index of the letter in the keyword
+		 * @param letter - The new letter, from 0 to 25
+		 * @return The new score of the plaintext
+		 */
+		private double setKeyLetter(int column, int letter) {
+			if(key[column] == letter) {
+				return score;
+			}
+			key[column] = (byte)letter;
+			for(int i = column; i < cipher.length; i += keyLength) {
+				plain[i] = shift(cipher[i], letter);
+			}
+			// Every quadgram that includes a changed letter, each once - with keywords shorter than 4 letters, one quadgram can include two of them
+			int lastScored = -1;
+			double delta = 0;
+			for(int i = column; i < cipher.length; i += keyLength) {
+				int last = Math.min(i, quadgramScores.length - 1);
+				for(int start = Math.max(lastScored + 1, i - 3); start <= last; start++) {
+					float quadgramScore = scorer.get(QuadgramScorer.index(plain, start));
+					delta += quadgramScore - quadgramScores[start];
+					quadgramScores[start] = quadgramScore;
+				}
+				lastScored = Math.max(lastScored, last);
+			}
+			score += delta;
+			return score;
+		}
+
+		private static byte shift(int cipherLetter, int keyLetter) {
+			int plainLetter = cipherLetter - keyLetter;
+			return (byte)(plainLetter < 0 ? plainLetter + 26 : plainLetter);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * A set of <code>int</code>s that stores them in a plain int array (open addressing with linear probing) rather than boxing each one into an <code>Integer</code> like <code>HashSet&lt;Integer&gt;</code> does
+ */
+public class IntHashSet {
+	private static final int EMPTY = 0; // 0 is stored separately, so it can mark empty slots
+
+	private int[] table;
+	private int size;
+	private boolean containsZero;
+
+	public IntHashSet() {
+		this(16);
+	}
+
+	public IntHashSet(int expectedSize) {
+		int capacity = 16;
+		while(capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		table = new int[capacity];
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @param value - The value to add
+	 * @return true if the value wasn't already in the set
+	 */
+	public boolean add(int value) {
+		if(value == EMPTY) {
+			if(containsZero) {
+				return false;
+			}
+			containsZero = true;
+			size++;
+			return true;
+		}
+		int mask = table.length - 1;
+		int i = mix(value) & mask;
+		while(table[i] != EMPTY) {
+			if(table[i] == value) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		table[i] = value;
+		size++;
+		if(size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+		return true;
+	}
+
+	public boolean contains(int value) {
+		if(value == EMPTY) {
+			return containsZero;
+		}
+		int mask = table.length - 1;
+		int i = mix(value) & mask;
+		while(table[i] != EMPTY) {
+			if(table[i] == value) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(table, EMPTY);
+		containsZero = false;
+		size = 0;
+	}
+
+	/**
+	 * @return All the values in the set, in no particular order
+	 */
+	public int[] toArray() {
+		int[] arr = new int[size];
+		int j = 0;
+		if(containsZero) {
+			arr[j++] = 0;
+		}
+		for(int i = 0; i < table.length; i++) {
+			if(table[i] != EMPTY) {
+				arr[j++] = table[i];
+			}
+		}
+		return arr;
+	}
+
+	/**
+	 * @return All the values in the set, in ascending order
+	 */
+	public int[] toSortedArray() {
+		int[] arr = toArray();
+		Arrays.sort(arr);
+		return arr;
+	}
+
+	private void rehash(int capacity) {
+		int[] old = table;
+		table = new int[capacity];
+		int mask = capacity - 1;
+		for(int i = 0; i < old.length; i++) {
+			if(old[i] != EMPTY) {
+				int j = mix(old[i]) & mask;
+				while(table[j] != EMPTY) {
+					j = (j + 1) & mask;
+				}
+				table[j] = old[i];
+			}
+		}
+	}
+
+	private static int mix(int x) {
+		int h = x * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,381 @@
+package main;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import main.AnalysisUtils.RepeatedSequence;
+
+/**
+ * The results of a Kasiski examination, stored in a handful of primitive arrays rather than as one object per repeated sequence.<br>
+ * <br>
+ * Each repeated sequence (a "row") is stored as an offset and length into the examined text, which is shared rather than copied.
+ * The spacings of all the rows are stored one after another in a single int array, sorted and without duplicates within each row, with <code>spacingsIndex[row]</code> being where the row's spacings start.
+ * Nothing is boxed - use {@link #toRepeatedSequences()} to get the results in the old form
+ * @see <a href="https://en.wikipedia.org/wiki/Kasiski_examination">https://en.wikipedia.org/wiki/Kasiski_examination</a>
+ */
+public class KasiskiResult {
+	private final CharSequence text;
+	private final int size;
+	private final int[] starts;
+	private final int[] lengths;
+	private final int[] spacingsIndex; // size + 1 long, the last element is the total number of spacings
+	private final int[] spacings;
+
+	private KasiskiResult(CharSequence text, int size, int[] starts, int[] lengths, int[] spacingsIndex, int[] spacings) {
+		this.text = text;
+		this.size = size;
+		this.starts = starts;
+		this.lengths = lengths;
+		this.spacingsIndex = spacingsIndex;
+		this.spacings = spacings;
+	}
+
+	/**
+	 * @return The number of repeated sequences
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The text that was examined
+	 */
+	public CharSequence getText() {
+		return text;
+	}
+
+	/**
+	 * @param row - The index of the repeated sequence
+	 * @return The index in the text of the first occurrence of the sequence
+	 */
+	public int getStart(int row) {
+		return starts[row];
+	}
+
+	public int getLength(int row) {
+		return lengths[row];
+	}
+
+	/**
+	 * Copies the repeated sequence out of the text
+	 * @param row - The index of the repeated sequence
+	 * @return The sequence of characters that was repeated
+	 */
+	public String getSequence(int row) {
+		return text.subSequence(starts[row], starts[row] + lengths[row]).toString();
+	}
+
+	public int getSpacingCount(int row) {
+		return spacingsIndex[row + 1] - spacingsIndex[row];
+	}
+
+	/**
+	 * @param row - The index of the repeated sequence
+	 * @param index - The index of the spacing within the row. Spacings are in ascending order
+	 * @return The spacing
+	 */
+	public int getSpacing(int row, int index) {
+		return spacings[spacingsIndex[row] + index];
+	}
+
+	/**
+	 * @param row - The index of the repeated sequence
+	 * @return A copy of the row's spacings, in ascending order
+	 */
+	public int[] getSpacings(int row) {
+		return Arrays.copyOfRange(spacings, spacingsIndex[row], spacingsIndex[row + 1]);
+	}
+
+	/**
+	 * @return The largest spacing in the row
+	 */
+	public int getMaxSpacing(int row) {
+		return spacings[spacingsIndex[row + 1] - 1];
+	}
+
+	/**
+	 * Checks whether two occurrences of the sequence are <code>spacing</code> characters apart, using a binary search
+	 * @param row - The index of the repeated sequence
+	 * @param spacing - The spacing to look for
+	 * @return Whether the row has the spacing
+	 */
+	public boolean hasSpacing(int row, int spacing) {
+		return Arrays.binarySearch(spacings, spacingsIndex[row], spacingsIndex[row + 1], spacing) >= 0;
+	}
+
+	/**
+	 * Makes a (packed) RepeatedSequence out of one row. The spacings are boxed, so only use this when you need the old form
+	 * @param row - The index of the repeated sequence
+	 * @return The RepeatedSequence
+	 */
+	public RepeatedSequence toRepeatedSequence(int row) {
+		Integer[] boxed = new Integer[getSpacingCount(row)];
+		for(int i = 0; i < boxed.length; i++) {
+			boxed[i] = spacings[spacingsIndex[row] + i];
+		}
+		return new RepeatedSequence(getSequence(row), boxed);
+	}
+
+	/**
+	 * @return An ArrayList of (packed) RepeatedSequences, one for each row, in the same order
+	 * @see #toRepeatedSequence(int)
+	 */
+	public ArrayList<RepeatedSequence> toRepeatedSequences() {
+		ArrayList<RepeatedSequence> list = new ArrayList<RepeatedSequence>(size);
+		for(int i = 0; i < size; i++) {
+			list.add(toRepeatedSequence(i));
+		}
+		return list;
+	}
+
+	/**
+	 * @return The total number of spacings, over all the rows
+	 */
+	public int getTotalSpacings() {
+		return spacingsIndex[size];
+	}
+
+	/**
+	 * Writes the rows out compactly - the starts, lengths and spacings are all written as variable-length integers, and the starts (which are in ascending order) and each row's spacings as the difference from the one before.
+	 * The text isn't written, so it has to be given again to {@link #read(ByteBuffer, CharSequence)}
+	 * @param out - Where to write the rows
+	 * @throws IOException If the rows couldn't be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		Utils.writeVarInt(out, size);
+		int prevStart = 0;
+		for(int row = 0; row < size; row++) {
+			Utils.writeVarInt(out, starts[row] - prevStart);
+			Utils.writeVarInt(out, lengths[row]);
+			prevStart = starts[row];
+			int count = getSpacingCount(row);
+			Utils.writeVarInt(out, count);
+			int prevSpacing = 0;
+			for(int i = spacingsIndex[row]; i < spacingsIndex[row + 1]; i++) {
+				Utils.writeVarInt(out, spacings[i] - prevSpacing);
+				prevSpacing = spacings[i];
+			}
+		}
+	}
+
+	/**
+	 * Reads rows written by {@link #write(DataOutput)}
+	 * @param in - The buffer to read the rows from, starting at its position
+	 * @param text - The text that was examined
+	 * @return The KasiskiResult
+	 * @throws IOException If the rows are malformed
+	 */
+	public static KasiskiResult read(ByteBuffer in, CharSequence text) throws IOException {
+		int size = Utils.readVarInt(in);
+		int[] starts = new int[size];
+		int[] lengths = new int[size];
+		int[] spacingsIndex = new int[size + 1];
+		int[] spacings = new int[16];
+		int prevStart = 0;
+		for(int row = 0; row < size; row++) {
+			starts[row] = prevStart + Utils.readVarInt(in);
+			lengths[row] = Utils.readVarInt(in);
+			prevStart = starts[row];
+			int count = Utils.readVarInt(in);
+			int end = spacingsIndex[row] + count;
+			if(end > spacings.length) {
+				spacings = Arrays.copyOf(spacings, Math.max(spacings.length * 2, end));
+			}
+			int spacing = 0;
+			for(int i = spacingsIndex[row]; i < end; i++) {
+				spacing += Utils.readVarInt(in);
+				spacings[i] = spacing;
+			}
+			spacingsIndex[row + 1] = end;
+		}
+		return new KasiskiResult(text, size, starts, lengths, spacingsIndex, Arrays.copyOf(spacings, spacingsIndex[size]));
+	}
+
+	/**
+	 * Collects repeated sequences into a KasiskiResult. The rows are sorted by the index of their first occurrence, then by length, when {@link #build()} is called
+	 */
+	public static class Builder {
+		// Above this many pairs, spacings are collected in a hash set rather than sorted as a list
+		private static final int MAX_PAIRS_TO_SORT = 4096;
+
+		private final CharSequence text;
+		private int size;
+		private int[] starts = new int[16];
+		private int[] lengths = new int[16];
+		private int[] spacingsIndex = new int[17];
+		private int[] spacings = new int[64];
+		private int[] scratch = new int[64];
+
+		/**
+		 * @param text - The text being examined, which the rows will point into
+		 */
+		public Builder(CharSequence text) {
+			this.text = text;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param row - The index of a row, in the order the rows were added
+		 * @return The index in the text of the first occurrence of the sequence
+		 */
+		public int getStart(int row) {
+			return starts[row];
+		}
+
+		public int getLength(int row) {
+			return lengths[row];
+		}
+
+		/**
+		 * @param row - The index of a row, in the order the rows were added
+		 * @return The distinct spacings of the row, in ascending order
+		 */
+		public int[] getSpacings(int row) {
+			return Arrays.copyOfRange(spacings, spacingsIndex[row], spacingsIndex[row + 1]);
+		}
+
+		/**
+		 * Adds a repeated sequence, working out the spacings between every pair of occurrences
+		 * @param start - The index in the text of the first occurrence of the sequence
+		 * @param length - The length of the sequence
+		 * @param positions - The indexes of all the occurrences of the sequence. These must be in ascending order
+		 * @param count - The number of occurrences in <code>positions</code>
+		 */
+		public void addOccurrences(int start, int length, int[] positions, int count) {
+			long pairs = (long)count * (count - 1) / 2;
+			if(pairs <= MAX_PAIRS_TO_SORT) {
+				if(scratch.length < pairs) {
+					scratch = new int[(int)pairs];
+				}
+				int n = 0;
+				for(int j = 0; j < count; j++) { // Calculate the spacing between every possible pairing
+					for(int k = j + 1; k < count; k++) {
+						scratch[n++] = positions[k] - positions[j];
+					}
+				}
+				Arrays.sort(scratch, 0, n);
+				addSortedSpacings(start, length, scratch, n);
+			} else {
+				IntHashSet set = new IntHashSet(count);
+				for(int j = 0; j < count; j++) {
+					for(int k = j + 1; k < count; k++) {
+						set.add(positions[k] - positions[j]);
+					}
+				}
+				int[] sorted = set.toSortedArray();
+				addSortedSpacings(start, length, sorted, sorted.length);
+			}
+		}
+
+		/**
+		 * Adds a repeated sequence with only the spacings between each occurrence and the next, rather than between every pair,
+		 * so a sequence that occurs n times adds at most n - 1 spacings. Every pairwise spacing is a sum of these, so they're still enough to find the keyword length from
+		 * @param start - The index in the text of the first occurrence of the sequence
+		 * @param length - The length of the sequence
+		 * @param positions - The indexes of all the occurrences of the sequence. These must be in ascending order
+		 * @param count - The number of occurrences in <code>positions</code>
+		 */
+		public void addNeighbourSpacings(int start, int length, int[] positions, int count) {
+			if(scratch.length < count) {
+				scratch = new int[count];
+			}
+			for(int j = 1; j < count; j++) {
+				scratch[j - 1] = positions[j] - positions[j - 1];
+			}
+			Arrays.sort(scratch, 0, Math.max(0, count - 1));
+			addSortedSpacings(start, length, scratch, Math.max(0, count - 1));
+		}
+
+		/**
+		 * Adds a repeated sequence with an already-known set of spacings
+		 * @param start - The index in the text of the first occurrence of the sequence
+		 * @param length - The length of the sequence
+		 * @param spacingSet - The spacings between the occurrences
+		 */
+		public void addSpacings(int start, int length, IntHashSet spacingSet) {
+			int[] sorted = spacingSet.toSortedArray();
+			addSortedSpacings(start, length, sorted, sorted.length);
+		}
+
+		/**
+		 * Adds all the rows of another Builder onto the end of this one
+		 */
+		public void addAll(Builder other) {
+			for(int i = 0; i < other.size; i++) {
+				int from = other.spacingsIndex[i];
+				appendRow(other.starts[i], other.lengths[i], other.spacings, from, other.spacingsIndex[i + 1] - from);
+			}
+		}
+
+		// Removes duplicate spacings as it copies them in
+		private void addSortedSpacings(int start, int length, int[] sorted, int count) {
+			int n = 0;
+			for(int i = 0; i < count; i++) {
+				if(n == 0 || sorted[i] != sorted[n - 1]) {
+					sorted[n++] = sorted[i];
+				}
+			}
+			appendRow(start, length, sorted, 0, n);
+		}
+
+		private void appendRow(int start, int length, int[] src, int from, int count) {
+			if(size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+				spacingsIndex = Arrays.copyOf(spacingsIndex, size * 2 + 1);
+			}
+			int end = spacingsIndex[size];
+			if(end + count > spacings.length) {
+				spacings = Arrays.copyOf(spacings, Math.max(spacings.length * 2, end + count));
+			}
+			System.arraycopy(src, from, spacings, end, count);
+			starts[size] = start;
+			lengths[size] = length;
+			spacingsIndex[size + 1] = end + count;
+			size++;
+		}
+
+		public KasiskiResult build() {
+			long start = Metrics.start();
+			KasiskiResult result = sortAndPack();
+			Metrics.end(Metrics.Stage.KASISKI_PACK, start, size, spacingsIndex[size]);
+			return result;
+		}
+
+		private KasiskiResult sortAndPack() {
+			long[] keys = new long[size];
+			boolean sorted = true;
+			for(int i = 0; i < size; i++) {
+				keys[i] = ((long)starts[i] << 32) | lengths[i];
+				if(i > 0 && keys[i] < keys[i - 1]) {
+					sorted = false;
+				}
+			}
+			if(sorted) {
+				return new KasiskiResult(text, size, Arrays.copyOf(starts, size), Arrays.copyOf(lengths, size), Arrays.copyOf(spacingsIndex, size + 1), Arrays.copyOf(spacings, spacingsIndex[size]));
+			}
+
+			int[] order = Utils.sortIndices(keys);
+			int[] newStarts = new int[size];
+			int[] newLengths = new int[size];
+			int[] newIndex = new int[size + 1];
+			int[] newSpacings = new int[spacingsIndex[size]];
+			for(int i = 0; i < size; i++) {
+				int row = order[i];
+				int from = spacingsIndex[row];
+				int count = spacingsIndex[row + 1] - from;
+				newStarts[i] = starts[row];
+				newLengths[i] = lengths[row];
+				System.arraycopy(spacings, from, newSpacings, newIndex[i], count);
+				newIndex[i + 1] = newIndex[i] + count;
+			}
+			return new KasiskiResult(text, size, newStarts, newLengths, newIndex, newSpacings);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package main;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A table model for the results of a Kasiski examination, with a row for each repeated sequence and a column for each spacing, which has an "X" if the sequence repeats at that spacing.<br>
+ * <br>
+ * Nothing is stored per cell. Each row is an offset and length into the examined text plus a bitset of its spacings (only the ones small enough to have a column), all kept in flat primitive arrays,
+ * and the cell values are worked out in {@link #getValueAt(int, int)}. So a TableRowSorter can sort and filter the rows without anything being copied.<br>
+ * <br>
+ * There's always a column for each spacing up to {@link #minSpacingColumns}, and more columns are added as longer spacings are found, up to <code>maxSpacing</code>
+ */
+public class KasiskiTableModel extends AbstractTableModel {
+	private static final long serialVersionUID = -3170593618414960126L;
+
+	/**
+	 * The largest spacing that always has a column, even if no sequence repeats at that spacing
+	 */
+	public static int minSpacingColumns = 36;
+
+	private final CharSequence text;
+	private final int maxSpacing;
+	private final int wordsPerRow;
+	private int size;
+	private int[] starts = new int[16];
+	private int[] lengths = new int[16];
+	private long[] spacingBits; // wordsPerRow longs for each row, bit s is set if the row has spacing s
+	private int largestSpacing;
+
+	/**
+	 * @param text - The text that was examined, which the rows point into
+	 * @param maxSpacing - The largest spacing to have a column for
+	 */
+	public KasiskiTableModel(CharSequence text, int maxSpacing) {
+		this.text = text;
+		this.maxSpacing = maxSpacing;
+		wordsPerRow = (maxSpacing >> 6) + 1;
+		spacingBits = new long[16 * wordsPerRow];
+		largestSpacing = Math.min(minSpacingColumns, maxSpacing);
+	}
+
+	/**
+	 * A repeated sequence that has just been found
+	 */
+	public static class FoundSequence {
+		public int start;
+		public int length;
+		/**
+		 * The spacings between its occurrences, in any order. Ones too large to have a column are ignored
+		 */
+		public int[] spacings;
+
+		public FoundSequence(int start, int length, int[] spacings) {
+			this.start = start;
+			this.length = length;
+			this.spacings = spacings;
+		}
+	}
+
+	/**
+	 * Adds rows onto the end of the table, adding columns if any of them repeat at a longer spacing than there are columns for
+	 * @param sequences - The repeated sequences to add
+	 */
+	public void addRows(List<FoundSequence> sequences) {
+		if(sequences.isEmpty()) {
+			return;
+		}
+		long start = Metrics.start();
+		int columns = getColumnCount();
+		int first = size;
+		for(FoundSequence sequence : sequences) {
+			int row = newRow(sequence.start, sequence.length);
+			for(int spacing : sequence.spacings) {
+				setSpacing(row, spacing);
+			}
+		}
+		Metrics.end(Metrics.Stage.TABLE, start, sequences.size(), size);
+		if(getColumnCount() != columns) {
+			fireTableStructureChanged();
+		} else {
+			fireTableRowsInserted(first, size - 1);
+		}
+	}
+
+	/**
+	 * Replaces all the rows of the table with the rows of a KasiskiResult, in the same order
+	 * @param result - The result of the Kasiski examination. It must have been done on the same text as this model is for
+	 */
+	public void setResult(KasiskiResult result) {
+		long start = Metrics.start();
+		size = 0;
+		largestSpacing = Math.min(minSpacingColumns, maxSpacing);
+		for(int i = 0; i < result.size(); i++) {
+			int row = newRow(result.getStart(i), result.getLength(i));
+			int count = result.getSpacingCount(i);
+			for(int j = 0; j < count && result.getSpacing(i, j) <= maxSpacing; j++) { // Spacings are in ascending order
+				setSpacing(row, result.getSpacing(i, j));
+			}
+		}
+		Metrics.end(Metrics.Stage.TABLE, start, result.size(), size);
+		fireTableStructureChanged();
+	}
+
+	private int newRow(int start, int length) {
+		if(size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			spacingBits = Arrays.copyOf(spacingBits, size * 2 * wordsPerRow);
+		} else {
+			Arrays.fill(spacingBits, size * wordsPerRow, (size + 1) * wordsPerRow, 0);
+		}
+		starts[size] = start;
+		lengths[size] = length;
+		return size++;
+	}
+
+	private void setSpacing(int row, int spacing) {
+		if(spacing < 2 || spacing > maxSpacing) {
+			return;
+		}
+		spacingBits[row * wordsPerRow + (spacing >> 6)] |= 1L << spacing;
+		if(spacing > largestSpacing) {
+			largestSpacing = spacing;
+		}
+	}
+
+	/**
+	 * @param row - The index of the row in the model
+	 * @param spacing - The spacing
+	 * @return Whether the row's sequence repeats at that spacing. Always false for spacings too large to have a column
+	 */
+	public boolean hasSpacing(int row, int spacing) {
+		if(spacing < 0 || spacing > maxSpacing) {
+			return false;
+		}
+		return (spacingBits[row * wordsPerRow + (spacing >> 6)] & (1L << spacing)) != 0;
+	}
+
+	/**
+	 * @param row - The index of the row in the model
+	 * @return The repeated sequence
+	 */
+	public String getSequence(int row) {
+		return text.subSequence(starts[row], starts[row] + lengths[row]).toString();
+	}
+
+	/**
+	 * @param column - The index of a column, which must not be the sequence column
+	 * @return The spacing that the column is for
+	 */
+	public static int getSpacing(int column) {
+		return column + 1;
+	}
+
+	@Override
+	public int getRowCount() {
+		return size;
+	}
+
+	/**
+	 * @return One column for the sequence, then one for each spacing from 2 up to the largest one found (but at least up to {@link #minSpacingColumns})
+	 */
+	@Override
+	public int getColumnCount() {
+		return largestSpacing;
+	}
+
+	@Override
+	public String getColumnName(int col) {
+		return col == 0 ? "Sequence" : String.valueOf(getSpacing(col));
+	}
+
+	@Override
+	public Class<?> getColumnClass(int col) {
+		return String.class;
+	}
+
+	@Override
+	public Object getValueAt(int row, int col) {
+		if(col == 0) {
+			return getSequence(row);
+		}
+		return hasSpacing(row, getSpacing(col)) ? "X" : "";
+	}
+
+	@Override
+	public boolean isCellEditable(int row, int col) {
+		return false;
+	}
+}
@@ -0,0 +1,319 @@
+package main;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * The statistics of a plaintext language that the analyses compare a ciphertext against - the chance that two of its letters match (its kappa), the size of its alphabet,
+ * and the frequencies of its letters.<br>
+ * <br>
+ * Profiles are kept in a registry, which starts with English, French, German and Spanish (with accented letters folded into the plain ones, as the cipher only works on A to Z).
+ * More can be loaded from n-gram table files (see {@link NgramStatistics}) and registered.
+ * Every time the registry changes, the inverse letter frequencies of all its profiles are packed into one table, with the profiles side by side for each letter,
+ * so {@link #identify(long[], int)} can score a ciphertext's column counts against every language in the same pass over them
+ */
+public class LanguageProfile {
+	public static final LanguageProfile ENGLISH = new LanguageProfile("en", "English", AnalysisUtils.englishKappa, 26, AnalysisUtils.englishFrequencies);
+	/**
+	 * @see <a href="https://en.wikipedia.org/wiki/Letter_frequency">https://en.wikipedia.org/wiki/Letter_frequency</a>
+	 */
+	public static final LanguageProfile FRENCH = new LanguageProfile("fr", "French", 0.0778f, 26, new float[] {
+		0.08173f, 0.00901f, 0.03345f, 0.03669f, 0.16855f, 0.01066f, 0.00866f, 0.00737f, 0.07579f, 0.00613f, 0.00074f, 0.05456f, 0.02968f,
+		0.07095f, 0.05819f, 0.02521f, 0.01362f, 0.06693f, 0.07948f, 0.07244f, 0.06429f, 0.01838f, 0.00049f, 0.00427f, 0.00128f, 0.00326f
+	});
+	/**
+	 * @see <a href="https://en.wikipedia.org/wiki/Letter_frequency">https://en.wikipedia.org/wiki/Letter_frequency</a>
+	 */
+	public static final LanguageProfile GERMAN = new LanguageProfile("de", "German", 0.0762f, 26, new float[] {
+		0.07094f, 0.01886f, 0.02732f, 0.05076f, 0.16396f, 0.01656f, 0.03009f, 0.04577f, 0.06550f, 0.00268f, 0.01417f, 0.03437f, 0.02534f,
+		0.09776f, 0.03037f, 0.00670f, 0.00018f, 0.07003f, 0.07577f, 0.06154f, 0.05161f, 0.00846f, 0.01921f, 0.00034f, 0.00039f, 0.01134f
+	});
+	/**
+	 * @see <a href="https://en.wikipedia.org/wiki/Letter_frequency">https://en.wikipedia.org/wiki/Letter_frequency</a>
+	 */
+	public static final LanguageProfile SPANISH = new LanguageProfile("es", "Spanish", 0.0775f, 26, new float[] {
+		0.12027f, 0.02215f, 0.04019f, 0.05010f, 0.12614f, 0.00692f, 0.01768f, 0.00703f, 0.06972f, 0.00493f, 0.00011f, 0.04967f, 0.03157f,
+		0.07023f, 0.09510f, 0.02510f, 0.00877f, 0.06871f, 0.07977f, 0.04632f, 0.03107f, 0.01138f, 0.00017f, 0.00215f, 0.01008f, 0.00467f
+	});
+
+	/**
+	 * The smallest letter frequency used, so a letter a language never has can't make a score infinite
+	 */
+	private static final float MIN_FREQUENCY = 1e-5f;
+
+	private static final LinkedHashMap<String, LanguageProfile> registry = new LinkedHashMap<String, LanguageProfile>();
+	private static volatile PackedTable table;
+
+	static {
+		register(ENGLISH);
+		register(FRENCH);
+		register(GERMAN);
+		register(SPANISH);
+	}
+
+	private final String code;
+	private final String name;
+	private final float kappa;
+	private final int alphabetSize;
+	private final float[] unigrams;
+
+	/**
+	 * @param code - A short name to look the profile up by, e.g. <code>en</code>
+	 * @param name - The name of the language, e.g. <code>English</code>
+	 * @param kappa - The chance that two letters picked from a plaintext are the same
+	 * @param alphabetSize - The number of letters the cipher works on, so random letters match with a chance of 1 / <code>alphabetSize</code>
+	 * @param unigrams - The frequency of each letter, A to Z. They're scaled to add up to 1
+	 */
+	public LanguageProfile(String code, String name, float kappa, int alphabetSize, float[] unigrams) {
+		if(unigrams.length != 26) {
+			throw new IllegalArgumentException("Expected 26 letter frequencies");
+		}
+		this.code = code;
+		this.name = name;
+		this.kappa = kappa;
+		this.alphabetSize = alphabetSize;
+		this.unigrams = normalise(unigrams);
+	}
+
+	private static float[] normalise(float[] frequencies) {
+		double total = 0;
+		for(float f : frequencies) {
+			total += f;
+		}
+		float[] normalised = new float[frequencies.length];
+		for(int i = 0; i < frequencies.length; i++) {
+			normalised[i] = (float)(frequencies[i] / total);
+		}
+		return normalised;
+	}
+
+	/**
+	 * Loads a profile from a file of n-gram tables. The file must have a table for single letters, and any other tables in it are ignored.
+	 * The kappa is worked out from the letter frequencies, as the sum of their squares
+	 * @param code - A short name to look the profile up by
+	 * @param name - The name of the language
+	 * @param path - The file, written by {@link NgramStatistics#write(Path, long[][])}
+	 * @return The profile. It isn't registered
+	 * @throws IOException If the file can't be read, isn't a file of tables, or has no table for single letters
+	 */
+	public static LanguageProfile load(String code, String name, Path path) throws IOException {
+		NgramStatistics stats = NgramStatistics.map(path);
+		if(!stats.has(1)) {
+			throw new IOException(path + " has no table for single letters");
+		}
+		float[] unigrams = probabilities(stats.getTable(1));
+		double kappa = 0;
+		for(float p : unigrams) {
+			kappa += (double)p * p;
+		}
+		return new LanguageProfile(code, name, (float)kappa, 26, unigrams);
+	}
+
+	private static float[] probabilities(FloatBuffer logProbabilities) {
+		float[] probabilities = new float[logProbabilities.capacity()];
+		for(int i = 0; i < probabilities.length; i++) {
+			probabilities[i] = (float)Math.pow(10, logProbabilities.get(i));
+		}
+		return probabilities;
+	}
+
+	/**
+	 * Adds a profile to the registry, replacing any with the same code
+	 * @param profile - The profile
+	 */
+	public static void register(LanguageProfile profile) {
+		synchronized(registry) {
+			registry.put(profile.code, profile);
+			table = new PackedTable(registry.values().toArray(new LanguageProfile[0]));
+		}
+	}
+
+	/**
+	 * @param code - The code of the profile, e.g. <code>en</code>
+	 * @return The registered profile, or null if there isn't one
+	 */
+	public static LanguageProfile get(String code) {
+		synchronized(registry) {
+			return registry.get(code);
+		}
+	}
+
+	/**
+	 * @return A hash of every registered profile - its code, kappa, alphabet size and frequencies - that changes whenever a profile is registered that changes any of them.
+	 * Anything worked out against the registry (such as which language a text is in) can be keyed by this, so it isn't mistaken for the same thing worked out against a different registry
+	 */
+	public static long getRegistryFingerprint() {
+		return table.fingerprint;
+	}
+
+	/**
+	 * @return Every registered profile, in the order they were registered
+	 */
+	public static ArrayList<LanguageProfile> getAll() {
+		return new ArrayList<LanguageProfile>(Arrays.asList(table.profiles));
+	}
+
+	/**
+	 * A container for a LanguageProfile and a <code>double</code> - <code>profile</code> and <code>score</code> respectively.<br>
+	 * <code>score</code> is the chi-squared statistic of the ciphertext against the language, with each column at its best shift, summed over the columns - lower is more like the language
+	 */
+	public static class LanguageScore {
+		public LanguageProfile profile;
+		public double score;
+
+		public LanguageScore(LanguageProfile profile, double score) {
+			this.profile = profile;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Scores column counts against every registered language, for picking which language the plaintext is in. Each column is deciphered at its best shift for each language,
+	 * the same way as {@link AnalysisUtils#ChiSquaredTest(long[], int, float[])}, and the chi-squared statistics of the columns are added up.
+	 * The counts are only gone over once, whatever the number of languages
+	 * @param counts - The letter counts of each column, as returned by {@link ColumnHistograms#countColumns(byte[], int)}
+	 * @param keyLength - The keyword length
+	 * @return A LanguageScore for every registered language, best first
+	 */
+	public static ArrayList<LanguageScore> identify(long[] counts, int keyLength) {
+		PackedTable packed = table;
+		int p = packed.profiles.length;
+		double[] totals = new double[p];
+		double[] sums = new double[26 * p]; // [shift * p + profile]
+		for(int c = 0; c < keyLength; c++) {
+			int base = c * 26;
+			long n = 0;
+			for(int l = 0; l < 26; l++) {
+				n += counts[base + l];
+			}
+			if(n == 0) {
+				continue;
+			}
+			Arrays.fill(sums, 0);
+			for(int l = 0; l < 26; l++) {
+				double squared = (double)counts[base + l] * counts[base + l];
+				if(squared == 0) {
+					continue;
+				}
+				for(int shift = 0; shift < 26; shift++) {
+					// Ciphertext letter l is plaintext letter l - shift
+					int row = (l - shift + 26) % 26 * p;
+					int sum = shift * p;
+					for(int q = 0; q < p; q++) {
+						sums[sum + q] += squared * packed.inverseFrequencies[row + q];
+					}
+				}
+			}
+			for(int q = 0; q < p; q++) {
+				double best = Double.MAX_VALUE;
+				for(int shift = 0; shift < 26; shift++) {
+					best = Math.min(best, sums[shift * p + q]);
+				}
+				totals[q] += best / n - n;
+			}
+		}
+		ArrayList<LanguageScore> scores = new ArrayList<LanguageScore>(p);
+		for(int q = 0; q < p; q++) {
+			scores.add(new LanguageScore(packed.profiles[q], totals[q]));
+		}
+		scores.sort((a, b) -> Double.compare(a.score, b.score));
+		return scores;
+	}
+
+	/**
+	 * @param counts - The letter counts of each column, as returned by {@link ColumnHistograms#countColumns(byte[], int)}
+	 * @param keyLength - The keyword length
+	 * @return The registered language the counts look most like
+	 * @see #identify(long[], int)
+	 */
+	public static LanguageProfile identifyBest(long[] counts, int keyLength) {
+		return identify(counts, keyLength).get(0).profile;
+	}
+
+	/**
+	 * @return The short name the profile is looked up by, e.g. <code>en</code>
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * @return The name of the language, e.g. <code>English</code>
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The chance that two letters picked from a plaintext are the same
+	 */
+	public float getKappa() {
+		return kappa;
+	}
+
+	/**
+	 * @return The chance that two random letters are the same - 1 / the size of the alphabet
+	 */
+	public float getRandomKappa() {
+		return 1f / alphabetSize;
+	}
+
+	public int getAlphabetSize() {
+		return alphabetSize;
+	}
+
+	/**
+	 * @return The frequency of each letter, A to Z. Don't change it
+	 */
+	public float[] getUnigrams() {
+		return unigrams;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * The inverse letter frequencies of a set of profiles, at [letter * profiles + profile], and the fingerprint of the set
+	 */
+	private static class PackedTable {
+		final LanguageProfile[] profiles;
+		final double[] inverseFrequencies;
+		final long fingerprint;
+
+		PackedTable(LanguageProfile[] profiles) {
+			this.profiles = profiles;
+			inverseFrequencies = new double[26 * profiles.length];
+			for(int l = 0; l < 26; l++) {
+				for(int q = 0; q < profiles.length; q++) {
+					inverseFrequencies[l * profiles.length + q] = 1.0 / Math.max(MIN_FREQUENCY, profiles[q].unigrams[l]);
+				}
+			}
+			// 64-bit FNV-1a over everything the analyses use from each profile, in order
+			long hash = 0xcbf29ce484222325L;
+			for(LanguageProfile profile : profiles) {
+				for(int i = 0; i < profile.code.length(); i++) {
+					hash = fnv(hash, profile.code.charAt(i));
+				}
+				hash = fnv(hash, Float.floatToIntBits(profile.kappa));
+				hash = fnv(hash, profile.alphabetSize);
+				for(float f : profile.unigrams) {
+					hash = fnv(hash, Float.floatToIntBits(f));
+				}
+			}
+			fingerprint = hash;
+		}
+
+		private static long fnv(long hash, int value) {
+			for(int shift = 0; shift < 32; shift += 8) {
+				hash = (hash ^ ((value >>> shift) & 0xFF)) * 0x100000001b3L;
+			}
+			return hash;
+		}
+	}
+}
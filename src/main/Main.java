@@ -8,6 +8,18 @@ public class Main {
 	MainFrame frame;
 	
 	public static void main(String[] args) {
+		if(args.length > 0 && args[0].equals("--batch")) {
+			System.exit(BatchAnalysis.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		if(args.length > 0 && args[0].equals("--convert-ngrams")) {
+			System.exit(NgramStatistics.convert(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		if(args.length > 0 && args[0].equals("--dictionary")) {
+			System.exit(DictionaryAttack.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		if(args.length > 0 && args[0].equals("--serve")) {
+			System.exit(AnalysisServer.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
 		new Main().init();
 	}
 	
@@ -7,19 +7,26 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.HeadlessException;
 import java.awt.Insets;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.RowFilter;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableColumn;
-
-import main.AnalysisUtils.RepeatedSequence;
-import main.Utils.CharHolder;
+import javax.swing.table.TableRowSorter;
 
 public class MainFrame extends JFrame {
 	private static final long serialVersionUID = 2231850685721535100L;
@@ -27,11 +34,29 @@ public class MainFrame extends JFrame {
 	private JPanel mainContent;
 	
 	/**
-	 * This is used to store all the non-letter characters in the input ciphertext, to be reinserted in the output text.
-	 * <br>
-	 * To put the text back in the template, loop through the template and whenever you encounter the CharHolder instance not having a char, insert a character in there
+	 * The input ciphertext. As well as the letters, this stores all the non-letter characters and the case of each letter, to be reinserted in the output text
+	 */
+	private CipherText ciphertext;
+	
+	/**
+	 * The worker running the analyses of the current ciphertext, if there is one
+	 */
+	private AnalysisWorker worker;
+	
+	/**
+	 * The counts behind the Kappa tests and the chi-squared test for the last ciphertext, kept so that edits to it can be counted without starting again
+	 */
+	private AnalysisSession session;
+	
+	/**
+	 * The results of every ciphertext that has been analysed, so they can be shown straight away if it's entered again
 	 */
-	private CharHolder[] textTemplate;
+	private final ResultCache resultCache = new ResultCache(ResultCache.defaultDirectory, ResultCache.defaultMemoryLimit);
+	
+	/**
+	 * The largest spacing that the Kasiski table will have a column for
+	 */
+	public static int maxKasiskiSpacing = AnalysisUtils.defaultMaxKeyLength;
 
 	public MainFrame() throws HeadlessException {
 		super();
@@ -71,34 +96,14 @@ public class MainFrame extends JFrame {
 		add(mainScrollArea, c);
 		
 		setText.addActionListener((actionEvent) -> {
-			// TODO: Add handling for non-letter characters e.g. punctuation. Just save it's positions and put it back in the deciphered text
-			// TODO: Also add handling for different case. Do the same as with non-letter characters - save position and re-apply later (meanwhile convert all characters to a single case)
-			// TODO: Also do the same for whitespace
 			Dialogs.showInputAreaDialog(this, "Enter Ciphertext", (text, submitted) -> {
 				if(submitted) {
-					StringBuilder sb = new StringBuilder(text);
-					textTemplate = new CharHolder[sb.length()];
-					// First copy any non-letter characters from the text to the textTemplate
-					for(int i = 0; i < sb.length(); i++) {
-						if(!Character.isLetter(sb.charAt(i))) {
-							textTemplate[i] = new CharHolder(sb.charAt(i));
-						} else {
-							textTemplate[i] = new CharHolder(Character.isUpperCase(sb.charAt(i)));
-						}
-					}
-					
-					// Next remove all non-letter characters from the text
-					for(int i = 0; i < sb.length(); i++) {
-						if(!Character.isLetter(sb.charAt(i))) {
-							sb.deleteCharAt(i);
-							i--;
-						} else if(Character.isUpperCase(sb.charAt(i))) {
-							sb.setCharAt(i, Character.toUpperCase(sb.charAt(i)));
-						}
+					if(worker != null) {
+						worker.cancel(false); // Stop analysing the old ciphertext
 					}
-					
-//					text = text.replaceAll("\\s+",""); // Remove all whitespace
-					setupMainContent(sb.toString(), text);
+					// Splits the text into its letters (all one case) and its punctuation, whitespace and capitals, which are saved to be put back in the deciphered text
+					ciphertext = CipherText.parse(text);
+					setupMainContent(ciphertext, text);
 				}
 				return true;
 			}, 0, false); // ID 0
@@ -109,7 +114,7 @@ public class MainFrame extends JFrame {
 		setVisible(true);
 	}
 	
-	public void setupMainContent(String ciphertext, String unedited) { // This function is called once we've recieved the ciphertext
+	public void setupMainContent(CipherText ciphertext, String unedited) { // This function is called once we've recieved the ciphertext
 //		System.out.println("Ciphertext: " + ciphertext + " Unedited ciphertext: " + unedited);
 		
 		mainContent.removeAll();
@@ -138,7 +143,29 @@ public class MainFrame extends JFrame {
 		c.insets = new Insets(0, 5, 5, 5);
 		mainContent.add(kasiskiLabel, c);
 		
-		JTable table = visualiseKasiskiData(ciphertext);
+		KasiskiTableModel kasiskiModel = new KasiskiTableModel(ciphertext.asLetterSequence(), maxKasiskiSpacing);
+		JTable table = visualiseKasiskiData(kasiskiModel);
+		TableRowSorter<KasiskiTableModel> sorter = new TableRowSorter<KasiskiTableModel>(kasiskiModel);
+		table.setRowSorter(sorter);
+		
+		JTextField tableFilter = new JTextField(10);
+		tableFilter.setToolTipText("Only show sequences containing this text");
+		tableFilter.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				filterKasiskiTable(sorter, tableFilter.getText());
+			}
+			
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				filterKasiskiTable(sorter, tableFilter.getText());
+			}
+			
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				filterKasiskiTable(sorter, tableFilter.getText());
+			}
+		});
 		
 		JCheckBox tableColSelect = new JCheckBox("Column Selection Mode");
 		tableColSelect.addActionListener((actionEvent) -> {
@@ -151,19 +178,35 @@ public class MainFrame extends JFrame {
 				table.setRowSelectionAllowed(true);
 			}
 		});
+		JPanel tableOptions = new JPanel();
+		tableOptions.add(new JLabel("Filter:"));
+		tableOptions.add(tableFilter);
+		tableOptions.add(tableColSelect);
 		c.fill = GridBagConstraints.NONE;
 		c.gridx = 1;
 		c.weightx = 0;
 		c.insets = new Insets(0, 0, 5, 5);
 		c.gridwidth = 1;
 		c.anchor = GridBagConstraints.EAST;
-		mainContent.add(tableColSelect, c);
+		mainContent.add(tableOptions, c);
+		
+		JProgressBar progressBar = new JProgressBar(0, 100);
+		progressBar.setStringPainted(true);
+		progressBar.setString("Analysing...");
+		c.gridx = 0;
+		c.gridy = 3;
+		c.fill = GridBagConstraints.HORIZONTAL;
+		c.weightx = 1;
+		c.insets = new Insets(0, 5, 5, 5);
+		c.gridwidth = 2;
+		c.anchor = GridBagConstraints.CENTER;
+		mainContent.add(progressBar, c);
 		
 		JPanel tableContainer = new JPanel();
 		tableContainer.setLayout(new BorderLayout());
 		tableContainer.add(table.getTableHeader(), BorderLayout.NORTH);
 		tableContainer.add(table, BorderLayout.CENTER);
-		c.gridy = 3;
+		c.gridy = 4;
 		c.fill = GridBagConstraints.HORIZONTAL;
 		c.weightx = 1;
 		c.insets = new Insets(0, 5, 5, 5);
@@ -171,45 +214,160 @@ public class MainFrame extends JFrame {
 		c.anchor = GridBagConstraints.CENTER;
 		mainContent.add(tableContainer, c);
 		
+		JLabel keyLengthLabel = new JLabel("Keyword Length");
+		c.gridy = 5;
+		c.insets = new Insets(5, 5, 5, 5);
+		mainContent.add(keyLengthLabel, c);
+		
+		JLabel keyLengthResults = new JLabel(" ");
+		c.gridy = 6;
+		c.insets = new Insets(0, 5, 5, 5);
+		mainContent.add(keyLengthResults, c);
+		
+		JLabel plaintextLabel = new JLabel("Plain Text");
+		c.gridy = 7;
+		c.insets = new Insets(5, 5, 5, 5);
+		mainContent.add(plaintextLabel, c);
+		
+		// Deciphered again on every keystroke, so the layout is worked out once for the ciphertext rather than every time
+		Decryptor decryptor = new Decryptor(ciphertext);
+		JTextArea plaintextArea = new JTextArea(unedited);
+		plaintextArea.setTabSize(4);
+		plaintextArea.setEditable(false);
+		JTextField keywordField = new JTextField(15);
+		keywordField.setToolTipText("Decipher the text with this keyword");
+		keywordField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				plaintextArea.setText(decryptor.decrypt(keywordField.getText()));
+			}
+			
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				plaintextArea.setText(decryptor.decrypt(keywordField.getText()));
+			}
+			
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				plaintextArea.setText(decryptor.decrypt(keywordField.getText()));
+			}
+		});
+		JPanel keywordOptions = new JPanel();
+		keywordOptions.add(new JLabel("Keyword:"));
+		keywordOptions.add(keywordField);
+		c.fill = GridBagConstraints.NONE;
+		c.gridx = 1;
+		c.weightx = 0;
+		c.insets = new Insets(0, 0, 5, 5);
+		c.gridwidth = 1;
+		c.anchor = GridBagConstraints.EAST;
+		mainContent.add(keywordOptions, c);
+		
+		JScrollPane plaintextAreaSPane = new JScrollPane(plaintextArea);
+		plaintextAreaSPane.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
+		plaintextAreaSPane.setMinimumSize(new Dimension(20, 100));
+		c.gridx = 0;
+		c.gridy = 8;
+		c.fill = GridBagConstraints.HORIZONTAL;
+		c.weightx = 1;
+		c.insets = new Insets(0, 5, 10, 5);
+		c.gridwidth = 2;
+		c.anchor = GridBagConstraints.CENTER;
+		mainContent.add(plaintextAreaSPane, c);
+		
+		String cacheKey = ResultCache.key(ciphertext.getLetters(), AnalysisUtils.defaultMaxKeyLength);
+		AnalysisResults cached = resultCache.get(cacheKey, ciphertext.asLetterSequence());
+		if(cached != null) {
+			// Keep the session in step with the ciphertext if it's quick to, otherwise a new one is counted when it's next needed
+			if(session != null && !session.update(ciphertext.getLetters())) {
+				session = null;
+			}
+			worker = null;
+			kasiskiModel.setResult(cached.kasiski);
+			progressBar.setValue(100);
+			progressBar.setString("Found " + cached.kasiski.size() + " repeated sequences (cached)");
+			keyLengthResults.setText(describeKeyLength(cached));
+		} else {
+			analyse(ciphertext, cacheKey, kasiskiModel, progressBar, keyLengthResults);
+		}
+		
 		mainContent.revalidate();
 		getContentPane().repaint();
 		pack();
 		setLocationRelativeTo(null);
 	}
 
-	// We need a JTable to visualise the data from the Kasiski Test
-	public JTable visualiseKasiskiData(String ciphertext) {
-		ArrayList<RepeatedSequence> list = AnalysisUtils.KasiskiTest(ciphertext);
-		
-		int numCols = 36;
-		
-		String[] columnNames = Utils.concat(new String[]{ "Sequence" }, Utils.count(2, numCols + 1));
-		
-		int rows = list.size();
-		int cols = numCols;
-		Object[][] data = new Object[rows][cols];
-		// Need to provide the table with empty data that is overwritten
-		for(int i = 0; i < rows; i++) {
-			for(int j = 0; j < cols; j++) {
-				data[i][j] = "";
-			}
+	/**
+	 * Starts the analyses of a ciphertext in the background, filling in the results as they come and caching them once they're done
+	 */
+	private void analyse(CipherText ciphertext, String cacheKey, KasiskiTableModel kasiskiModel, JProgressBar progressBar, JLabel keyLengthResults) {
+		// If the ciphertext is the last one with letters added onto the end or changed, only the changes need counting, which is quick enough to do here.
+		// Otherwise the counting is done in the background along with the rest
+		boolean updated = session != null && session.update(ciphertext.getLetters());
+		if(updated) {
+			keyLengthResults.setText(describeKeyLength(session.getResults()));
 		}
 		
-		for(int i = 0; i < list.size(); i++) {
-			data[i][0] = list.get(i).getSequence();
-			Integer[] spacings = list.get(i).getSpacings();
-			for(int j = 0; j < spacings.length; j++) {
-				int index = spacings[j] - 1;
-				if(index < cols && index > 0) {
-					data[i][index] = "X";
-				}
+		// The analyses are run in the background, and the Kasiski table is filled in as repeated sequences are found
+		worker = new AnalysisWorker(ciphertext, !updated, new AnalysisWorker.Listener() {
+			@Override
+			public void sessionReady(AnalysisSession newSession) {
+				session = newSession;
+				keyLengthResults.setText(describeKeyLength(session.getResults()));
 			}
-		}
-		
-		JTable table = new JTable(new NonEditableTableModel(data, columnNames));
+			
+			@Override
+			public void rowsFound(List<KasiskiTableModel.FoundSequence> sequences) {
+				kasiskiModel.addRows(sequences);
+			}
+			
+			@Override
+			public void finished(KasiskiResult result) {
+				kasiskiModel.setResult(result); // Puts the rows in order
+				progressBar.setValue(100);
+				progressBar.setString("Found " + result.size() + " repeated sequences");
+				
+				AnalysisResults results = session.getResults();
+				results.kasiski = result;
+				ForkJoinPool.commonPool().execute(() -> {
+					try {
+						resultCache.put(cacheKey, results);
+					} catch(IOException e) {
+						System.err.println("Couldn't cache the results: " + e);
+					}
+				});
+			}
+			
+			@Override
+			public void failed(Throwable cause) {
+				progressBar.setString("Analysis failed: " + cause);
+			}
+		});
+		worker.addPropertyChangeListener((event) -> {
+			if(event.getPropertyName().equals("progress")) {
+				progressBar.setValue((Integer)event.getNewValue());
+			}
+		});
+		worker.execute();
+	}
+
+	// We need a JTable to visualise the data from the Kasiski Test
+	public JTable visualiseKasiskiData(KasiskiTableModel model) {
+		JTable table = new JTable(model);
 		table.setAutoResizeMode(JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
+		setKasiskiColumnWidths(table);
+		// The columns are made again whenever more spacings are found, so they need their widths setting again
+		model.addTableModelListener((event) -> {
+			if(event.getFirstRow() == TableModelEvent.HEADER_ROW) {
+				setKasiskiColumnWidths(table);
+			}
+		});
+		return table;
+	}
+	
+	private static void setKasiskiColumnWidths(JTable table) {
 		TableColumn column = null;
-		for (int i = 0; i < cols; i++) {
+		for (int i = 0; i < table.getColumnCount(); i++) {
 		    column = table.getColumnModel().getColumn(i);
 		    if (i > 0) {
 		        column.setPreferredWidth(25);
@@ -217,6 +375,34 @@ public class MainFrame extends JFrame {
 		        column.setPreferredWidth(100);
 		    }
 		}
-		return table;
+	}
+	
+	/**
+	 * Hides the rows of the Kasiski table whose sequence doesn't contain <code>filter</code>. Nothing is copied - the sorter just skips rows
+	 */
+	private static void filterKasiskiTable(TableRowSorter<KasiskiTableModel> sorter, String filter) {
+		String upper = filter.trim().toUpperCase();
+		if(upper.isEmpty()) {
+			sorter.setRowFilter(null);
+			return;
+		}
+		sorter.setRowFilter(new RowFilter<KasiskiTableModel, Integer>() {
+			@Override
+			public boolean include(Entry<? extends KasiskiTableModel, ? extends Integer> entry) {
+				return entry.getModel().getSequence(entry.getIdentifier()).contains(upper);
+			}
+		});
+	}
+	
+	private static String describeKeyLength(AnalysisResults results) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Kappa test: ").append(results.kappa.keylength > 0 ? String.valueOf(results.kappa.keylength) : "none").append(" (Ko = ").append(results.kappa.ko).append(")");
+		sb.append("    Repeated trigrams: ").append(results.kasiskiKeyLength > 0 ? String.valueOf(results.kasiskiKeyLength) : "none");
+		if(results.keyLength > 0) {
+			sb.append("    Improved Kappa test: ").append(results.keyLength).append(" (IOC = ").append(results.iocs.get(results.keyLength - 1).ioc).append(")");
+			sb.append("    Likely keyword: ").append(results.getKeyword());
+		}
+		sb.append("    Language: ").append(results.language.getName());
+		return sb.toString();
 	}
 }
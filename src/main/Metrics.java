@@ -0,0 +1,284 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Timings and sizes of each stage of the analysis, for finding out where the time goes when an analysis is slow.<br>
+ * <br>
+ * Instrumentation is off unless the system property <code>vigenere.metrics</code> is <code>true</code> when this class is loaded - {@link #ENABLED} is a static final,
+ * so when it's off the JIT removes the checks entirely, and a stage costs nothing but the (cheap) arguments to {@link #end(Stage, long, long, long)}.
+ * When it's on, every stage:<br>
+ * - adds to the totals and the log2 latency histogram of its {@link StageMetrics}, which are registered as a JMX MXBean named <code>vigenere:type=Metrics,stage=&lt;stage&gt;</code><br>
+ * - emits a {@link StageEvent} to Java Flight Recorder, if a recording with the event enabled is running<br>
+ * The same numbers can be read without JMX from {@link #get(Stage)}, or all at once as text from {@link #report()}
+ */
+public class Metrics {
+	/**
+	 * The system property that turns instrumentation on
+	 */
+	public static final String PROPERTY = "vigenere.metrics";
+	public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+	private Metrics() {
+		throw new AssertionError("This class should not be instantiable");
+	}
+
+	/**
+	 * The stages of the analysis that are measured. The input and output of each are counted in the units given
+	 */
+	public static enum Stage {
+		/** Splitting the letters out of a text. In: characters. Out: letters */
+		NORMALISE,
+		/** Building the suffix array and LCP array of a text. In: letters. Out: suffixes */
+		SUFFIX_ARRAY,
+		/** Walking the LCP intervals for repeated sequences. In: suffixes. Out: repeated sequences */
+		KASISKI,
+		/** Putting the repeated sequences in order and packing them into a KasiskiResult. In: repeated sequences. Out: spacings */
+		KASISKI_PACK,
+		/** The Kappa test. In: letters. Out: 1 */
+		KAPPA,
+		/** Counting the columns for every keyword length. In: letters. Out: keyword lengths */
+		COLUMN_COUNT,
+		/** The improved Kappa test, from the column counts. In: letters. Out: keyword lengths */
+		KAPPA2,
+		/** Counting the matches at every shift with FFTs. In: letters. Out: shifts */
+		AUTOCORRELATION,
+		/** The chi-squared test. In: columns. Out: shifts */
+		CHI_SQUARED,
+		/** Putting repeated sequences into the Kasiski table. In: repeated sequences. Out: rows in the table */
+		TABLE,
+		/** Hill-climbing for the keyword. In: letters. Out: keywords found */
+		SOLVE,
+		/** Trying the words of a wordlist as the keyword. In: keywords tried. Out: matches */
+		DICTIONARY
+	}
+
+	/**
+	 * The totals for one stage, as seen through JMX
+	 */
+	public static interface StageMetricsMXBean {
+		/** @return The number of times the stage has run */
+		public abstract long getCount();
+		/** @return The total time spent in the stage, in nanoseconds */
+		public abstract long getTotalNanos();
+		/** @return The average time the stage took, in nanoseconds */
+		public abstract long getMeanNanos();
+		/** @return The longest time the stage took, in nanoseconds */
+		public abstract long getMaxNanos();
+		/** @return The total size of the stage's inputs */
+		public abstract long getTotalInput();
+		/** @return The total size of the stage's outputs */
+		public abstract long getTotalOutput();
+		/** @return The number of runs that took from 2^i to 2^(i+1) - 1 nanoseconds, at index i */
+		public abstract long[] getHistogram();
+		/** Sets everything back to 0 */
+		public abstract void reset();
+	}
+
+	public static class StageMetrics implements StageMetricsMXBean {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder totalInput = new LongAdder();
+		private final LongAdder totalOutput = new LongAdder();
+		private final AtomicLongArray histogram = new AtomicLongArray(64);
+
+		StageMetrics() {
+		}
+
+		void record(long nanos, long input, long output) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			totalInput.add(input);
+			totalOutput.add(output);
+			histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+		}
+
+		@Override
+		public long getCount() {
+			return count.sum();
+		}
+
+		@Override
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		@Override
+		public long getMeanNanos() {
+			long n = count.sum();
+			return n == 0 ? 0 : totalNanos.sum() / n;
+		}
+
+		@Override
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		@Override
+		public long getTotalInput() {
+			return totalInput.sum();
+		}
+
+		@Override
+		public long getTotalOutput() {
+			return totalOutput.sum();
+		}
+
+		@Override
+		public long[] getHistogram() {
+			long[] copy = new long[histogram.length()];
+			for(int i = 0; i < copy.length; i++) {
+				copy[i] = histogram.get(i);
+			}
+			return copy;
+		}
+
+		/**
+		 * Estimates a percentile of the time the stage took from the histogram
+		 * @param fraction - The percentile, from 0 to 1
+		 * @return The upper bound of the histogram bucket the percentile falls in, or the longest time the stage took if that's less, in nanoseconds, or 0 if the stage hasn't run
+		 */
+		public long getPercentileNanos(double fraction) {
+			long[] counts = getHistogram();
+			long total = 0;
+			for(long c : counts) {
+				total += c;
+			}
+			long target = (long)Math.ceil(total * fraction);
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= target && seen > 0) {
+					// A bucket's upper bound can be up to twice its times, so it's no more than the longest time seen
+					return Math.min(i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMaxNanos());
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		public void reset() {
+			count.reset();
+			totalNanos.reset();
+			maxNanos.set(0);
+			totalInput.reset();
+			totalOutput.reset();
+			for(int i = 0; i < histogram.length(); i++) {
+				histogram.set(i, 0);
+			}
+		}
+	}
+
+	/**
+	 * The Flight Recorder event for one run of a stage
+	 */
+	@Name("vigenere.Stage")
+	@Label("Analysis Stage")
+	@Category("Vigenere Analysis")
+	@Description("One run of a stage of the analysis")
+	public static class StageEvent extends Event {
+		@Label("Stage")
+		public String stage;
+
+		@Label("Input Size")
+		public long inputSize;
+
+		@Label("Output Count")
+		public long outputCount;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		public long elapsed;
+	}
+
+	private static final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+
+	static {
+		for(int i = 0; i < stages.length; i++) {
+			stages[i] = new StageMetrics();
+		}
+		if(ENABLED) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			for(Stage stage : Stage.values()) {
+				try {
+					server.registerMBean(stages[stage.ordinal()], new ObjectName("vigenere:type=Metrics,stage=" + stage));
+				} catch(JMException e) {
+					// Still readable from get() and report()
+					System.err.println("Couldn't register the metrics for " + stage + " with JMX: " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the start of a stage
+	 * @return The time to pass to {@link #end(Stage, long, long, long)}, or 0 if instrumentation is off
+	 */
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Marks the end of a stage, adding it to the totals and emitting a Flight Recorder event. Does nothing if instrumentation is off
+	 * @param stage - The stage
+	 * @param start - The time from {@link #start()}
+	 * @param input - The size of the stage's input, in the units given in {@link Stage}
+	 * @param output - The size of the stage's output, in the units given in {@link Stage}
+	 */
+	public static void end(Stage stage, long start, long input, long output) {
+		if(!ENABLED) {
+			return;
+		}
+		long elapsed = System.nanoTime() - start;
+		stages[stage.ordinal()].record(elapsed, input, output);
+		StageEvent event = new StageEvent();
+		if(event.isEnabled()) {
+			event.stage = stage.name();
+			event.inputSize = input;
+			event.outputCount = output;
+			event.elapsed = elapsed;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param stage - The stage
+	 * @return The totals for the stage. These are always 0 if instrumentation is off
+	 */
+	public static StageMetrics get(Stage stage) {
+		return stages[stage.ordinal()];
+	}
+
+	/**
+	 * @return A table of the totals for every stage that has run, one line per stage
+	 */
+	public static String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-13s %8s %12s %12s %12s %12s %14s %14s%n", "stage", "count", "total ms", "mean us", "p99 us", "max us", "input", "output"));
+		for(Stage stage : Stage.values()) {
+			StageMetrics metrics = get(stage);
+			if(metrics.getCount() == 0) {
+				continue;
+			}
+			sb.append(String.format("%-13s %8d %12.1f %12.1f %12.1f %12.1f %14d %14d%n", stage, metrics.getCount(), metrics.getTotalNanos() / 1e6, metrics.getMeanNanos() / 1e3,
+					metrics.getPercentileNanos(0.99) / 1e3, metrics.getMaxNanos() / 1e3, metrics.getTotalInput(), metrics.getTotalOutput()));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,302 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Tables of the log10-probabilities of every n-gram of a language, for n from 1 (single letters) to 4 (quadgrams), in a packed binary file that is memory-mapped rather than read.<br>
+ * <br>
+ * Parsing 26^4 quadgram counts out of a text file takes far longer than a short run of the program does, so frequency lists are converted into this format once (with {@link #convert(String[])}),
+ * and after that loading the tables is just mapping the file - the pages are only read as they're touched, and every program that maps the same file shares them.<br>
+ * <br>
+ * The file is little-endian: the magic number <code>VNG1</code>, the number of tables, then for each table its n, its floor (the log10-probability given to n-grams that were never counted) and the offset of its floats.
+ * Each table is 26^n floats, indexed by the n-gram's letters as a base 26 number, starting on a 64 byte boundary
+ */
+public class NgramStatistics {
+	public static final int MAGIC = 0x31474E56; // "VNG1", little-endian
+	public static final int MAX_N = 4;
+	private static final int HEADER_SIZE = 8;
+	private static final int TABLE_HEADER_SIZE = 16;
+	private static final int ALIGNMENT = 64;
+
+	private final FloatBuffer[] tables = new FloatBuffer[MAX_N];
+	private final float[] floors = new float[MAX_N];
+
+	private NgramStatistics() {
+	}
+
+	/**
+	 * @param n - The length of the n-grams
+	 * @return The number of different n-grams - 26^n
+	 */
+	public static int size(int n) {
+		int size = 1;
+		for(int i = 0; i < n; i++) {
+			size *= 26;
+		}
+		return size;
+	}
+
+	/**
+	 * Memory-maps a file of tables
+	 * @param path - The file, written by {@link #write(Path, long[][])}
+	 * @return The tables. They're read-only views of the file
+	 * @throws IOException If the file can't be read, or isn't a file of tables
+	 */
+	public static NgramStatistics map(Path path) throws IOException {
+		ByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // The mapping stays valid after the channel is closed
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if(buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException(path + " isn't a file of n-gram tables");
+		}
+		NgramStatistics stats = new NgramStatistics();
+		int count = buffer.getInt(4);
+		for(int t = 0; t < count; t++) {
+			int header = HEADER_SIZE + t * TABLE_HEADER_SIZE;
+			int n = buffer.getInt(header);
+			long offset = buffer.getLong(header + 8);
+			if(n < 1 || n > MAX_N || offset < 0 || offset + size(n) * 4L > buffer.capacity()) {
+				throw new IOException(path + " has a corrupt table header");
+			}
+			ByteBuffer table = buffer.duplicate();
+			table.position((int)offset).limit((int)offset + size(n) * 4);
+			stats.tables[n - 1] = table.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			stats.floors[n - 1] = buffer.getFloat(header + 4);
+		}
+		return stats;
+	}
+
+	/**
+	 * @param path - The file
+	 * @return Whether the file starts with the magic number of a file of tables
+	 * @throws IOException If the file can't be read
+	 */
+	public static boolean isTableFile(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while(magic.hasRemaining()) {
+				if(channel.read(magic) < 0) {
+					return false; // Too short to be one
+				}
+			}
+			return magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Works out the tables from n-gram counts and writes them to a file. It's written to a temporary file and moved into place, so a file that's mapped elsewhere is never half-written
+	 * @param path - The file to write
+	 * @param counts - The counts, with the counts for n at index n - 1, each indexed by the n-gram as a base 26 number. Any of them can be null to leave that table out
+	 * @throws IOException If the file can't be written
+	 */
+	public static void write(Path path, long[][] counts) throws IOException {
+		int tableCount = 0;
+		for(long[] c : counts) {
+			if(c != null) {
+				tableCount++;
+			}
+		}
+		long offset = align(HEADER_SIZE + tableCount * TABLE_HEADER_SIZE);
+		ByteBuffer header = ByteBuffer.allocate((int)offset).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(tableCount);
+		float[][] tables = new float[counts.length][];
+		for(int n = 1; n <= counts.length; n++) {
+			if(counts[n - 1] == null) {
+				continue;
+			}
+			if(counts[n - 1].length != size(n)) {
+				throw new IllegalArgumentException("Expected " + size(n) + " counts for n = " + n + ", got " + counts[n - 1].length);
+			}
+			tables[n - 1] = new float[size(n)];
+			float floor = logProbabilities(counts[n - 1], tables[n - 1]);
+			header.putInt(n).putFloat(floor).putLong(offset);
+			offset = align(offset + size(n) * 4L);
+		}
+		header.clear();
+
+		Path parent = path.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while(header.hasRemaining()) {
+					channel.write(header);
+				}
+				for(float[] table : tables) {
+					if(table == null) {
+						continue;
+					}
+					ByteBuffer bytes = ByteBuffer.allocate((int)align(table.length * 4L)).order(ByteOrder.LITTLE_ENDIAN);
+					bytes.asFloatBuffer().put(table);
+					while(bytes.hasRemaining()) {
+						channel.write(bytes);
+					}
+				}
+			}
+			try {
+				// Temporary files can only be read by their owner, but the tables are meant to be shared
+				Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-r--r--"));
+			} catch(UnsupportedOperationException e) {
+				// Not a POSIX file system, so it has whatever permissions the directory gives it
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static long align(long offset) {
+		return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	/**
+	 * Works out the log10-probability of every n-gram from counts. N-grams that were never counted get a floor probability of 0.01 occurrences
+	 * @param counts - The counts
+	 * @param logProbabilities - The array to put the log10-probabilities in. Must be as long as <code>counts</code>
+	 * @return The floor
+	 */
+	public static float logProbabilities(long[] counts, float[] logProbabilities) {
+		long total = 0;
+		for(long count : counts) {
+			total += count;
+		}
+		if(total == 0) {
+			throw new IllegalArgumentException("No n-grams were counted");
+		}
+		float floor = (float)Math.log10(0.01 / total);
+		for(int i = 0; i < counts.length; i++) {
+			logProbabilities[i] = counts[i] > 0 ? (float)Math.log10((double)counts[i] / total) : floor;
+		}
+		return floor;
+	}
+
+	/**
+	 * Reads n-gram counts from a frequency list - a text file with one n-gram per line, followed by whitespace and the number of times it was seen, e.g. <code>TION 13168375</code>.
+	 * Case is ignored, and blank lines and lines starting with <code>#</code> are skipped
+	 * @param path - The file
+	 * @param n - The length of the n-grams, or 0 to take it from the first n-gram in the file
+	 * @return The counts, indexed by the n-gram as a base 26 number. The length of the array is 26^n, so n can be worked out from it
+	 * @throws IOException If the file can't be read, or a line isn't an n-gram and a count
+	 */
+	public static long[] readCounts(Path path, int n) throws IOException {
+		long[] counts = n > 0 ? new long[size(n)] : null;
+		try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				byte[] letters = Utils.toLetterIndices(parts[0]);
+				if(counts == null && letters.length >= 1 && letters.length <= MAX_N) {
+					n = letters.length;
+					counts = new long[size(n)];
+				}
+				if(parts.length != 2 || parts[0].length() != n || letters.length != n) {
+					throw new IOException(path + ":" + lineNumber + ": Expected an n-gram of " + n + " letters and a count, got \"" + line + "\"");
+				}
+				int index = 0;
+				for(byte letter : letters) {
+					index = index * 26 + letter;
+				}
+				try {
+					counts[index] += Long.parseLong(parts[1]);
+				} catch(NumberFormatException e) {
+					throw new IOException(path + ":" + lineNumber + ": Not a count: \"" + parts[1] + "\"");
+				}
+			}
+		}
+		if(counts == null) {
+			throw new IOException(path + " has no n-grams in it");
+		}
+		return counts;
+	}
+
+	/**
+	 * Converts frequency lists into a file of tables, from the command line<br>
+	 * <br>
+	 * Usage: <code>java main/Main --convert-ngrams &lt;output file&gt; &lt;frequency list&gt;...</code><br>
+	 * Each frequency list can be of any n from 1 to 4 (see {@link #readCounts(Path, int)}), and if two are of the same n their counts are added together
+	 * @param args - The command line arguments, not including <code>--convert-ngrams</code>
+	 * @return The exit code - 0 if the file was written, 1 if it couldn't be, 2 if the arguments were wrong
+	 */
+	public static int convert(String[] args) {
+		if(args.length < 2) {
+			System.err.println("Usage: java main/Main --convert-ngrams <output file> <frequency list>...");
+			return 2;
+		}
+		try {
+			long[][] counts = new long[MAX_N][];
+			for(int i = 1; i < args.length; i++) {
+				long[] read = readCounts(Paths.get(args[i]), 0);
+				int n = nFromSize(read.length);
+				if(counts[n - 1] == null) {
+					counts[n - 1] = read;
+				} else {
+					for(int j = 0; j < read.length; j++) {
+						counts[n - 1][j] += read[j];
+					}
+				}
+			}
+			write(Paths.get(args[0]), counts);
+			return 0;
+		} catch(IOException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+	}
+
+	private static int nFromSize(int size) {
+		int n = 0;
+		for(int s = 1; s < size; s *= 26) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @param n - The length of the n-grams
+	 * @return Whether there's a table for n
+	 */
+	public boolean has(int n) {
+		return n >= 1 && n <= MAX_N && tables[n - 1] != null;
+	}
+
+	/**
+	 * @param n - The length of the n-grams
+	 * @return The log10-probabilities of every n-gram, indexed by the n-gram as a base 26 number. This is a read-only view of the file, so every call gets the same one, and its position must not be relied on
+	 * @throws IllegalArgumentException If there's no table for n
+	 */
+	public FloatBuffer getTable(int n) {
+		if(!has(n)) {
+			throw new IllegalArgumentException("No table for n = " + n);
+		}
+		return tables[n - 1];
+	}
+
+	/**
+	 * @param n - The length of the n-grams
+	 * @return The log10-probability given to n-grams that were never counted
+	 * @throws IllegalArgumentException If there's no table for n
+	 */
+	public float getFloor(int n) {
+		getTable(n);
+		return floors[n - 1];
+	}
+}
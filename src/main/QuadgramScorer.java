@@ -0,0 +1,112 @@
+package main;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+
+/**
+ * Scores text by how much it looks like a language, using the log-probability of each of its quadgrams (sequences of 4 letters).<br>
+ * <br>
+ * The probability of every one of the 26^4 quadgrams is kept in a single FloatBuffer, indexed by the quadgram's letters as a base 26 number, so looking one up is a single absolute get.
+ * The buffer is usually a memory-mapped {@link NgramStatistics} table, so it costs nothing to load and isn't copied onto the heap.
+ * Quadgrams that were never counted get a floor probability of 0.01 occurrences, so a single unusual quadgram can't rule a text out.
+ * The score of a text is the sum of the log10-probabilities of all its quadgrams - it's always negative, and higher is more like the language
+ * @see <a href="http://www.practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams">http://www.practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams</a>
+ */
+public class QuadgramScorer {
+	public static final int QUADGRAMS = 26 * 26 * 26 * 26;
+
+	private final FloatBuffer logProbabilities;
+	private final float floor;
+
+	/**
+	 * @param counts - The number of times each quadgram was seen, indexed as in {@link #index(byte[], int)}
+	 */
+	public QuadgramScorer(long[] counts) {
+		if(counts.length != QUADGRAMS) {
+			throw new IllegalArgumentException("Expected " + QUADGRAMS + " counts, got " + counts.length);
+		}
+		float[] table = new float[QUADGRAMS];
+		floor = NgramStatistics.logProbabilities(counts, table);
+		logProbabilities = FloatBuffer.wrap(table);
+	}
+
+	/**
+	 * @param stats - The n-gram tables. Must have a table for quadgrams, which is used without being copied
+	 * @throws IllegalArgumentException If there's no table for quadgrams
+	 */
+	public QuadgramScorer(NgramStatistics stats) {
+		logProbabilities = stats.getTable(4);
+		floor = stats.getFloor(4);
+	}
+
+	/**
+	 * Loads quadgram statistics from a file - either a file of n-gram tables, which is memory-mapped (see {@link NgramStatistics#map(Path)}),
+	 * or a frequency list with one quadgram and its count per line, e.g. <code>TION 13168375</code> (see {@link NgramStatistics#readCounts(Path, int)})
+	 * @param path - The file
+	 * @return The scorer
+	 * @throws IOException If the file can't be read, or isn't either kind of file
+	 */
+	public static QuadgramScorer load(Path path) throws IOException {
+		if(NgramStatistics.isTableFile(path)) {
+			NgramStatistics stats = NgramStatistics.map(path);
+			if(!stats.has(4)) {
+				throw new IOException(path + " has no quadgram table");
+			}
+			return new QuadgramScorer(stats);
+		}
+		return new QuadgramScorer(NgramStatistics.readCounts(path, 4));
+	}
+
+	/**
+	 * Counts the quadgrams of a text in the language, such as a book, to score other texts against
+	 * @param letters - The text, as values from 0 to 25
+	 * @return The scorer
+	 */
+	public static QuadgramScorer train(byte[] letters) {
+		long[] counts = new long[QUADGRAMS];
+		for(int i = 0; i + 4 <= letters.length; i++) {
+			counts[index(letters, i)]++;
+		}
+		return new QuadgramScorer(counts);
+	}
+
+	/**
+	 * @param letters - The text, as values from 0 to 25
+	 * @param start - The index of the first letter of the quadgram
+	 * @return The index of the quadgram starting at <code>start</code>
+	 */
+	public static int index(byte[] letters, int start) {
+		return ((letters[start] * 26 + letters[start + 1]) * 26 + letters[start + 2]) * 26 + letters[start + 3];
+	}
+
+	/**
+	 * @param quadgram - The index of the quadgram, from {@link #index(byte[], int)}
+	 * @return The log10-probability of the quadgram
+	 */
+	public float get(int quadgram) {
+		return logProbabilities.get(quadgram);
+	}
+
+	/**
+	 * @return The log10-probability given to quadgrams that were never counted
+	 */
+	public float getFloor() {
+		return floor;
+	}
+
+	/**
+	 * Scores part of a text
+	 * @param letters - The text, as values from 0 to 25
+	 * @param from - The index of the first letter (inclusive)
+	 * @param to - The index of the last letter (exclusive)
+	 * @return The sum of the log10-probabilities of every quadgram between <code>from</code> and <code>to</code>
+	 */
+	public double score(byte[] letters, int from, int to) {
+		double score = 0;
+		for(int i = from; i + 4 <= to; i++) {
+			score += logProbabilities.get(index(letters, i));
+		}
+		return score;
+	}
+}
@@ -0,0 +1,333 @@
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * A cache of AnalysisResults, keyed by a SHA-256 hash of the ciphertext's letters and the analysis parameters, so the same letters are never analysed twice.<br>
+ * <br>
+ * Recently used results are kept in memory, up to a total (estimated) size, and the least recently used ones are dropped once that's reached.
+ * Every result is also written to a directory as soon as it's added, one file per result named after its key, so results survive the program being closed and can be found again without any index being loaded.
+ * The files are written with {@link KasiskiResult#write(java.io.DataOutput)} and friends, so the spacings take a byte or two each, and are read back by memory-mapping them.<br>
+ * <br>
+ * The files are kept to a total size too. A file's last-modified time is set whenever it's read, so it's also the time it was last used, and once the files go over the limit,
+ * the least recently used ones are deleted until they're back under 90% of it. The directory is only listed when that happens (and once, to find its size, the first time a result is written).<br>
+ * <br>
+ * Which language a text is in, and so its keyword and shifts, depends on the language profiles that are registered, so the key includes {@link LanguageProfile#getRegistryFingerprint()}
+ */
+public class ResultCache {
+	private static final int MAGIC = 0x56414332; // "VAC2"
+	private static final String EXTENSION = ".bin";
+
+	/**
+	 * The directory results are kept in if one isn't given
+	 */
+	public static Path defaultDirectory = Paths.get(System.getProperty("user.home"), ".vigenere-analysis", "cache");
+
+	/**
+	 * The total size, in bytes, of the results kept in memory if one isn't given
+	 */
+	public static long defaultMemoryLimit = 64L << 20;
+
+	/**
+	 * The total size, in bytes, of the result files kept on disk if one isn't given
+	 */
+	public static long defaultDiskLimit = 256L << 20;
+
+	private final Path directory;
+	private final long memoryLimit;
+	private final long diskLimit;
+	private final LinkedHashMap<String, AnalysisResults> memory = new LinkedHashMap<String, AnalysisResults>(16, 0.75f, true); // In order of access, least recent first
+	private long memorySize;
+	private final Object diskLock = new Object();
+	private long diskSize = -1; // The total size of the result files, or -1 until the directory has been listed
+
+	/**
+	 * Makes a cache that keeps up to {@link #defaultDiskLimit} bytes of results on disk
+	 * @param directory - The directory to keep results in, which is made if it doesn't exist. If null, results are only kept in memory
+	 * @param memoryLimit - The total size, in bytes, of the results to keep in memory
+	 */
+	public ResultCache(Path directory, long memoryLimit) {
+		this(directory, memoryLimit, defaultDiskLimit);
+	}
+
+	/**
+	 * @param directory - The directory to keep results in, which is made if it doesn't exist. If null, results are only kept in memory
+	 * @param memoryLimit - The total size, in bytes, of the results to keep in memory
+	 * @param diskLimit - The total size, in bytes, of the result files to keep in the directory
+	 */
+	public ResultCache(Path directory, long memoryLimit, long diskLimit) {
+		this.directory = directory;
+		this.memoryLimit = memoryLimit;
+		this.diskLimit = diskLimit;
+	}
+
+	/**
+	 * Works out the key for a ciphertext and the parameters it's analysed with, against the language profiles registered now
+	 * @param letters - The letters of the ciphertext, as values from 0 to 25
+	 * @param maxKeyLength - The longest keyword length tested
+	 * @return The key, as a hex String
+	 */
+	public static String key(byte[] letters, int maxKeyLength) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new AssertionError("Every Java platform has SHA-256", e);
+		}
+		long languages = LanguageProfile.getRegistryFingerprint();
+		digest.update(new byte[] { 3, (byte)(maxKeyLength >>> 24), (byte)(maxKeyLength >>> 16), (byte)(maxKeyLength >>> 8), (byte)maxKeyLength }); // The format version, then the parameters
+		digest.update(ByteBuffer.allocate(Long.BYTES).putLong(languages).array());
+		digest.update(letters);
+		byte[] hash = digest.digest();
+		StringBuilder sb = new StringBuilder(hash.length * 2);
+		for(byte b : hash) {
+			sb.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Looks for the results of a ciphertext, first in memory, then on disk
+	 * @param key - The key, from {@link #key(byte[], int)}
+	 * @param text - The letters of the ciphertext, which the Kasiski examination will point into
+	 * @return The results, or null if they aren't in the cache
+	 */
+	public AnalysisResults get(String key, CharSequence text) {
+		synchronized(memory) {
+			AnalysisResults results = memory.get(key);
+			if(results != null) {
+				return results;
+			}
+		}
+		if(directory == null) {
+			return null;
+		}
+		Path file = directory.resolve(key + EXTENSION);
+		if(!Files.isRegularFile(file)) {
+			return null;
+		}
+		try {
+			AnalysisResults results;
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				results = read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), text);
+			}
+			remember(key, results);
+			try {
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())); // Marks it as used, for eviction
+			} catch(IOException e) {
+				// It's just evicted a bit sooner
+			}
+			return results;
+		} catch(IOException | RuntimeException e) {
+			// An unreadable file (from an old version, or cut short) is the same as no file
+			try {
+				Files.deleteIfExists(file);
+			} catch(IOException e1) {
+				// It'll be overwritten when the results are put back anyway
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the results of a ciphertext to the cache, keeping them in memory and writing them to disk. If that takes the files on disk over their limit, the least recently used ones are deleted
+	 * @param key - The key, from {@link #key(byte[], int)}
+	 * @param results - The results. The Kasiski examination must have been done. These shouldn't be changed afterwards
+	 * @throws IOException If the results couldn't be written to disk. They're still kept in memory
+	 */
+	public void put(String key, AnalysisResults results) throws IOException {
+		remember(key, results);
+		if(directory == null) {
+			return;
+		}
+		Files.createDirectories(directory);
+		Path file = directory.resolve(key + EXTENSION);
+		// Written to a temporary file and moved into place, so a half-written file can never be read
+		Path temp = Files.createTempFile(directory, key, ".tmp");
+		try {
+			try(OutputStream stream = Files.newOutputStream(temp)) {
+				write(new DataOutputStream(new BufferedOutputStream(stream)), results);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		long size = Files.size(file);
+		synchronized(diskLock) {
+			// A file that replaced an older one is counted twice, which only brings the next listing forward - it finds the real size
+			diskSize = diskSize < 0 ? listFiles(null) : diskSize + size;
+			if(diskSize > diskLimit) {
+				diskSize = listFiles(file);
+			}
+		}
+	}
+
+	/**
+	 * Lists the result files, and if they're over the limit, deletes the least recently used ones (apart from <code>keep</code>) until they're under 90% of it
+	 * @param keep - The file just written, or null to only list the files
+	 * @return The total size of the files left
+	 */
+	private long listFiles(Path keep) throws IOException {
+		ArrayList<CacheFile> files = new ArrayList<CacheFile>();
+		long total = 0;
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for(Path path : stream) {
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+					files.add(new CacheFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+					total += attributes.size();
+				} catch(IOException e) {
+					// Deleted since it was listed
+				}
+			}
+		}
+		if(keep == null || total <= diskLimit) {
+			return total;
+		}
+		files.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+		for(CacheFile file : files) {
+			if(total <= diskLimit / 10 * 9) {
+				break;
+			}
+			if(!file.path.equals(keep)) {
+				Files.deleteIfExists(file.path);
+				total -= file.size;
+			}
+		}
+		return total;
+	}
+
+	private static class CacheFile {
+		final Path path;
+		final long size;
+		final long lastUsed;
+
+		CacheFile(Path path, long size, long lastUsed) {
+			this.path = path;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	private void remember(String key, AnalysisResults results) {
+		synchronized(memory) {
+			AnalysisResults old = memory.put(key, results);
+			if(old != null) {
+				memorySize -= estimateSize(old);
+			}
+			memorySize += estimateSize(results);
+			// Drop the least recently used results until the rest fit, but always keep the newest
+			Iterator<Map.Entry<String, AnalysisResults>> it = memory.entrySet().iterator();
+			while(memorySize > memoryLimit && memory.size() > 1) {
+				memorySize -= estimateSize(it.next().getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of results kept in memory
+	 */
+	public int getMemoryCount() {
+		synchronized(memory) {
+			return memory.size();
+		}
+	}
+
+	private static long estimateSize(AnalysisResults results) {
+		long size = 64 + results.iocs.size() * 24L + results.shifts.size() * 256L;
+		if(results.kasiski != null) {
+			size += results.kasiski.size() * 12L + results.kasiski.getTotalSpacings() * 4L;
+		}
+		return size;
+	}
+
+	private static void write(DataOutputStream out, AnalysisResults results) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(results.letters);
+		out.writeInt(results.kappa.keylength);
+		out.writeFloat(results.kappa.keylengthExact);
+		out.writeFloat(results.kappa.ko);
+		out.writeInt(results.iocs.size());
+		for(IOCForKeyLen ioc : results.iocs) {
+			out.writeInt(ioc.keylength);
+			out.writeFloat(ioc.ioc);
+		}
+		out.writeInt(results.keyLength);
+		out.writeUTF(results.language.getCode());
+		out.writeInt(results.shifts.size());
+		for(ShiftsForColumn column : results.shifts) {
+			out.writeInt(column.column);
+			for(int i = 0; i < 26; i++) {
+				out.writeByte(column.shifts[i]);
+				out.writeFloat(column.scores[i]);
+			}
+		}
+		out.writeInt(results.kasiskiKeyLength);
+		results.kasiski.write(out);
+		out.flush();
+	}
+
+	private static AnalysisResults read(ByteBuffer in, CharSequence text) throws IOException {
+		if(in.getInt() != MAGIC) {
+			throw new IOException("Not a cached result");
+		}
+		AnalysisResults results = new AnalysisResults();
+		results.letters = in.getInt();
+		if(results.letters != text.length()) {
+			throw new IOException("Cached result is for a different text");
+		}
+		results.kappa = new KappaResult(in.getInt(), in.getFloat(), in.getFloat());
+		int iocCount = in.getInt();
+		results.iocs = new ArrayList<IOCForKeyLen>(iocCount);
+		for(int i = 0; i < iocCount; i++) {
+			results.iocs.add(new IOCForKeyLen(in.getInt(), in.getFloat()));
+		}
+		results.keyLength = in.getInt();
+		byte[] code = new byte[in.getShort() & 0xFFFF];
+		in.get(code);
+		results.language = LanguageProfile.get(new String(code, StandardCharsets.UTF_8));
+		if(results.language == null) {
+			throw new IOException("Cached result is for a language that isn't registered");
+		}
+		int columns = in.getInt();
+		results.shifts = new ArrayList<ShiftsForColumn>(columns);
+		for(int c = 0; c < columns; c++) {
+			int column = in.getInt();
+			int[] shifts = new int[26];
+			float[] scores = new float[26];
+			for(int i = 0; i < 26; i++) {
+				shifts[i] = in.get() & 0xFF;
+				scores[i] = in.getFloat();
+			}
+			results.shifts.add(new ShiftsForColumn(column, shifts, scores));
+		}
+		results.kasiskiKeyLength = in.getInt();
+		results.kasiski = KasiskiResult.read(in, text);
+		return results;
+	}
+}
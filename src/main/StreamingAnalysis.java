@@ -0,0 +1,169 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import main.AnalysisUtils.IOCForKeyLen;
+import main.AnalysisUtils.KappaResult;
+import main.AnalysisUtils.ShiftsForColumn;
+
+/**
+ * Runs the analyses on letters that are fed in a chunk at a time (e.g. from {@link CipherTextFile#stream(Path, CipherTextFile.LetterSink)}), so that the text never has to be held in memory.<br>
+ * <br>
+ * The letter counts (for the Kappa test) and column counts (for the improved Kappa test and the chi-squared test) are updated with each chunk, so they cover the whole text while using a fixed amount of memory.
+ * The Kasiski examination needs the whole text it examines at once, so it is only done on the first <code>kasiskiLimit</code> letters, which are kept as they're fed in
+ */
+public class StreamingAnalysis implements CipherTextFile.LetterSink {
+	private final long[] letterCounts = new long[26];
+	private final ColumnHistograms hists;
+	private final int kasiskiLimit;
+	private byte[] kasiskiLetters = new byte[0]; // Grown as letters are fed in, so a short text doesn't cost a buffer of kasiskiLimit letters
+	private int kasiskiCount;
+
+	/**
+	 * @param maxKeyLength - The longest keyword length to count columns for
+	 * @param kasiskiLimit - The number of letters, from the start of the text, to do the Kasiski examination on
+	 */
+	public StreamingAnalysis(int maxKeyLength, int kasiskiLimit) {
+		hists = new ColumnHistograms(maxKeyLength);
+		this.kasiskiLimit = kasiskiLimit;
+	}
+
+	/**
+	 * Memory-maps a file and feeds all its letters through a new StreamingAnalysis
+	 * @param path - The file to analyse
+	 * @param maxKeyLength - The longest keyword length to count columns for
+	 * @param kasiskiLimit - The number of letters, from the start of the text, to do the Kasiski examination on
+	 * @return The StreamingAnalysis, with all the letters counted
+	 * @throws IOException If the file can't be read
+	 */
+	public static StreamingAnalysis analyse(Path path, int maxKeyLength, int kasiskiLimit) throws IOException {
+		StreamingAnalysis analysis = new StreamingAnalysis(maxKeyLength, kasiskiLimit);
+		CipherTextFile.stream(path, analysis);
+		return analysis;
+	}
+
+	@Override
+	public void accept(byte[] letters, int count) {
+		long[] chunkCounts = Utils.letterHistogram(letters, 0, count);
+		for(int l = 0; l < 26; l++) {
+			letterCounts[l] += chunkCounts[l];
+		}
+		hists.append(ColumnHistograms.compute(letters, 0, count, hists.getMaxKeyLength()));
+		int take = Math.min(count, kasiskiLimit - kasiskiCount);
+		if(kasiskiCount + take > kasiskiLetters.length) {
+			kasiskiLetters = Arrays.copyOf(kasiskiLetters, (int)Math.min(kasiskiLimit, Math.max((long)kasiskiLetters.length * 2, kasiskiCount + take)));
+		}
+		System.arraycopy(letters, 0, kasiskiLetters, kasiskiCount, take);
+		kasiskiCount += take;
+	}
+
+	/**
+	 * @return The number of letters that have been fed in
+	 */
+	public long getLength() {
+		return hists.getLength();
+	}
+
+	public ColumnHistograms getColumnHistograms() {
+		return hists;
+	}
+
+	/**
+	 * @return The result of the Kappa test on all the letters so far
+	 * @see AnalysisUtils#KappaTest(long[])
+	 */
+	public KappaResult getKappaResult() {
+		return AnalysisUtils.KappaTest(letterCounts);
+	}
+
+	/**
+	 * @param language - The language of the plaintext
+	 * @return The result of the Kappa test on all the letters so far, for a plaintext in <code>language</code>
+	 * @see AnalysisUtils#KappaTest(long[], LanguageProfile)
+	 */
+	public KappaResult getKappaResult(LanguageProfile language) {
+		return AnalysisUtils.KappaTest(letterCounts, language);
+	}
+
+	/**
+	 * @return The result of the improved Kappa test on all the letters so far
+	 * @see AnalysisUtils#KappaTest2(ColumnHistograms)
+	 */
+	public ArrayList<IOCForKeyLen> getIOCs() {
+		return AnalysisUtils.KappaTest2(hists);
+	}
+
+	/**
+	 * @param iocs - The result of the improved Kappa test on all the letters so far, from {@link #getIOCs()}
+	 * @return The most likely keyword length, ranked for the language the text looks most like, or 0 if there's no text
+	 * @see AnalysisUtils#likelyKeyLength(ArrayList, ColumnHistograms)
+	 */
+	public int getKeyLength(ArrayList<IOCForKeyLen> iocs) {
+		return AnalysisUtils.likelyKeyLength(iocs, hists);
+	}
+
+	/**
+	 * @param keyLength - The keyword length. Must be no longer than the longest keyword length columns are counted for
+	 * @return The result of the chi-squared test on all the letters so far, against the registered language the columns look most like
+	 * @see #getLanguage(int)
+	 */
+	public ArrayList<ShiftsForColumn> getShifts(int keyLength) {
+		return getShifts(keyLength, getLanguage(keyLength));
+	}
+
+	/**
+	 * @param keyLength - The keyword length. Must be no longer than the longest keyword length columns are counted for
+	 * @param language - The language of the plaintext
+	 * @return The result of the chi-squared test on all the letters so far
+	 * @see AnalysisUtils#ChiSquaredTest(long[], int, LanguageProfile)
+	 */
+	public ArrayList<ShiftsForColumn> getShifts(int keyLength, LanguageProfile language) {
+		return AnalysisUtils.ChiSquaredTest(hists.getCounts(keyLength), keyLength, language);
+	}
+
+	/**
+	 * @param keyLength - The keyword length. Must be no longer than the longest keyword length columns are counted for
+	 * @return The registered language all the letters so far look most like, with its columns split for <code>keyLength</code>
+	 * @see LanguageProfile#identify(long[], int)
+	 */
+	public LanguageProfile getLanguage(int keyLength) {
+		return LanguageProfile.identifyBest(hists.getCounts(keyLength), keyLength);
+	}
+
+	/**
+	 * @return The letters the Kasiski examination is done on - the first <code>kasiskiLimit</code> letters
+	 */
+	public CipherText getKasiskiText() {
+		return CipherText.fromLetters(Arrays.copyOf(kasiskiLetters, kasiskiCount));
+	}
+
+	/**
+	 * @return The <code>AnalysisUtils.defaultKasiskiTop</code> repeated sequences of the first <code>kasiskiLimit</code> letters. Its memory use doesn't grow with the number of repeats
+	 * @see #getKasiskiResult(int)
+	 */
+	public KasiskiResult getKasiskiResult() {
+		return getKasiskiResult(AnalysisUtils.defaultKasiskiTop);
+	}
+
+	/**
+	 * Lists every repeated sequence, so the heap it needs grows with the number of repeats - many gigabytes for a <code>kasiskiLimit</code> of a million letters.
+	 * {@link #getKasiskiResult()} should be used unless the text is known to be short
+	 * @return The result of the full Kasiski examination on the first <code>kasiskiLimit</code> letters
+	 * @see AnalysisUtils#KasiskiExamineParallel(CipherText)
+	 */
+	public KasiskiResult getFullKasiskiResult() {
+		return AnalysisUtils.KasiskiExamineParallel(getKasiskiText());
+	}
+
+	/**
+	 * @param top - The most repeated sequences to keep
+	 * @return The <code>top</code> repeated sequences of the first <code>kasiskiLimit</code> letters, ranked by length times the number of occurrences
+	 * @see AnalysisUtils#KasiskiExamineTop(CipherText, int)
+	 */
+	public KasiskiResult getKasiskiResult(int top) {
+		return AnalysisUtils.KasiskiExamineTop(getKasiskiText(), top);
+	}
+}
@@ -0,0 +1,271 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Builds suffix arrays (using the SA-IS algorithm) and longest-common-prefix arrays, and walks the LCP intervals of a text.<br>
+ * <br>
+ * Every LCP interval corresponds to one internal node of the suffix tree - a repeated piece of text that isn't always followed by the same character.
+ * That's exactly the set of sequences the Kasiski examination is interested in, so this lets us find every repeat in one go, rather than searching from every index
+ * @see <a href="https://en.wikipedia.org/wiki/Suffix_array">https://en.wikipedia.org/wiki/Suffix_array</a>
+ * @see <a href="https://en.wikipedia.org/wiki/LCP_array">https://en.wikipedia.org/wiki/LCP_array</a>
+ */
+public class SuffixArray {
+	private SuffixArray() {
+		throw new AssertionError("This class should not be instantiable");
+	}
+
+	public static interface IntervalVisitor {
+		/**
+		 * This method is called once for every LCP interval (with an lcp of at least 1), children before parents
+		 * @param lcp - The length of the prefix shared by every suffix in the interval
+		 * @param lb - The index of the first suffix in the interval, in the suffix array (inclusive)
+		 * @param rb - The index of the last suffix in the interval, in the suffix array (inclusive)
+		 */
+		public abstract void visit(int lcp, int lb, int rb);
+	}
+
+	/**
+	 * Converts a String into an int array where each char has been replaced by its rank among the distinct chars in the String, so that the alphabet is as small as possible
+	 * @param str - The String to convert
+	 * @param alphabetSize - A 1-length array, which will have the number of distinct chars put in it. Can be null
+	 * @return The ranked text
+	 */
+	public static int[] rank(String str, int[] alphabetSize) {
+		int[] ranks = new int[Character.MAX_VALUE + 1];
+		for(int i = 0; i < str.length(); i++) {
+			ranks[str.charAt(i)] = 1;
+		}
+		int k = 0;
+		for(int i = 0; i < ranks.length; i++) {
+			if(ranks[i] != 0) {
+				ranks[i] = k++;
+			}
+		}
+		int[] text = new int[str.length()];
+		for(int i = 0; i < text.length; i++) {
+			text[i] = ranks[str.charAt(i)];
+		}
+		if(alphabetSize != null) {
+			alphabetSize[0] = k;
+		}
+		return text;
+	}
+
+	/**
+	 * Builds the suffix array of <code>text</code> in linear time
+	 * @param text - The text, with every value in the range 0 (inclusive) to <code>alphabetSize</code> (exclusive)
+	 * @param alphabetSize - The number of distinct values that can be in the text
+	 * @return The suffix array - the starting indexes of all the suffixes of <code>text</code>, in sorted order
+	 */
+	public static int[] build(int[] text, int alphabetSize) {
+		int n = text.length;
+		if(n == 0) {
+			return new int[0];
+		}
+		// Shift everything up by one and stick a unique, smallest sentinel on the end
+		int[] s = new int[n + 1];
+		for(int i = 0; i < n; i++) {
+			s[i] = text[i] + 1;
+		}
+		int[] sa = new int[n + 1];
+		sais(s, sa, n + 1, alphabetSize + 1);
+		return Arrays.copyOfRange(sa, 1, n + 1); // The sentinel suffix always sorts first
+	}
+
+	/**
+	 * Builds the LCP array of <code>text</code> using Kasai's algorithm, in linear time
+	 * @param text - The text that <code>sa</code> was built from
+	 * @param sa - The suffix array of <code>text</code>
+	 * @return The LCP array - element i is the length of the common prefix of the suffixes at <code>sa[i - 1]</code> and <code>sa[i]</code>. Element 0 is always 0
+	 */
+	public static int[] lcp(int[] text, int[] sa) {
+		int n = sa.length;
+		int[] rank = new int[n];
+		for(int i = 0; i < n; i++) {
+			rank[sa[i]] = i;
+		}
+		int[] lcp = new int[n];
+		int h = 0;
+		for(int i = 0; i < n; i++) {
+			if(rank[i] > 0) {
+				int j = sa[rank[i] - 1];
+				while(i + h < n && j + h < n && text[i + h] == text[j + h]) {
+					h++;
+				}
+				lcp[rank[i]] = h;
+				if(h > 0) {
+					h--;
+				}
+			} else {
+				h = 0;
+			}
+		}
+		return lcp;
+	}
+
+	/**
+	 * Walks all the LCP intervals with an lcp of at least 1 (i.e. all the internal nodes of the suffix tree apart from the root) bottom-up, using a stack
+	 * @param lcp - The LCP array
+	 * @param visitor - The IntervalVisitor to report each interval to
+	 */
+	public static void visitIntervals(int[] lcp, IntervalVisitor visitor) {
+		visitIntervals(lcp, 0, lcp.length, visitor);
+	}
+
+	/**
+	 * Walks all the LCP intervals with an lcp of at least 1 that lie within the suffix array range <code>from</code> to <code>to</code>.
+	 * The range should start at a suffix that shares nothing with the one before it, otherwise the intervals that cross the start will be cut short
+	 * @param lcp - The LCP array
+	 * @param from - The first index in the suffix array (inclusive)
+	 * @param to - The last index in the suffix array (exclusive)
+	 * @param visitor - The IntervalVisitor to report each interval to
+	 */
+	public static void visitIntervals(int[] lcp, int from, int to, IntervalVisitor visitor) {
+		int[] stackLcp = new int[16];
+		int[] stackLb = new int[16];
+		int top = 0; // stackLcp[0] & stackLb[0] are the root, which has an lcp of 0
+		stackLb[0] = from;
+		for(int i = from + 1; i <= to; i++) {
+			int curr = i < to ? lcp[i] : 0;
+			int lb = i - 1;
+			while(curr < stackLcp[top]) {
+				lb = stackLb[top];
+				visitor.visit(stackLcp[top], lb, i - 1);
+				top--;
+			}
+			if(curr > stackLcp[top]) {
+				top++;
+				if(top == stackLcp.length) {
+					stackLcp = Arrays.copyOf(stackLcp, top * 2);
+					stackLb = Arrays.copyOf(stackLb, top * 2);
+				}
+				stackLcp[top] = curr;
+				stackLb[top] = lb;
+			}
+		}
+	}
+
+	/**
+	 * SA-IS. <code>s</code> must end with a unique 0
+	 * @see <a href="https://ieeexplore.ieee.org/document/5582081">Two Efficient Algorithms for Linear Time Suffix Array Construction</a>
+	 */
+	private static void sais(int[] s, int[] sa, int n, int k) {
+		// true is S-type, false is L-type
+		boolean[] t = new boolean[n];
+		t[n - 1] = true;
+		for(int i = n - 2; i >= 0; i--) {
+			t[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && t[i + 1]);
+		}
+
+		// Sort the LMS substrings
+		int[] bkt = new int[k];
+		getBuckets(s, bkt, n, k, true);
+		Arrays.fill(sa, 0, n, -1);
+		for(int i = 1; i < n; i++) {
+			if(isLMS(t, i)) {
+				sa[--bkt[s[i]]] = i;
+			}
+		}
+		induceL(s, sa, t, bkt, n, k);
+		induceS(s, sa, t, bkt, n, k);
+
+		// Move the sorted LMS substrings to the front and name them
+		int n1 = 0;
+		for(int i = 0; i < n; i++) {
+			if(isLMS(t, sa[i])) {
+				sa[n1++] = sa[i];
+			}
+		}
+		Arrays.fill(sa, n1, n, -1);
+		int name = 0;
+		int prev = -1;
+		for(int i = 0; i < n1; i++) {
+			int pos = sa[i];
+			boolean diff = false;
+			for(int d = 0; ; d++) {
+				if(prev == -1 || s[pos + d] != s[prev + d] || t[pos + d] != t[prev + d]) {
+					diff = true;
+					break;
+				} else if(d > 0 && (isLMS(t, pos + d) || isLMS(t, prev + d))) {
+					break;
+				}
+			}
+			if(diff) {
+				name++;
+				prev = pos;
+			}
+			sa[n1 + pos / 2] = name - 1;
+		}
+		for(int i = n - 1, j = n - 1; i >= n1; i--) {
+			if(sa[i] >= 0) {
+				sa[j--] = sa[i];
+			}
+		}
+
+		// Sort the reduced problem, recursing if the names aren't unique yet
+		int[] s1 = Arrays.copyOfRange(sa, n - n1, n);
+		int[] sa1 = new int[n1];
+		if(name < n1) {
+			sais(s1, sa1, n1, name);
+		} else {
+			for(int i = 0; i < n1; i++) {
+				sa1[s1[i]] = i;
+			}
+		}
+
+		// Induce the full suffix array from the sorted LMS suffixes
+		for(int i = 1, j = 0; i < n; i++) {
+			if(isLMS(t, i)) {
+				s1[j++] = i;
+			}
+		}
+		for(int i = 0; i < n1; i++) {
+			sa1[i] = s1[sa1[i]];
+		}
+		getBuckets(s, bkt, n, k, true);
+		Arrays.fill(sa, 0, n, -1);
+		for(int i = n1 - 1; i >= 0; i--) {
+			int j = sa1[i];
+			sa[--bkt[s[j]]] = j;
+		}
+		induceL(s, sa, t, bkt, n, k);
+		induceS(s, sa, t, bkt, n, k);
+	}
+
+	private static boolean isLMS(boolean[] t, int i) {
+		return i > 0 && t[i] && !t[i - 1];
+	}
+
+	private static void getBuckets(int[] s, int[] bkt, int n, int k, boolean ends) {
+		Arrays.fill(bkt, 0);
+		for(int i = 0; i < n; i++) {
+			bkt[s[i]]++;
+		}
+		int sum = 0;
+		for(int i = 0; i < k; i++) {
+			sum += bkt[i];
+			bkt[i] = ends ? sum : sum - bkt[i];
+		}
+	}
+
+	private static void induceL(int[] s, int[] sa, boolean[] t, int[] bkt, int n, int k) {
+		getBuckets(s, bkt, n, k, false);
+		for(int i = 0; i < n; i++) {
+			int j = sa[i] - 1;
+			if(j >= 0 && !t[j]) {
+				sa[bkt[s[j]]++] = j;
+			}
+		}
+	}
+
+	private static void induceS(int[] s, int[] sa, boolean[] t, int[] bkt, int n, int k) {
+		getBuckets(s, bkt, n, k, true);
+		for(int i = n - 1; i >= 0; i--) {
+			int j = sa[i] - 1;
+			if(j >= 0 && t[j]) {
+				sa[--bkt[s[j]]] = j;
+			}
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package main;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -62,6 +65,16 @@ public class Utils {
 		}
 	}
 	
+	public static interface OccurrenceVisitor {
+		/**
+		 * This method is called whenever one or more occurrences of a sequence stop matching
+		 * @param length - The length of the sequence. The sequence itself starts at the index being searched from
+		 * @param positions - The indexes of all the occurrences of the sequence, in ascending order. This array is reused, so don't hold on to it
+		 * @param count - The number of occurrences in <code>positions</code>
+		 */
+		public abstract void visit(int length, int[] positions, int count);
+	}
+	
 	/**
 	 * This method will find and return all occurrences of repeated sequences of characters, taking characters starting at the index specified by <code>startingWith</code><br>
 	 * <br>
@@ -75,73 +88,104 @@ public class Utils {
 	 * @param str - The string to search
 	 * @param startingWith - The character to start the search at
 	 * @return An ArrayList of sequences at positions
+	 * @see #findAllOccurrences(CharSequence, int, OccurrenceVisitor)
 	 */
 	public static ArrayList<Struct2<String, Integer[]>> findAllOccurrences(String str, int startingWith) { // This is going to be a trifle more complicated than I initially thought
 		ArrayList<Struct2<String, Integer[]>> list = new ArrayList<Struct2<String, Integer[]>>();
+		findAllOccurrences(str, startingWith, (length, positions, count) -> {
+			Integer[] indexArr = new Integer[count];
+			for(int i = 0; i < count; i++) {
+				indexArr[i] = positions[i];
+			}
+			list.add(new Struct2<String, Integer[]>(str.substring(startingWith, startingWith + length), indexArr));
+		});
+		return list;
+	}
+	
+	/**
+	 * Does the same search as {@link #findAllOccurrences(String, int)}, but keeps the occurrences in an int array and hands each sequence to <code>visitor</code> instead of boxing them into a list
+	 * @param str - The string to search
+	 * @param startingWith - The character to start the search at
+	 * @param visitor - The OccurrenceVisitor that is given each sequence along with its occurrences
+	 */
+	public static void findAllOccurrences(CharSequence str, int startingWith, OccurrenceVisitor visitor) {
+		int length = str.length();
 		char lookingFor = str.charAt(startingWith);
-		StringBuilder sequence = new StringBuilder();
-		sequence.append(lookingFor);
-		ArrayList<Integer> occurrenceIndexes = new ArrayList<Integer>(); // Includes the starting index
+		int[] occurrenceIndexes = new int[16]; // Includes the starting index
+		int count = 0;
 		
 		// Find all occurrences of the first letter
-		for(int i = 0; i < str.length(); i++) {
+		for(int i = 0; i < length; i++) {
 			if(str.charAt(i) == lookingFor) {
-				occurrenceIndexes.add(i);
+				if(count == occurrenceIndexes.length) {
+					occurrenceIndexes = Arrays.copyOf(occurrenceIndexes, count * 2);
+				}
+				occurrenceIndexes[count++] = i;
 			}
 		}
 		
-		for(int i = startingWith + 1; i < str.length(); i++) { // Loop from startingWith to the end of the string
+		for(int i = startingWith + 1; i < length; i++) { // Loop from startingWith to the end of the string
 			lookingFor = str.charAt(i);
 			int fromStart = i - startingWith; // fromStart is the current index in the sequence - add this onto the index of the start to get the current character being examined. Start at 1
-			ArrayList<Integer> stoppedIndexes = new ArrayList<Integer>();
-			for(int j = 0; j < occurrenceIndexes.size(); j++) { // And for every iteration through occurrenceIndexes, check the next character from each occurrence
-				int index = occurrenceIndexes.get(j).intValue() + fromStart;
-				boolean failed = true;
-				if(index < str.length()) {
-					if(str.charAt(index) == lookingFor) { // If this occurance's next character is the character we're looking for
-						failed = false;
-					}
-				}
-				
-				if(failed) {
-					stoppedIndexes.add(occurrenceIndexes.get(j).intValue()); // Change it to int so it gets copied
+			boolean stopped = false;
+			for(int j = 0; j < count; j++) { // Check the next character from each occurrence
+				int index = occurrenceIndexes[j] + fromStart;
+				if(index >= length || str.charAt(index) != lookingFor) {
+					stopped = true;
+					break;
 				}
 			}
 			
-			if(stoppedIndexes.size() != 0) {
-				appendSequences(list, occurrenceIndexes, stoppedIndexes, sequence);
-				stoppedIndexes.clear();
-				if(occurrenceIndexes.size() == 0) {
+			if(stopped) {
+				visitor.visit(fromStart, occurrenceIndexes, count);
+				// Now remove the occurrences that have stopped matching
+				int kept = 0;
+				for(int j = 0; j < count; j++) {
+					int index = occurrenceIndexes[j] + fromStart;
+					if(index < length && str.charAt(index) == lookingFor) {
+						occurrenceIndexes[kept++] = occurrenceIndexes[j];
+					}
+				}
+				count = kept;
+				if(count == 0) {
 					break;
 				}
 			}
-			
-			if(occurrenceIndexes.size() != 0) {
-				sequence.append(lookingFor);
-//				System.out.println("Length: " + occurrenceIndexes.size());
-			}
 		}
-		
-		return list;
 	}
 	
 	/**
-	 * This method adds an entry to <code>target</code> of all the sequences in occurrenceIndexes, which is the ArrayList that contains all the indexes of the occurrences of the sequence, while stoppedIndexes is all the indexes where the sequence has broken.
-	 * All indexes in stoppedIndexes will be removed from occurrenceIndexes.
-	 * @param target
-	 * @param occurrenceIndexes
-	 * @param builder
+	 * Works out the order that sorts <code>keys</code> into ascending order, without moving the keys themselves. The sort is stable
+	 * @param keys - The keys to sort by
+	 * @return The indexes of the keys, in sorted order
 	 */
-	private static void appendSequences(ArrayList<Struct2<String, Integer[]>> target, ArrayList<Integer> occurrenceIndexes, ArrayList<Integer> stoppedIndexes, StringBuilder sequence) {
-		if(target != null && occurrenceIndexes != null) {
-			Integer[] indexArr = new Integer[occurrenceIndexes.size()];
-			indexArr = occurrenceIndexes.toArray(indexArr);
-			String sequ = sequence.toString();
-			target.add(new Struct2<String, Integer[]>(sequ, indexArr));
-			if(stoppedIndexes != null) {
-				occurrenceIndexes.removeAll(stoppedIndexes);
+	public static int[] sortIndices(long[] keys) {
+		int[] order = new int[keys.length];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		int[] temp = new int[keys.length];
+		// Bottom-up merge sort
+		for(int width = 1; width < order.length; width *= 2) {
+			for(int lo = 0; lo < order.length; lo += width * 2) {
+				int mid = Math.min(lo + width, order.length);
+				int hi = Math.min(lo + width * 2, order.length);
+				int a = lo, b = mid, t = lo;
+				while(a < mid && b < hi) {
+					temp[t++] = keys[order[b]] < keys[order[a]] ? order[b++] : order[a++];
+				}
+				while(a < mid) {
+					temp[t++] = order[a++];
+				}
+				while(b < hi) {
+					temp[t++] = order[b++];
+				}
 			}
+			int[] swap = order;
+			order = temp;
+			temp = swap;
 		}
+		return order;
 	}
 	
 	/**
@@ -190,6 +234,132 @@ public class Utils {
 		return count;
 	}
 	
+	/**
+	 * Converts the letters of a String into numbers from 0 to 25 (A/a is 0, Z/z is 25), skipping every other character
+	 * @param str - The String to convert
+	 * @return The letters, as bytes from 0 to 25
+	 */
+	public static byte[] toLetterIndices(String str) {
+		byte[] letters = new byte[str.length()];
+		int n = 0;
+		for(int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if(ch >= 'A' && ch <= 'Z') {
+				letters[n++] = (byte)(ch - 'A');
+			} else if(ch >= 'a' && ch <= 'z') {
+				letters[n++] = (byte)(ch - 'a');
+			}
+		}
+		return n == letters.length ? letters : Arrays.copyOf(letters, n);
+	}
+	
+	/**
+	 * Counts how many times each letter appears. Four separate sets of counts are kept and added up at the end, so that runs of the same letter don't hold each other up by all incrementing the same counter
+	 * @param letters - The letters, as values from 0 to 25
+	 * @param from - The index of the first letter to count (inclusive)
+	 * @param to - The index of the last letter to count (exclusive)
+	 * @return The number of times each letter appears, indexed by letter
+	 */
+	public static long[] letterHistogram(byte[] letters, int from, int to) {
+		int[] c0 = new int[26];
+		int[] c1 = new int[26];
+		int[] c2 = new int[26];
+		int[] c3 = new int[26];
+		long[] counts = new long[26];
+		int i = from;
+		while(i < to) {
+			// Flush the int counts before they can overflow
+			int end = (int)Math.min(to, i + (long)Integer.MAX_VALUE / 2);
+			for(; i + 3 < end; i += 4) {
+				c0[letters[i]]++;
+				c1[letters[i + 1]]++;
+				c2[letters[i + 2]]++;
+				c3[letters[i + 3]]++;
+			}
+			for(; i < end; i++) {
+				c0[letters[i]]++;
+			}
+			for(int l = 0; l < 26; l++) {
+				counts[l] += (long)c0[l] + c1[l] + c2[l] + c3[l];
+				c0[l] = c1[l] = c2[l] = c3[l] = 0;
+			}
+		}
+		return counts;
+	}
+	
+	/**
+	 * Puts a String in double quotes, escaping it so it can be written out as a JSON string
+	 * @param str - The String to quote
+	 * @return The JSON string
+	 */
+	public static String jsonString(String str) {
+		StringBuilder sb = new StringBuilder(str.length() + 2);
+		sb.append('"');
+		for(int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			switch(ch) {
+				case '"': sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default:
+					if(ch < 0x20) {
+						sb.append(String.format("\\u%04x", (int)ch));
+					} else {
+						sb.append(ch);
+					}
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+	
+	/**
+	 * Quotes a String for a CSV file if it needs quoting
+	 * @param str - The String to quote
+	 * @return The CSV field
+	 */
+	public static String csvField(String str) {
+		if(str.indexOf(',') < 0 && str.indexOf('"') < 0 && str.indexOf('\n') < 0 && str.indexOf('\r') < 0) {
+			return str;
+		}
+		return '"' + str.replace("\"", "\"\"") + '"';
+	}
+	
+	/**
+	 * Writes a non-negative int in as few bytes as it needs - 7 bits to a byte, with the top bit set on every byte but the last
+	 * @param out - Where to write the int
+	 * @param value - The int. Must not be negative
+	 * @throws IOException If it couldn't be written
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	/**
+	 * Reads an int written by {@link #writeVarInt(DataOutput, int)}
+	 * @param in - The buffer to read the int from, at its position
+	 * @return The int
+	 * @throws IOException If it's too long to be an int
+	 * @throws java.nio.BufferUnderflowException If the buffer ends first
+	 */
+	public static int readVarInt(ByteBuffer in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = in.get() & 0xFF;
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length int");
+	}
+	
 	public static JPanel makeTable(Object[][] data, String[] columnNames) {
 		return makeTable(data, columnNames, null);
 	}
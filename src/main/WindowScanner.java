@@ -0,0 +1,272 @@
+package main;
+
+import java.util.ArrayList;
+
+/**
+ * Scans a stream of letters with a sliding window, for traffic where several messages with different keys have been joined together - on the whole text, the Kappa tests and the chi-squared test just average the messages into nonsense.<br>
+ * <br>
+ * The letter counts of every column of the window, for every keyword length up to a maximum, are kept up to date as the window slides, along with the number of pairs of matching letters in each.
+ * Sliding the window on by a letter adds one letter to one column and takes one away from another for each keyword length, so it takes a fixed amount of time however big the window is.
+ * Every <code>step</code> letters a {@link Window} is recorded, with the IOC of the window and the most likely keyword length in it, giving curves of both along the text.<br>
+ * <br>
+ * Boundaries are found by comparing each window with the window just before it (the last one recorded that ends at or after where it starts), column by column at the earlier window's keyword length:
+ * the chance that a letter from a column of one matches a letter from the same column of the other (the cross IOC). If both windows were enciphered with the same keyword, the columns have the same Caesar shifts, so this is about the IOC of English.
+ * If the keyword (or its length) changes in between, the columns are shifted differently, and it drops to about the IOC of random letters.
+ * A boundary is flagged wherever the cross IOC falls below <code>threshold</code> - at the start of the later window halfway through the run of windows that it stays below for
+ */
+public class WindowScanner implements CipherTextFile.LetterSink {
+	/**
+	 * The longest keyword length tested if it isn't given. Every letter costs a little for each keyword length, so this is shorter than {@link AnalysisUtils#defaultMaxKeyLength}
+	 */
+	public static int defaultMaxKeyLength = 32;
+	/**
+	 * The cross IOC below which a boundary is flagged if it isn't given - halfway between random letters and English
+	 */
+	public static float defaultThreshold = (AnalysisUtils.englishKappa + 1f / 26f) / 2;
+
+	/**
+	 * A container for the statistics of one position of the window - <code>end</code>, <code>ioc</code>, <code>keyLength</code>, <code>keyLengthIoc</code> and <code>crossIoc</code>.<br>
+	 * <code>end</code> is the position in the stream just after the last letter of the window.<br>
+	 * <code>ioc</code> is the index of coincidence of the whole window.<br>
+	 * <code>keyLength</code> is the most likely keyword length in the window, picked the same way as {@link AnalysisUtils#likelyKeyLength(ArrayList)}, and <code>keyLengthIoc</code> is the average IOC of its columns.<br>
+	 * <code>crossIoc</code> is the cross IOC with the window before, or NaN if this is one of the first windows
+	 */
+	public static class Window {
+		public long end;
+		public float ioc;
+		public int keyLength;
+		public float keyLengthIoc;
+		public float crossIoc;
+
+		public Window(long end, float ioc, int keyLength, float keyLengthIoc, float crossIoc) {
+			this.end = end;
+			this.ioc = ioc;
+			this.keyLength = keyLength;
+			this.keyLengthIoc = keyLengthIoc;
+			this.crossIoc = crossIoc;
+		}
+	}
+
+	private final int windowSize;
+	private final int step;
+	private final int maxKeyLength;
+	private final float threshold;
+
+	private final byte[] ring; // The letters in the window, oldest at head once it's full
+	private int head;
+	private long position; // The number of letters seen
+	private final int[] counts; // The counts for keyword length k start at offset(k), column by column
+	private final long[] pairs; // [k] = the number of pairs of matching letters in the same column, over all the columns of keyword length k
+	private final int[] addColumn; // [k] = the index in counts of the column of keyword length k the next letter goes into
+	private final int[] removeColumn; // [k] = the index in counts of the column of keyword length k the oldest letter in the window is in
+	private final float[] iocs; // Reused for every window
+
+	// The column counts of the last few windows, at their own keyword lengths, to work out the cross IOC from
+	private final int[][] snapshotCounts;
+	private final int[] snapshotKeyLengths;
+	private int snapshots;
+
+	private final ArrayList<Window> windows = new ArrayList<Window>();
+	private final ArrayList<Long> boundaries = new ArrayList<Long>();
+	// The starts of the later windows of the first and last cross IOCs of the current run below the threshold, or -1 if not in one
+	private long runFirst = -1;
+	private long runLast;
+
+	/**
+	 * @param windowSize - The number of letters in the window
+	 * @param step - The number of letters the window moves on between each Window that's recorded
+	 * @param maxKeyLength - The longest keyword length to test. Must be no more than half of <code>windowSize</code>
+	 * @param threshold - The cross IOC below which a boundary is flagged
+	 */
+	public WindowScanner(int windowSize, int step, int maxKeyLength, float threshold) {
+		if(step < 1 || step > windowSize || maxKeyLength < 1 || maxKeyLength > windowSize / 2) {
+			throw new IllegalArgumentException("The step must be between 1 and the window size, and the longest keyword length must be between 1 and half the window size");
+		}
+		this.windowSize = windowSize;
+		this.step = step;
+		this.maxKeyLength = maxKeyLength;
+		this.threshold = threshold;
+		ring = new byte[windowSize];
+		counts = new int[offset(maxKeyLength + 1)];
+		pairs = new long[maxKeyLength + 1];
+		addColumn = new int[maxKeyLength + 1];
+		removeColumn = new int[maxKeyLength + 1];
+		for(int k = 1; k <= maxKeyLength; k++) {
+			addColumn[k] = offset(k);
+			removeColumn[k] = offset(k);
+		}
+		iocs = new float[maxKeyLength + 1];
+		int slots = windowSize / step + 1;
+		snapshotCounts = new int[slots][maxKeyLength * 26];
+		snapshotKeyLengths = new int[slots];
+	}
+
+	/**
+	 * @param windowSize - The number of letters in the window
+	 * @param step - The number of letters the window moves on between each Window that's recorded
+	 */
+	public WindowScanner(int windowSize, int step) {
+		this(windowSize, step, Math.min(defaultMaxKeyLength, windowSize / 2), defaultThreshold);
+	}
+
+	private static int offset(int keyLength) {
+		return keyLength * (keyLength - 1) / 2 * 26;
+	}
+
+	@Override
+	public void accept(byte[] letters, int count) {
+		for(int i = 0; i < count; i++) {
+			if(position >= windowSize) {
+				slide(ring[head], letters[i]);
+			} else {
+				add(letters[i]);
+			}
+			ring[head] = letters[i];
+			head = head + 1 == windowSize ? 0 : head + 1;
+			position++;
+			if(position >= windowSize && position % step == 0) {
+				record();
+			}
+		}
+	}
+
+	private void add(int letter) {
+		int end = offset(1);
+		for(int k = 1; k <= maxKeyLength; k++) {
+			end += k * 26; // The start of keyword length k + 1
+			int column = addColumn[k];
+			pairs[k] += 2 * counts[column + letter]; // n(n - 1) goes up by 2n
+			counts[column + letter]++;
+			addColumn[k] = column + 26 == end ? column + 26 - k * 26 : column + 26;
+		}
+	}
+
+	/**
+	 * Takes the oldest letter out of the window and adds a new one, in the same pass over the keyword lengths
+	 */
+	private void slide(int oldLetter, int newLetter) {
+		int end = offset(1);
+		for(int k = 1; k <= maxKeyLength; k++) {
+			end += k * 26;
+			int column = removeColumn[k];
+			int oldCount = --counts[column + oldLetter];
+			removeColumn[k] = column + 26 == end ? column + 26 - k * 26 : column + 26;
+			column = addColumn[k];
+			int newCount = counts[column + newLetter]++;
+			pairs[k] += 2 * (newCount - oldCount);
+			addColumn[k] = column + 26 == end ? column + 26 - k * 26 : column + 26;
+		}
+	}
+
+	/**
+	 * Works out the statistics of the window as it is now, and checks for a boundary at its start
+	 */
+	private void record() {
+		// Every column of keyword length k has q or q + 1 letters, so the number of possible pairs is the same wherever the window is
+		float max = 0;
+		for(int k = 1; k <= maxKeyLength; k++) {
+			long q = windowSize / k;
+			long r = windowSize % k;
+			long possible = r * (q + 1) * q + (k - r) * q * (q - 1);
+			iocs[k] = (float)((double)pairs[k] / possible);
+			max = Math.max(max, iocs[k]);
+		}
+		int keyLength = 1;
+		while(iocs[keyLength] < max * 0.9f) {
+			keyLength++;
+		}
+
+		// The window before this one was recorded windowSize / step windows ago, and overlaps this one by less than a step
+		int slot = (int)(position / step % snapshotCounts.length);
+		int earlierSlot = (int)((position - windowSize / step * step) / step % snapshotCounts.length);
+		float crossIoc = Float.NaN;
+		if(snapshots >= snapshotCounts.length - 1) {
+			crossIoc = crossIoc(snapshotCounts[earlierSlot], snapshotKeyLengths[earlierSlot]);
+		}
+		System.arraycopy(counts, offset(keyLength), snapshotCounts[slot], 0, keyLength * 26);
+		snapshotKeyLengths[slot] = keyLength;
+		snapshots++;
+
+		windows.add(new Window(position, iocs[1], keyLength, iocs[keyLength], crossIoc));
+		if(crossIoc < threshold) {
+			if(runFirst < 0) {
+				runFirst = position - windowSize;
+			}
+			runLast = position - windowSize;
+		} else {
+			endRun();
+		}
+	}
+
+	/**
+	 * The chance that a letter from a column of the earlier window matches a letter from the same column of the window as it is now
+	 */
+	private float crossIoc(int[] earlier, int keyLength) {
+		int current = offset(keyLength);
+		long matches = 0;
+		long possible = 0;
+		for(int c = 0; c < keyLength; c++) {
+			long earlierTotal = 0;
+			long currentTotal = 0;
+			for(int l = c * 26; l < c * 26 + 26; l++) {
+				matches += (long)earlier[l] * counts[current + l];
+				earlierTotal += earlier[l];
+				currentTotal += counts[current + l];
+			}
+			possible += earlierTotal * currentTotal;
+		}
+		return possible == 0 ? Float.NaN : (float)((double)matches / possible);
+	}
+
+	/**
+	 * The cross IOC starts to drop once the later window starts to take in the next message, and is back up once the earlier window has left the last one, which is about the same distance either side of the boundary
+	 */
+	private long runMiddle() {
+		return runFirst + (runLast - runFirst) / 2 / step * step;
+	}
+
+	private void endRun() {
+		if(runFirst >= 0) {
+			boundaries.add(runMiddle());
+			runFirst = -1;
+		}
+	}
+
+	/**
+	 * Scans the whole of a text
+	 * @param letters - The text, as values from 0 to 25
+	 * @param windowSize - The number of letters in the window
+	 * @param step - The number of letters the window moves on between each Window that's recorded
+	 * @return The scanner, with all the letters scanned
+	 */
+	public static WindowScanner scan(byte[] letters, int windowSize, int step) {
+		WindowScanner scanner = new WindowScanner(windowSize, step);
+		scanner.accept(letters, letters.length);
+		return scanner;
+	}
+
+	/**
+	 * @return The number of letters that have been scanned
+	 */
+	public long getLength() {
+		return position;
+	}
+
+	/**
+	 * @return The statistics of the window at every <code>step</code> letters, in order along the text
+	 */
+	public ArrayList<Window> getWindows() {
+		return windows;
+	}
+
+	/**
+	 * @return The positions in the stream where the keyword seems to change, in ascending order. Each is a multiple of <code>step</code>, and usually within a step or two of the real boundary
+	 */
+	public ArrayList<Long> getBoundaries() {
+		ArrayList<Long> found = new ArrayList<Long>(boundaries);
+		if(runFirst >= 0) {
+			found.add(runMiddle()); // The stream ended part way through a run
+		}
+		return found;
+	}
+}